@@ -0,0 +1,302 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.tokenmanager.token;
+
+import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.util.PasswordStore;
+
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.State;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
+import static iaik.pkcs.pkcs11.Token.SessionType.SERIAL_SESSION;
+
+/**
+ * Pool of logged in PKCS#11 sessions of a hardware token. Allows several signing operations to be
+ * carried out on the token at the same time. Sessions that fail with a session related error are
+ * replaced with new ones, idle sessions are checked and logged in again by {@link #checkSessions()}.
+ */
+@Slf4j
+final class HardwareTokenSessionPool {
+
+    private static final long BORROW_TIMEOUT_SECONDS = 30;
+
+    private static final int MAX_ATTEMPTS = 2;
+
+    // errors after which the session is not used anymore
+    private static final Set<Long> SESSION_ERRORS = new HashSet<>(Arrays.asList(
+            PKCS11Constants.CKR_SESSION_HANDLE_INVALID,
+            PKCS11Constants.CKR_SESSION_CLOSED,
+            PKCS11Constants.CKR_USER_NOT_LOGGED_IN,
+            PKCS11Constants.CKR_DEVICE_ERROR,
+            PKCS11Constants.CKR_DEVICE_REMOVED,
+            PKCS11Constants.CKR_TOKEN_NOT_PRESENT));
+
+    private final Token token;
+
+    private final String tokenId;
+
+    private final String workerId;
+
+    private final int size;
+
+    private final BlockingQueue<Session> idleSessions;
+
+    // number of idle and borrowed sessions
+    private final AtomicInteger openSessions = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    /**
+     * @param token the PKCS#11 token
+     * @param tokenId the token id, used to look up the token PIN
+     * @param workerId the token worker id, used for logging
+     * @param size the number of sessions in the pool
+     */
+    HardwareTokenSessionPool(Token token, String tokenId, String workerId, int size) {
+        this.token = token;
+        this.tokenId = tokenId;
+        this.workerId = workerId;
+        this.size = size;
+        this.idleSessions = new ArrayBlockingQueue<>(size);
+    }
+
+    /**
+     * Opens and logs in all the sessions of the pool.
+     * @throws Exception if a session cannot be opened or logged in
+     */
+    void open() throws Exception {
+        try {
+            for (int i = 0; i < size; i++) {
+                idleSessions.add(openSession());
+            }
+        } catch (Exception e) {
+            close();
+
+            throw e;
+        }
+
+        log.info("Opened {} signing session(s) on token '{}'", size, workerId);
+    }
+
+    /**
+     * Closes the idle sessions of the pool. Borrowed sessions are closed when they are returned.
+     */
+    void close() {
+        closed = true;
+
+        closeIdleSessions();
+    }
+
+    /**
+     * Executes the task with a session from the pool. If the task fails because of a broken session,
+     * the session is replaced and the task is retried once with another session.
+     * @param task the task
+     * @return the result of the task
+     * @throws Exception if the task fails or no session becomes available in time
+     */
+    <T> T execute(SessionTask<T> task) throws Exception {
+        for (int attempt = 1;; attempt++) {
+            Session session = borrow();
+
+            try {
+                T result = task.execute(session);
+
+                release(session);
+
+                return result;
+            } catch (PKCS11Exception e) {
+                if (!SESSION_ERRORS.contains(e.getErrorCode())) {
+                    release(session);
+
+                    throw e;
+                }
+
+                log.warn("Session on token '{}' failed ({}), replacing it", workerId, e.getMessage());
+
+                replaceSession(session);
+
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+            } catch (Exception e) {
+                release(session);
+
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Checks the idle sessions and replaces the ones that are not usable or not logged in anymore.
+     * Reopens sessions that could not be replaced earlier.
+     */
+    void checkSessions() {
+        int idleCount = idleSessions.size();
+
+        for (int i = 0; i < idleCount && !closed; i++) {
+            Session session = idleSessions.poll();
+
+            if (session == null) {
+                break;
+            }
+
+            if (isLoggedIn(session)) {
+                idleSessions.offer(session);
+            } else {
+                log.warn("Session on token '{}' is not usable, replacing it", workerId);
+
+                replaceSession(session);
+            }
+        }
+
+        while (!closed && openSessions.get() < size) {
+            if (!openReplacementSession()) {
+                break;
+            }
+        }
+
+        if (closed) {
+            closeIdleSessions();
+        }
+    }
+
+    private Session borrow() throws Exception {
+        if (closed) {
+            throw new CodedException(X_INTERNAL_ERROR, "No active session on token %s", tokenId);
+        }
+
+        Session session = idleSessions.poll(BORROW_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        if (session == null) {
+            throw new CodedException(X_INTERNAL_ERROR, "No free session on token %s", tokenId);
+        }
+
+        return session;
+    }
+
+    private void release(Session session) {
+        idleSessions.offer(session);
+
+        if (closed) {
+            closeIdleSessions();
+        }
+    }
+
+    private void replaceSession(Session session) {
+        closeSession(session);
+
+        if (!closed) {
+            openReplacementSession();
+        }
+    }
+
+    private boolean openReplacementSession() {
+        try {
+            release(openSession());
+
+            return true;
+        } catch (Exception e) {
+            log.error("Failed to open session on token '{}'", workerId, e);
+
+            return false;
+        }
+    }
+
+    private Session openSession() throws Exception {
+        char[] password = PasswordStore.getPassword(tokenId);
+
+        if (password == null) {
+            throw new CodedException(X_INTERNAL_ERROR, "Cannot login to token %s, no password stored", tokenId);
+        }
+
+        Session session = token.openSession(SERIAL_SESSION, false, null, null);
+
+        try {
+            HardwareTokenUtil.login(session, password);
+        } catch (Exception e) {
+            session.closeSession();
+
+            throw e;
+        }
+
+        openSessions.incrementAndGet();
+
+        return session;
+    }
+
+    private void closeIdleSessions() {
+        Session session;
+
+        while ((session = idleSessions.poll()) != null) {
+            closeSession(session);
+        }
+    }
+
+    private void closeSession(Session session) {
+        openSessions.decrementAndGet();
+
+        try {
+            session.closeSession();
+        } catch (Exception e) {
+            log.warn("Failed to close session on token '{}'", workerId, e);
+        }
+    }
+
+    private static boolean isLoggedIn(Session session) {
+        try {
+            State state = session.getSessionInfo().getState();
+
+            return State.RO_USER_FUNCTIONS.equals(state) || State.RW_USER_FUNCTIONS.equals(state);
+        } catch (TokenException e) {
+            log.debug("Failed to get session info", e);
+
+            return false;
+        }
+    }
+
+    /**
+     * Operation carried out with a pooled session.
+     * @param <T> the type of the result
+     */
+    @FunctionalInterface
+    interface SessionTask<T> {
+        T execute(Session session) throws Exception;
+    }
+}
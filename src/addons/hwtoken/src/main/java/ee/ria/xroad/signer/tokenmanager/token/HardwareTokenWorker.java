@@ -36,8 +36,10 @@ import ee.ria.xroad.signer.protocol.message.ActivateToken;
 import ee.ria.xroad.signer.protocol.message.GenerateKey;
 import ee.ria.xroad.signer.tokenmanager.TokenManager;
 import ee.ria.xroad.signer.tokenmanager.module.ModuleConf;
+import ee.ria.xroad.signer.util.CalculateSignature;
 import ee.ria.xroad.signer.util.SignerUtil;
 
+import akka.actor.ActorRef;
 import iaik.pkcs.pkcs11.Mechanism;
 import iaik.pkcs.pkcs11.Session;
 import iaik.pkcs.pkcs11.Token;
@@ -58,6 +60,9 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.X_KEY_NOT_FOUND;
@@ -105,12 +110,16 @@ public class HardwareTokenWorker extends AbstractTokenWorker {
     // maps signature algorithm id and signing mechanism
     private final Map<String, Mechanism> signMechanisms;
 
-    // maps key id (hex) to RSAPrivateKey
-    private final Map<String, RSAPrivateKey> privateKeys = new HashMap<>();
+    // maps key id (hex) to RSAPrivateKey, also read by the pooled signing threads
+    private final Map<String, RSAPrivateKey> privateKeys = new ConcurrentHashMap<>();
     private final Map<String, List<X509PublicKeyCertificate>> certs = new HashMap<>();
 
     private Session activeSession;
 
+    // sessions used for signing, if the token is configured to sign in more than one session
+    private volatile HardwareTokenSessionPool signSessionPool;
+    private ExecutorService signExecutor;
+
     /**
      * @param tokenInfo the token info
      * @param tokenType the token type
@@ -173,6 +182,16 @@ public class HardwareTokenWorker extends AbstractTokenWorker {
 
     @Override
     public void preStart() throws Exception {
+        if (isSignSessionPoolEnabled()) {
+            signExecutor = Executors.newFixedThreadPool(tokenType.getSignSessionPoolSize(), r -> {
+                Thread signerThread = new Thread(r);
+                signerThread.setName(getWorkerId() + "-sign");
+                signerThread.setDaemon(true);
+
+                return signerThread;
+            });
+        }
+
         try {
             initialize();
             setTokenAvailable(tokenId, true);
@@ -195,6 +214,10 @@ public class HardwareTokenWorker extends AbstractTokenWorker {
     public void postStop() throws Exception {
         super.postStop();
 
+        if (signExecutor != null) {
+            signExecutor.shutdown();
+        }
+
         try {
             closeActiveSession();
         } catch (Exception e) {
@@ -211,10 +234,27 @@ public class HardwareTokenWorker extends AbstractTokenWorker {
             findPublicKeysForPrivateKeys();
             findCertificatesNotInConf();
         }
+
+        HardwareTokenSessionPool pool = signSessionPool;
+
+        if (pool != null) {
+            pool.checkSessions();
+        }
     }
 
     @Override
     protected void onMessage(Object message) throws Exception {
+        if (message instanceof CalculateSignature && signSessionPool != null) {
+            // signing is done in the pooled sessions, so that the worker can take the next request meanwhile
+            CalculateSignature signRequest = (CalculateSignature) message;
+            ActorRef sender = getSender();
+            ActorRef self = getSelf();
+
+            signExecutor.execute(() -> sender.tell(calculateSignature(signRequest), self));
+
+            return;
+        }
+
         try {
             super.onMessage(message);
         } finally {
@@ -398,6 +438,17 @@ public class HardwareTokenWorker extends AbstractTokenWorker {
     protected byte[] sign(String keyId, String signatureAlgorithmId, byte[] data) throws Exception {
         log.trace("sign({}, {})", keyId, signatureAlgorithmId);
 
+        HardwareTokenSessionPool pool = signSessionPool;
+
+        if (pool != null) {
+            RSAPrivateKey key = getPrivateKeyForSigning(keyId);
+            Mechanism signMechanism = getSignMechanism(signatureAlgorithmId);
+
+            log.debug("Signing with key '{}' and signature algorithm '{}'", keyId, signatureAlgorithmId);
+
+            return pool.execute(session -> sign(session, signMechanism, key, data));
+        }
+
         assertActiveSession();
 
         if (tokenType.isPinVerificationPerSigning()) {
@@ -410,6 +461,24 @@ public class HardwareTokenWorker extends AbstractTokenWorker {
             }
         }
 
+        RSAPrivateKey key = getPrivateKeyForSigning(keyId);
+
+        log.debug("Signing with key '{}' and signature algorithm '{}'", keyId, signatureAlgorithmId);
+
+        try {
+            return sign(activeSession, getSignMechanism(signatureAlgorithmId), key, data);
+        } finally {
+            if (tokenType.isPinVerificationPerSigning()) {
+                try {
+                    logout();
+                } catch (Exception e) {
+                    log.error("Logout failed", e);
+                }
+            }
+        }
+    }
+
+    private RSAPrivateKey getPrivateKeyForSigning(String keyId) {
         if (!isKeyAvailable(keyId)) {
             throw keyNotAvailable(keyId);
         }
@@ -421,28 +490,25 @@ public class HardwareTokenWorker extends AbstractTokenWorker {
                     keyId, tokenId);
         }
 
-        log.debug("Signing with key '{}' and signature algorithm '{}'", keyId, signatureAlgorithmId);
+        return key;
+    }
 
-        try {
-            Mechanism signMechanism = signMechanisms.get(signatureAlgorithmId);
+    private Mechanism getSignMechanism(String signatureAlgorithmId) {
+        Mechanism signMechanism = signMechanisms.get(signatureAlgorithmId);
 
-            if (signMechanism == null) {
-                throw CodedException.tr(X_UNSUPPORTED_SIGN_ALGORITHM, "unsupported_sign_algorithm",
-                        "Unsupported signature algorithm '%s'", signatureAlgorithmId);
-            }
+        if (signMechanism == null) {
+            throw CodedException.tr(X_UNSUPPORTED_SIGN_ALGORITHM, "unsupported_sign_algorithm",
+                    "Unsupported signature algorithm '%s'", signatureAlgorithmId);
+        }
 
-            activeSession.signInit(signMechanism, key);
+        return signMechanism;
+    }
 
-            return activeSession.sign(data);
-        } finally {
-            if (tokenType.isPinVerificationPerSigning()) {
-                try {
-                    logout();
-                } catch (Exception e) {
-                    log.error("Logout failed", e);
-                }
-            }
-        }
+    private static byte[] sign(Session session, Mechanism signMechanism, RSAPrivateKey key, byte[] data)
+            throws Exception {
+        session.signInit(signMechanism, key);
+
+        return session.sign(data);
     }
 
     // ------------------------------------------------------------------------
@@ -597,6 +663,8 @@ public class HardwareTokenWorker extends AbstractTokenWorker {
 
             throw e;
         }
+
+        openSignSessionPool();
     }
 
     private void logout() throws Exception {
@@ -604,6 +672,8 @@ public class HardwareTokenWorker extends AbstractTokenWorker {
             return;
         }
 
+        closeSignSessionPool();
+
         privateKeys.clear();
 
         log.trace("logout()");
@@ -631,6 +701,37 @@ public class HardwareTokenWorker extends AbstractTokenWorker {
         }
     }
 
+    private boolean isSignSessionPoolEnabled() {
+        // with PIN verification per signing the login state cannot be shared between sessions
+        return tokenType.getSignSessionPoolSize() > 1 && !tokenType.isPinVerificationPerSigning();
+    }
+
+    private void openSignSessionPool() {
+        if (!isSignSessionPoolEnabled() || signSessionPool != null) {
+            return;
+        }
+
+        HardwareTokenSessionPool pool = new HardwareTokenSessionPool(getToken(), tokenId, getWorkerId(),
+                tokenType.getSignSessionPoolSize());
+
+        try {
+            pool.open();
+
+            signSessionPool = pool;
+        } catch (Exception e) {
+            log.error("Failed to open signing sessions on token '{}', signing in the active session", getWorkerId(), e);
+        }
+    }
+
+    private void closeSignSessionPool() {
+        HardwareTokenSessionPool pool = signSessionPool;
+
+        if (pool != null) {
+            signSessionPool = null;
+            pool.close();
+        }
+    }
+
     private void loadPrivateKeys() throws Exception {
         if (activeSession == null) {
             return;
@@ -41,7 +41,16 @@ import org.bouncycastle.tsp.TimeStampToken;
 
 import java.io.InputStream;
 import java.security.cert.X509Certificate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
@@ -53,6 +62,19 @@ import static ee.ria.xroad.proxy.messagelog.TimestamperUtil.getTimestampResponse
 @RequiredArgsConstructor
 abstract class AbstractTimestampRequest {
 
+    private static final int HEDGING_PERCENTILE = MessageLogProperties.getTimestamperHedgingPercentile();
+
+    private static final TspLatencyTracker LATENCIES = new TspLatencyTracker(
+            MessageLogProperties.getTimestamperClientConnectTimeout()
+                    + MessageLogProperties.getTimestamperClientReadTimeout());
+
+    private static final ExecutorService HEDGING_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "timestamper-hedging");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
     protected final Long[] logRecords;
 
     abstract byte[] getRequestData() throws Exception;
@@ -78,20 +100,17 @@ abstract class AbstractTimestampRequest {
 
     protected Timestamper.TimestampResult makeTsRequest(TimeStampRequest tsRequest,
                                       List<String> tspUrls) throws Exception {
-        log.debug("tspUrls: {}", tspUrls);
-        for (String url: tspUrls) {
-            try {
-                log.debug("Sending time-stamp request to {}", url);
-
-                TsRequest req = new TsRequest(TimestamperUtil.makeTsRequest(tsRequest, url), url);
+        List<String> orderedUrls = LATENCIES.order(tspUrls);
 
-                TimeStampResponse tsResponse = getTimestampResponse(req.getInputStream());
-                log.info("tsresponse {}", tsResponse);
+        log.debug("tspUrls: {}", orderedUrls);
 
-                verify(tsRequest, tsResponse);
-
-                return result(tsResponse, url);
+        if (HEDGING_PERCENTILE > 0 && orderedUrls.size() > 1) {
+            return makeHedgedTsRequest(tsRequest, orderedUrls);
+        }
 
+        for (String url: orderedUrls) {
+            try {
+                return sendTsRequest(tsRequest, url);
             } catch (Exception ex) {
                 log.error("Failed to get time stamp from " + url, ex);
             }
@@ -102,6 +121,94 @@ abstract class AbstractTimestampRequest {
                 "Failed to get time stamp from any time-stamping providers");
     }
 
+    /**
+     * Sends the request to the first TSP and, in case it has not responded within the configured percentile of its
+     * recent response times or has failed, also to the next TSP, and so on. The first valid response is used, the
+     * responses to the other requests are discarded.
+     */
+    private Timestamper.TimestampResult makeHedgedTsRequest(TimeStampRequest tsRequest,
+                                      List<String> tspUrls) throws Exception {
+        CompletionService<Timestamper.TimestampResult> completionService =
+                new ExecutorCompletionService<>(HEDGING_EXECUTOR);
+        Map<Future<Timestamper.TimestampResult>, String> futureUrls = new HashMap<>();
+
+        int next = 0;
+        int pending = 0;
+
+        try {
+            while (pending > 0 || next < tspUrls.size()) {
+                Future<Timestamper.TimestampResult> completed = null;
+
+                if (pending > 0) {
+                    long hedgeDelay = next < tspUrls.size()
+                            ? LATENCIES.getPercentile(tspUrls.get(next - 1), HEDGING_PERCENTILE) : -1;
+
+                    completed = hedgeDelay < 0
+                            ? completionService.take()
+                            : completionService.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+                }
+
+                if (completed == null) {
+                    submit(completionService, tsRequest, tspUrls.get(next++), futureUrls);
+                    pending++;
+
+                    continue;
+                }
+
+                pending--;
+
+                try {
+                    return completed.get();
+                } catch (ExecutionException ex) {
+                    log.error("Failed to get time stamp from " + futureUrls.get(completed), ex.getCause());
+
+                    if (next < tspUrls.size()) {
+                        // Do not wait for the hedge delay once a request has failed
+                        submit(completionService, tsRequest, tspUrls.get(next++), futureUrls);
+                        pending++;
+                    }
+                }
+            }
+        } finally {
+            futureUrls.keySet().forEach(f -> f.cancel(true));
+        }
+
+        // All the URLs failed. Throw exception.
+        throw new RuntimeException(
+                "Failed to get time stamp from any time-stamping providers");
+    }
+
+    private void submit(CompletionService<Timestamper.TimestampResult> completionService,
+                        TimeStampRequest tsRequest, String url,
+                        Map<Future<Timestamper.TimestampResult>, String> futureUrls) {
+        futureUrls.put(completionService.submit(() -> sendTsRequest(tsRequest, url)), url);
+    }
+
+    private Timestamper.TimestampResult sendTsRequest(TimeStampRequest tsRequest, String url) throws Exception {
+        log.debug("Sending time-stamp request to {}", url);
+
+        long start = System.currentTimeMillis();
+
+        try {
+            TsRequest req = new TsRequest(TimestamperUtil.makeTsRequest(tsRequest, url), url);
+
+            TimeStampResponse tsResponse = getTimestampResponse(req.getInputStream());
+            log.info("tsresponse {}", tsResponse);
+
+            verify(tsRequest, tsResponse);
+
+            Timestamper.TimestampResult result = result(tsResponse, url);
+
+            LATENCIES.success(url, System.currentTimeMillis() - start);
+
+            return result;
+        } catch (Exception ex) {
+            LATENCIES.failure(url);
+
+            throw ex;
+        }
+    }
+
     private TimeStampRequest createTimestampRequest(byte[] data)
             throws Exception {
         TimeStampRequestGenerator reqgen = new TimeStampRequestGenerator();
@@ -51,9 +51,13 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Stream;
 
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveParallelism;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransactionBatchSize;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveTransferCommand;
 import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
@@ -62,7 +66,8 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 
 /**
  * Reads all non-archived time-stamped records from the database, writes them
- * to archive file and marks the records as archived.
+ * to archive file and marks the records as archived. The ASiC containers of the
+ * records are created in parallel, but written to the archive in order.
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -74,9 +79,32 @@ public class LogArchiver extends UntypedAbstractActor {
 
     public static final String START_ARCHIVING = "doArchive";
 
+    // Number of message records whose ASiC containers are created in parallel per pool thread
+    private static final int RECORDS_IN_PIPELINE_PER_THREAD = 4;
+
     private final Path archivePath;
     private final Path workingPath;
 
+    private ForkJoinPool containerPool;
+    private int pipelineSize = 1;
+
+    @Override
+    public void preStart() throws Exception {
+        int parallelism = getArchiveParallelism();
+
+        if (parallelism > 1) {
+            containerPool = new ForkJoinPool(parallelism);
+            pipelineSize = parallelism * RECORDS_IN_PIPELINE_PER_THREAD;
+        }
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        if (containerPool != null) {
+            containerPool.shutdownNow();
+        }
+    }
+
     @Override
     public void onReceive(Object message) {
         log.trace("onReceive({})", message);
@@ -115,17 +143,18 @@ public class LogArchiver extends UntypedAbstractActor {
                 for (TimestampRecord ts : batch) {
 
                     try (Stream<MessageRecord> records = getNonArchivedMessageRecords(session, ts.getId())) {
-                        recordsArchived += records.peek(record -> {
-                            try {
-                                if (archiveWriter.write(record)) {
-                                    runTransferCommand(getArchiveTransferCommand());
-                                }
-                                //evict record from persistence context to avoid running out of memory
-                                session.detach(record);
-                            } catch (Exception e) {
-                                throw new CodedException(ErrorCodes.X_INTERNAL_ERROR, e);
+                        final List<MessageRecord> pending = new ArrayList<>(pipelineSize);
+                        final Iterator<MessageRecord> iterator = records.iterator();
+
+                        while (iterator.hasNext()) {
+                            pending.add(iterator.next());
+
+                            if (pending.size() >= pipelineSize) {
+                                recordsArchived += writeMessageRecords(session, archiveWriter, pending);
                             }
-                        }).count();
+                        }
+
+                        recordsArchived += writeMessageRecords(session, archiveWriter, pending);
 
                         archiveWriter.write(ts);
                         recordsArchived++;
@@ -152,10 +181,26 @@ public class LogArchiver extends UntypedAbstractActor {
         });
     }
 
+    private int writeMessageRecords(Session session, LogArchiveWriter archiveWriter, List<MessageRecord> records)
+            throws Exception {
+        if (archiveWriter.write(records)) {
+            runTransferCommand(getArchiveTransferCommand());
+        }
+
+        //evict records from persistence context to avoid running out of memory
+        records.forEach(session::detach);
+
+        int count = records.size();
+        records.clear();
+
+        return count;
+    }
+
     private LogArchiveWriter createLogArchiveWriter(Session session) {
         return new LogArchiveWriter(
                 getArchivePath(),
-                this.new HibernateLogArchiveBase(session)
+                this.new HibernateLogArchiveBase(session),
+                containerPool
         );
     }
 
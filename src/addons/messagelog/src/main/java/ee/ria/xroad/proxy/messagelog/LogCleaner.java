@@ -25,6 +25,7 @@
  */
 package ee.ria.xroad.proxy.messagelog;
 
+import ee.ria.xroad.common.db.TablePartitions;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 
 import akka.actor.UntypedAbstractActor;
@@ -38,7 +39,8 @@ import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransactio
 
 
 /**
- * Deletes all archived log records from the database.
+ * Deletes all archived log records from the database. If the log record table
+ * is partitioned, partitions containing only archived records are dropped first.
  */
 @Slf4j
 public class LogCleaner extends UntypedAbstractActor {
@@ -46,6 +48,9 @@ public class LogCleaner extends UntypedAbstractActor {
     public static final String START_CLEANING = "doClean";
     public static final int CLEAN_BATCH_LIMIT = MessageLogProperties.getCleanTransactionBatchSize();
 
+    static final TablePartitions PARTITIONS =
+            new TablePartitions("logrecord", "create_logrecord_partitions", "drop_logrecord_partitions");
+
     @Override
     public void onReceive(Object message) {
         log.trace("onReceive({})", message);
@@ -68,9 +73,15 @@ public class LogCleaner extends UntypedAbstractActor {
     }
 
     protected long handleClean() throws Exception {
+        return cleanRecords(
+                Instant.now().minus(MessageLogProperties.getKeepRecordsForDays(), ChronoUnit.DAYS).toEpochMilli(),
+                PARTITIONS);
+    }
+
+    static long cleanRecords(long time, TablePartitions partitions) throws Exception {
+        doInTransaction(session -> partitions.maintain(session, time));
 
-        final Long time =
-                Instant.now().minus(MessageLogProperties.getKeepRecordsForDays(), ChronoUnit.DAYS).toEpochMilli();
+        // Removes the archived records that remain in the partitions that could not be dropped
         long count = 0;
         int removed;
         do {
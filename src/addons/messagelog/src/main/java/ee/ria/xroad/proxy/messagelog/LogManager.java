@@ -62,7 +62,11 @@ import scala.concurrent.duration.FiniteDuration;
 import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Objects;
 import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_LOGGING_FAILED_X;
@@ -97,6 +101,10 @@ public class LogManager extends AbstractLogManager {
     static final String TIMESTAMPER_NAME = "RequestLogTimestamper";
     static final String ARCHIVER_NAME = "RequestLogArchiver";
     static final String CLEANER_NAME = "RequestLogCleaner";
+    static final String SHARD_NAME_PREFIX = "RequestLogShard";
+    static final String RECORD_WRITER_NAME = "MessageLogRecordWriter";
+
+    static final String SHARD_DISPATCHER = "akka.message-log-shard-dispatcher";
 
     static final long MAX_LOGGABLE_BODY_SIZE = MessageLogProperties.getMaxLoggableBodySize();
     static final boolean TRUNCATED_BODY_ALLOWED = MessageLogProperties.isTruncatedBodyAllowed();
@@ -106,6 +114,8 @@ public class LogManager extends AbstractLogManager {
 
     private final ActorRef timestamper;
     private final ActorRef timestamperJob;
+    private final LogRecordWriter recordWriter;
+    private final List<ActorRef> shards;
 
     // package private for testing
     final ActorRef taskQueueRef;
@@ -120,6 +130,9 @@ public class LogManager extends AbstractLogManager {
         timestamperJob = createTimestamperJob();
         logArchiver = createArchiver(jobManager);
         logCleaner = createCleaner(jobManager);
+        shards = createShards();
+        // with sharding, every shard has its own writer
+        recordWriter = shards.isEmpty() ? createRecordWriter(this::saveMessageRecords, RECORD_WRITER_NAME) : null;
     }
 
     private ActorRef createTaskQueue() {
@@ -156,6 +169,49 @@ public class LogManager extends AbstractLogManager {
         return ref;
     }
 
+    /**
+     * Creates the group-commit writer for message records, if it is enabled.
+     * @param saver saves the batches of message records to the database
+     * @param name name of the writer thread
+     * @return the writer or null, if writing in batches is disabled
+     */
+    static LogRecordWriter createRecordWriter(LogRecordWriter.MessageRecordSaver saver, String name) {
+        int queueSize = MessageLogProperties.getWriteQueueSize();
+
+        if (queueSize <= 0) {
+            return null;
+        }
+
+        return new LogRecordWriter(saver, queueSize, MessageLogProperties.getWriteBatchSize(), name);
+    }
+
+    private List<ActorRef> createShards() {
+        int shardCount = MessageLogProperties.getShardCount();
+
+        if (shardCount <= 1) {
+            return Collections.emptyList();
+        }
+
+        List<ActorRef> refs = new ArrayList<>(shardCount);
+        LogRecordWriter.MessageRecordSaver saver = this::saveMessageRecords;
+
+        for (int i = 0; i < shardCount; i++) {
+            refs.add(getContext().actorOf(Props.create(LogShard.class, timestamper, saver)
+                    .withDispatcher(SHARD_DISPATCHER), SHARD_NAME_PREFIX + i));
+        }
+
+        return refs;
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        if (recordWriter != null) {
+            recordWriter.stop();
+        }
+
+        super.postStop();
+    }
+
     // ------------------------------------------------------------------------
 
     @Override
@@ -164,19 +220,49 @@ public class LogManager extends AbstractLogManager {
 
         verifyCanLogMessage(shouldTimestampImmediately);
 
-        MessageRecord logRecord;
-        if (message instanceof SoapLogMessage) {
-            logRecord = createMessageRecord((SoapLogMessage)message);
-        } else {
-            logRecord = createMessageRecord((RestLogMessage)message);
-        }
-        logRecord = saveMessageRecord(logRecord);
+        MessageRecord logRecord = saveMessageRecord(createMessageRecord(message));
 
         if (shouldTimestampImmediately) {
             timestampImmediately(logRecord);
         }
     }
 
+    /**
+     * Routes the message to a shard selected by the hash of the query id (or the client id, if there is no query id),
+     * so that messages of the same exchange are logged in order by the same shard.
+     */
+    private void logSharded(LogMessage message) {
+        boolean shouldTimestampImmediately = shouldTimestampImmediately();
+
+        verifyCanLogMessage(shouldTimestampImmediately);
+
+        Object key = message.getQueryId() != null ? message.getQueryId() : message.getClient();
+        ActorRef shard = shards.get(Math.floorMod(Objects.hashCode(key), shards.size()));
+
+        shard.forward(new LogShard.ShardLogMessage(message, shouldTimestampImmediately), getContext());
+    }
+
+    /**
+     * Queues the message record to the group-commit writer. The sender is replied only after the record has been
+     * committed to the database, so the message is still logged before the response is returned.
+     */
+    private void logAsync(LogMessage message) throws Exception {
+        verifyCanLogMessage(false);
+
+        MessageRecord logRecord = createMessageRecord(message);
+
+        final ActorRef sender = getSender();
+        final ActorRef self = getSelf();
+
+        recordWriter.submit(logRecord).whenComplete((record, error) -> {
+            if (error == null) {
+                sender.tell(new Object(), self);
+            } else {
+                sender.tell(error instanceof Exception ? error : new RuntimeException(error), self);
+            }
+        });
+    }
+
     @Override
     protected TimestampRecord timestamp(Long messageRecordId) throws Exception {
         log.trace("timestamp({})", messageRecordId);
@@ -212,6 +298,10 @@ public class LogManager extends AbstractLogManager {
                 getSender().tell(statusMap, getSelf());
             } else if (message instanceof SetTimestampingStatusMessage) {
                 setTimestampingStatus((SetTimestampingStatusMessage)message);
+            } else if (message instanceof LogMessage && !shards.isEmpty()) {
+                logSharded((LogMessage)message);
+            } else if (message instanceof LogMessage && recordWriter != null && !shouldTimestampImmediately()) {
+                logAsync((LogMessage)message);
             } else {
                 super.onReceive(message);
             }
@@ -240,6 +330,10 @@ public class LogManager extends AbstractLogManager {
     }
 
     private TimestampRecord timestampImmediately(MessageRecord logRecord) throws Exception {
+        return timestampImmediately(timestamper, logRecord);
+    }
+
+    static TimestampRecord timestampImmediately(ActorRef timestamper, MessageRecord logRecord) throws Exception {
         log.trace("timestampImmediately({})", logRecord);
 
         Object result = Await.result(Patterns.ask(timestamper, new Timestamper.TimestampTask(logRecord),
@@ -263,6 +357,14 @@ public class LogManager extends AbstractLogManager {
         }
     }
 
+    static MessageRecord createMessageRecord(LogMessage message) throws Exception {
+        if (message instanceof SoapLogMessage) {
+            return createMessageRecord((SoapLogMessage)message);
+        } else {
+            return createMessageRecord((RestLogMessage)message);
+        }
+    }
+
     private static MessageRecord createMessageRecord(SoapLogMessage message) throws Exception {
         log.trace("createMessageRecord()");
 
@@ -327,6 +429,14 @@ public class LogManager extends AbstractLogManager {
         return messageRecord;
     }
 
+    /**
+     * Saves the message records in one transaction. Used by the group-commit writer and the shards, so it is called
+     * outside of this actor and must not access its state.
+     */
+    protected void saveMessageRecords(List<MessageRecord> messageRecords) throws Exception {
+        LogRecordManager.saveMessageRecords(messageRecords);
+    }
+
     static TimestampRecord saveTimestampRecord(Timestamper.TimestampSucceeded message) throws Exception {
         log.trace("saveTimestampRecord()");
 
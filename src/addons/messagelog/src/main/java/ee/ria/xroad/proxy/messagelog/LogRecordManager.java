@@ -138,17 +138,46 @@ public final class LogRecordManager {
      */
     static void saveMessageRecord(MessageRecord messageRecord) throws Exception {
         doInTransaction(session -> {
-            //the blob must be created within hibernate session
-            final InputStream is = messageRecord.getAttachmentStream();
-            if (is != null) {
-                messageRecord.setAttachment(session.getLobHelper().createBlob(is,
-                        messageRecord.getAttachmentStreamSize()));
+            saveMessageRecord(session, messageRecord);
+            return null;
+        });
+    }
+
+    /**
+     * Saves the message records to database in one transaction. The inserts are sent to the database
+     * as JDBC batches of the configured batch size.
+     * @param messageRecords the message records to be saved.
+     * @throws Exception if an error occurs while communicating with database.
+     */
+    static void saveMessageRecords(List<MessageRecord> messageRecords) throws Exception {
+        log.trace("saveMessageRecords({})", messageRecords.size());
+
+        doInTransaction(session -> {
+            int batchSize = getConfiguredBatchSize(session);
+            int storedCount = 0;
+
+            for (MessageRecord messageRecord : messageRecords) {
+                saveMessageRecord(session, messageRecord);
+
+                if (++storedCount % batchSize == 0) {
+                    session.flush();
+                }
             }
-            save(session, messageRecord);
+
             return null;
         });
     }
 
+    private static void saveMessageRecord(Session session, MessageRecord messageRecord) {
+        //the blob must be created within hibernate session
+        final InputStream is = messageRecord.getAttachmentStream();
+        if (is != null) {
+            messageRecord.setAttachment(session.getLobHelper().createBlob(is,
+                    messageRecord.getAttachmentStreamSize()));
+        }
+        save(session, messageRecord);
+    }
+
     /**
      * Saves the message record in the database.
      * @param messageRecord the message record to be updated.
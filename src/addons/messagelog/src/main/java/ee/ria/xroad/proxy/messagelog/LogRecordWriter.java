@@ -0,0 +1,186 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.messagelog.MessageRecord;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group-commit writer for message records. Records submitted by concurrently logged messages are collected into
+ * a bounded queue and written to the database by a single writer thread as one batch in one transaction.
+ * The future returned for each record is completed only after the transaction containing it has been committed.
+ */
+@Slf4j
+class LogRecordWriter {
+
+    private static final long POLL_TIMEOUT_MS = 100;
+    private static final long STOP_TIMEOUT_MS = 10000;
+
+    private final MessageRecordSaver saver;
+    private final BlockingQueue<PendingRecord> queue;
+    private final int batchSize;
+    private final Thread writerThread;
+
+    private volatile boolean running = true;
+
+    /**
+     * Creates and starts the writer.
+     * @param saver saves the batches of message records to the database
+     * @param queueSize maximum number of records waiting to be written
+     * @param batchSize maximum number of records written in one transaction
+     * @param name name of the writer thread
+     */
+    LogRecordWriter(MessageRecordSaver saver, int queueSize, int batchSize, String name) {
+        this.saver = saver;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = Math.max(1, batchSize);
+        this.writerThread = new Thread(this::run, name);
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues the message record for writing. Blocks if the queue is full.
+     * @param messageRecord the message record to be saved
+     * @return future that is completed when the record has been committed to the database
+     * @throws InterruptedException if interrupted while waiting for space in the queue
+     */
+    CompletableFuture<MessageRecord> submit(MessageRecord messageRecord) throws InterruptedException {
+        if (!running) {
+            throw new IllegalStateException("Message record writer is stopped");
+        }
+
+        PendingRecord pending = new PendingRecord(messageRecord, new CompletableFuture<>());
+        queue.put(pending);
+
+        return pending.getResult();
+    }
+
+    /**
+     * Stops the writer after the already queued records have been written.
+     */
+    void stop() {
+        running = false;
+
+        try {
+            writerThread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<PendingRecord> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(p -> p.getResult().completeExceptionally(
+                new IllegalStateException("Message record writer is stopped")));
+    }
+
+    private void run() {
+        List<PendingRecord> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingRecord first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Throwable t) {
+                log.error("Unexpected error in message record writer", t);
+                batch.forEach(p -> p.getResult().completeExceptionally(t));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<PendingRecord> batch) {
+        log.trace("write({})", batch.size());
+
+        List<MessageRecord> records = new ArrayList<>(batch.size());
+        batch.forEach(p -> records.add(p.getMessageRecord()));
+
+        try {
+            saver.save(records);
+            batch.forEach(p -> p.getResult().complete(p.getMessageRecord()));
+        } catch (Exception e) {
+            if (batch.size() == 1) {
+                batch.get(0).getResult().completeExceptionally(e);
+            } else {
+                log.warn("Saving a batch of {} message records failed, saving them one by one", batch.size(), e);
+                batch.forEach(p -> writeSingle(p, e));
+            }
+        }
+    }
+
+    private void writeSingle(PendingRecord pending, Exception batchError) {
+        if (pending.getMessageRecord().getAttachmentStream() != null) {
+            // the attachment stream may have been consumed by the failed transaction and cannot be re-read
+            pending.getResult().completeExceptionally(batchError);
+            return;
+        }
+
+        try {
+            // the failed transaction may have assigned an id to the record
+            pending.getMessageRecord().setId(null);
+            saver.save(Collections.singletonList(pending.getMessageRecord()));
+            pending.getResult().complete(pending.getMessageRecord());
+        } catch (Exception e) {
+            pending.getResult().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Saves message records to the database in one transaction.
+     */
+    @FunctionalInterface
+    interface MessageRecordSaver {
+        void save(List<MessageRecord> messageRecords) throws Exception;
+    }
+
+    @Data
+    private static final class PendingRecord {
+        private final MessageRecord messageRecord;
+        private final CompletableFuture<MessageRecord> result;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.messagelog.LogMessage;
+import ee.ria.xroad.common.messagelog.MessageRecord;
+
+import akka.actor.ActorRef;
+import akka.actor.UntypedAbstractActor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+
+/**
+ * Message log shard. Creates and saves the message records of the messages routed to it by the log manager,
+ * so that several messages can be logged in parallel. Each shard has its own group-commit writer, if writing in
+ * batches is enabled. The log manager checks beforehand that the message may be logged, time-stamping itself is
+ * still done by the single time-stamper of the log manager.
+ */
+@Slf4j
+class LogShard extends UntypedAbstractActor {
+
+    private final ActorRef timestamper;
+    private final LogRecordWriter.MessageRecordSaver saver;
+
+    private LogRecordWriter recordWriter;
+
+    LogShard(ActorRef timestamper, LogRecordWriter.MessageRecordSaver saver) {
+        this.timestamper = timestamper;
+        this.saver = saver;
+    }
+
+    @Override
+    public void preStart() throws Exception {
+        super.preStart();
+
+        recordWriter = LogManager.createRecordWriter(saver,
+                LogManager.RECORD_WRITER_NAME + "-" + getSelf().path().name());
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        if (recordWriter != null) {
+            recordWriter.stop();
+        }
+
+        super.postStop();
+    }
+
+    @Override
+    public void onReceive(Object message) throws Exception {
+        log.trace("onReceive({})", message);
+
+        try {
+            if (message instanceof ShardLogMessage) {
+                handleLog((ShardLogMessage)message);
+            } else {
+                unhandled(message);
+            }
+        } catch (Exception e) {
+            getSender().tell(e, getSelf());
+        }
+    }
+
+    private void handleLog(ShardLogMessage message) throws Exception {
+        MessageRecord logRecord = LogManager.createMessageRecord(message.getMessage());
+
+        if (recordWriter != null && !message.isTimestampImmediately()) {
+            final ActorRef sender = getSender();
+            final ActorRef self = getSelf();
+
+            recordWriter.submit(logRecord).whenComplete((record, error) -> {
+                if (error == null) {
+                    sender.tell(new Object(), self);
+                } else {
+                    sender.tell(error instanceof Exception ? error : new RuntimeException(error), self);
+                }
+            });
+
+            return;
+        }
+
+        saver.save(Collections.singletonList(logRecord));
+
+        if (message.isTimestampImmediately()) {
+            LogManager.timestampImmediately(timestamper, logRecord);
+        }
+
+        getSender().tell(new Object(), getSelf());
+    }
+
+    /**
+     * Message to be logged by a shard.
+     */
+    @Data
+    static final class ShardLogMessage {
+        private final LogMessage message;
+        private final boolean timestampImmediately;
+    }
+}
@@ -25,6 +25,7 @@
  */
 package ee.ria.xroad.proxy.messagelog;
 
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampFailed;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSucceeded;
@@ -34,18 +35,33 @@ import akka.actor.ActorRef;
 import akka.actor.ActorSelection;
 import akka.actor.UntypedAbstractActor;
 import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
 
 import static ee.ria.xroad.proxy.messagelog.LogManager.TIMESTAMPER_NAME;
 import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
 
 /**
  * Handles the TaskQueues -- adds tasks to the queue and sends the active queue for time-stamping.
+ *
+ * Up to timestamp-max-concurrent-batches batches are in progress at the same time. The batches are selected in
+ * the order of the message record ids and each batch continues after the last record of the previous one, skipping
+ * the records of the batches in progress, so the batches in progress never share records. When a batch fails,
+ * selection continues from its first record. With more than one batch in progress the number of records in a batch
+ * is adapted to the time-stamping duration.
+ *
+ * With a single batch at a time, as by default, every time-stamping round sends all the records that are not
+ * time-stamped yet, including the ones of the previous round, so that a lost reply does not hold the records back.
  */
 @Slf4j
 @RequiredArgsConstructor(access = AccessLevel.PACKAGE)
@@ -56,6 +72,19 @@ public class TaskQueue extends UntypedAbstractActor {
     static final double TIMESTAMPED_RECORDS_RATIO_THRESHOLD = 0.7;
     static final int TIMESTAMP_RECORDS_LIMIT_RETRY_MODE = 1;
 
+    // A batch without any reply for this long is no longer considered to be in progress
+    private static final long BATCH_EXPIRY_MILLIS = 3L * (MessageLogProperties.getTimestamperClientConnectTimeout()
+            + MessageLogProperties.getTimestamperClientReadTimeout());
+
+    // Batches in progress by their first message record id
+    private final NavigableMap<Long, Batch> batchesInProgress = new TreeMap<>();
+
+    // The last message record id selected for time-stamping
+    private long lastClaimedRecordId = 0;
+
+    // The adapted maximum number of records in a batch, 0 until adapted for the first time
+    private int batchRecordsLimit = 0;
+
     @Override
     public void onReceive(Object message) throws Exception {
         log.trace("onReceive({})", message);
@@ -63,7 +92,7 @@ public class TaskQueue extends UntypedAbstractActor {
         if (message.equals(START_TIMESTAMPING)) {
             handleStartTimestamping();
         } else if (message.equals(START_TIMESTAMPING_RETRY_MODE)) {
-            handleStartTimestamping(TIMESTAMP_RECORDS_LIMIT_RETRY_MODE);
+            handleStartTimestampingRetryMode();
         } else if (message instanceof Timestamper.TimestampSucceeded) {
             handleTimestampSucceeded((Timestamper.TimestampSucceeded) message);
         } else if (message instanceof Timestamper.TimestampFailed) {
@@ -80,6 +109,7 @@ public class TaskQueue extends UntypedAbstractActor {
             log.trace("Time-stamped message records {}", Arrays.toString(message.getMessageRecords()));
         }
 
+        Batch batch = batchesInProgress.remove(message.getMessageRecords()[0]);
         boolean succeeded = true;
 
         try {
@@ -88,13 +118,20 @@ public class TaskQueue extends UntypedAbstractActor {
             log.error("Failed to save time-stamp record to database", e);
 
             succeeded = false;
+            rewindTo(message.getMessageRecords()[0]);
         } finally {
             if (succeeded) {
                 indicateSuccess();
+
+                if (batch != null) {
+                    adaptBatchRecordsLimit(System.currentTimeMillis() - batch.getStartTime());
+                }
+
                 // If time-stamped records count equals to time-stamp records limit, there are probably
                 // still records to be time-stamped. Init another another time-stamping round to prevent
                 // messagelog records to begin to bloat.
-                if (message.getMessageRecords().length == MessageLogProperties.getTimestampRecordsLimit()) {
+                if (message.getMessageRecords().length == MessageLogProperties.getTimestampRecordsLimit()
+                        || batch != null && message.getMessageRecords().length == batch.getRecordsLimit()) {
                     log.info("Time-stamped records count equaled to time-stamp records limit");
                     handleStartTimestamping();
                 }
@@ -135,6 +172,17 @@ public class TaskQueue extends UntypedAbstractActor {
     protected void handleTimestampFailed(TimestampFailed message) {
         log.trace("handleTimestampFailed");
 
+        if (message.getMessageRecords() != null && message.getMessageRecords().length > 0
+                && batchesInProgress.remove(message.getMessageRecords()[0]) != null) {
+            rewindTo(message.getMessageRecords()[0]);
+
+            if (isPipelined()) {
+                batchRecordsLimit = Math.max(1, getBatchRecordsLimit() / 2);
+
+                log.info("Decreased time-stamp batch size to {} records", batchRecordsLimit);
+            }
+        }
+
         indicateFailure();
     }
 
@@ -142,21 +190,89 @@ public class TaskQueue extends UntypedAbstractActor {
         handleStartTimestamping(MessageLogProperties.getTimestampRecordsLimit());
     }
 
+    protected void handleStartTimestampingRetryMode() {
+        // Only one record is time-stamped to find out whether time-stamping works again
+        startTimestamping(TIMESTAMP_RECORDS_LIMIT_RETRY_MODE, 1);
+    }
+
     protected void handleStartTimestamping(int timestampRecordsLimit) {
-        List<Task> timestampTasks;
+        startTimestamping(timestampRecordsLimit,
+                Math.max(1, MessageLogProperties.getTimestampMaxConcurrentBatches()));
+    }
 
-        try {
-            timestampTasks = doInTransaction(session -> getTimestampTasks(session, timestampRecordsLimit));
-        } catch (Exception e) {
-            log.error("Error getting time-stamp tasks", e);
+    private void startTimestamping(int timestampRecordsLimit, int maxBatches) {
+        if (!GlobalConf.isValid()) {
+            // The time-stamper would drop the batches, leaving them in progress
+            log.trace("Global configuration is not valid, time-stamping skipped");
 
             return;
         }
 
-        if (timestampTasks.isEmpty()) {
-            log.trace("Nothing to time-stamp, task queue is empty");
+        if (!isPipelined()) {
+            // A batch whose reply is lost must not hold the records back
+            batchesInProgress.clear();
+        }
 
-            return;
+        removeExpiredBatches();
+
+        if (batchesInProgress.isEmpty()) {
+            // Start over from the beginning, records of failed batches are time-stamped again
+            lastClaimedRecordId = 0;
+        }
+
+        while (batchesInProgress.size() < maxBatches) {
+            int recordsLimit = isPipelined()
+                    ? Math.min(timestampRecordsLimit, getBatchRecordsLimit()) : timestampRecordsLimit;
+
+            if (!startBatch(recordsLimit)) {
+                return;
+            }
+        }
+
+        log.trace("Maximum number of time-stamp batches in progress");
+    }
+
+    private boolean startBatch(int timestampRecordsLimit) {
+        List<Task> timestampTasks;
+
+        while (true) {
+            long fromRecordId = lastClaimedRecordId;
+
+            try {
+                timestampTasks = doInTransaction(session -> getTimestampTasks(session, fromRecordId,
+                        timestampRecordsLimit));
+            } catch (Exception e) {
+                log.error("Error getting time-stamp tasks", e);
+
+                return false;
+            }
+
+            if (timestampTasks.isEmpty()) {
+                log.trace("Nothing to time-stamp, task queue is empty");
+
+                return false;
+            }
+
+            long firstRecordId = timestampTasks.get(0).getMessageRecordNo();
+            Map.Entry<Long, Batch> claimed = batchesInProgress.floorEntry(firstRecordId);
+
+            if (claimed != null && claimed.getValue().getLastRecordId() >= firstRecordId) {
+                // The records belong to a batch in progress, continue after it
+                lastClaimedRecordId = claimed.getValue().getLastRecordId();
+
+                continue;
+            }
+
+            Long nextClaimedRecordId = batchesInProgress.higherKey(firstRecordId);
+
+            if (nextClaimedRecordId != null) {
+                // Stop before the records of the next batch in progress
+                timestampTasks = timestampTasks.stream()
+                        .filter(task -> task.getMessageRecordNo() < nextClaimedRecordId)
+                        .collect(Collectors.toList());
+            }
+
+            break;
         }
 
         int timestampTasksSize = timestampTasks.size();
@@ -169,7 +285,72 @@ public class TaskQueue extends UntypedAbstractActor {
                     TIMESTAMPED_RECORDS_RATIO_THRESHOLD * 100);
         }
 
+        lastClaimedRecordId = timestampTasks.get(timestampTasksSize - 1).getMessageRecordNo();
+        batchesInProgress.put(timestampTasks.get(0).getMessageRecordNo(),
+                new Batch(lastClaimedRecordId, timestampRecordsLimit, System.currentTimeMillis()));
+
         sendToTimestamper(createTimestampTask(timestampTasks));
+
+        return true;
+    }
+
+    protected long getBatchExpiryMillis() {
+        return BATCH_EXPIRY_MILLIS;
+    }
+
+    private void removeExpiredBatches() {
+        long expiryMillis = getBatchExpiryMillis();
+        long expiredBefore = System.currentTimeMillis() - expiryMillis;
+
+        Iterator<Map.Entry<Long, Batch>> batches = batchesInProgress.entrySet().iterator();
+
+        while (batches.hasNext()) {
+            Map.Entry<Long, Batch> batch = batches.next();
+
+            if (batch.getValue().getStartTime() < expiredBefore) {
+                log.warn("No time-stamping result received in {} ms, time-stamping the records again",
+                        expiryMillis);
+
+                batches.remove();
+                rewindTo(batch.getKey());
+            }
+        }
+    }
+
+    /**
+     * Makes the next batch start from the given record, which is no longer in progress.
+     */
+    private void rewindTo(long recordId) {
+        lastClaimedRecordId = Math.min(lastClaimedRecordId, recordId - 1);
+    }
+
+    private static boolean isPipelined() {
+        return MessageLogProperties.getTimestampMaxConcurrentBatches() > 1;
+    }
+
+    private int getBatchRecordsLimit() {
+        int timestampRecordsLimit = MessageLogProperties.getTimestampRecordsLimit();
+
+        return batchRecordsLimit == 0 ? timestampRecordsLimit : Math.min(batchRecordsLimit, timestampRecordsLimit);
+    }
+
+    private void adaptBatchRecordsLimit(long duration) {
+        if (!isPipelined()) {
+            return;
+        }
+
+        int current = getBatchRecordsLimit();
+
+        if (duration > MessageLogProperties.getTimestampBatchTargetDuration()) {
+            batchRecordsLimit = Math.max(1, current / 2);
+        } else {
+            batchRecordsLimit = (int) Math.min((long) current * 2, MessageLogProperties.getTimestampRecordsLimit());
+        }
+
+        if (batchRecordsLimit != current) {
+            log.info("Time-stamped batch in {} ms, changed time-stamp batch size to {} records", duration,
+                    batchRecordsLimit);
+        }
     }
 
     private void sendToTimestamper(TimestampTask timestampTask) {
@@ -200,8 +381,11 @@ public class TaskQueue extends UntypedAbstractActor {
     }
 
     @SuppressWarnings("unchecked")
-    private List<Task> getTimestampTasks(Session session, int timestampRecordsLimit) {
-        return session.createQuery(getTaskQueueQuery()).setMaxResults(timestampRecordsLimit).list();
+    private List<Task> getTimestampTasks(Session session, long fromRecordId, int timestampRecordsLimit) {
+        return session.createQuery(getTaskQueueQuery() + " and m.id > :fromRecordId order by m.id")
+                .setParameter("fromRecordId", fromRecordId)
+                .setMaxResults(timestampRecordsLimit)
+                .list();
     }
 
     @SuppressWarnings("unchecked")
@@ -217,4 +401,12 @@ public class TaskQueue extends UntypedAbstractActor {
     private static String getTaskQueueSizeQuery() {
         return "select COUNT(*) from MessageRecord m where m.signatureHash is not null";
     }
+
+    @Getter
+    @RequiredArgsConstructor
+    private static final class Batch {
+        private final long lastRecordId;
+        private final int recordsLimit;
+        private final long startTime;
+    }
 }
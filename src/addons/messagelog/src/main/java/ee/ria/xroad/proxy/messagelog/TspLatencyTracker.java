@@ -0,0 +1,143 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of the response times of the time-stamping providers. Each TSP
+ * gets an exponentially weighted moving average of its response times, used
+ * for preferring the fastest TSP, and a window of its recent response times,
+ * used for deciding when to send a hedged request to the next TSP. Failed
+ * requests count as taking the given penalty time.
+ */
+final class TspLatencyTracker {
+
+    static final double EWMA_ALPHA = 0.2;
+
+    static final int WINDOW_SIZE = 64;
+
+    static final int MIN_SAMPLES = 10;
+
+    private final Map<String, Latency> latencies = new ConcurrentHashMap<>();
+
+    private final long failurePenaltyMillis;
+
+    TspLatencyTracker(long failurePenaltyMillis) {
+        this.failurePenaltyMillis = failurePenaltyMillis;
+    }
+
+    /**
+     * Records a successful request.
+     * @param url the TSP URL
+     * @param millis the response time in milliseconds
+     */
+    void success(String url, long millis) {
+        latencies.computeIfAbsent(url, k -> new Latency()).add(millis, true);
+    }
+
+    /**
+     * Records a failed request.
+     * @param url the TSP URL
+     */
+    void failure(String url) {
+        latencies.computeIfAbsent(url, k -> new Latency()).add(failurePenaltyMillis, false);
+    }
+
+    /**
+     * @param tspUrls the TSP URLs
+     * @return the URLs ordered by their average response times, the TSPs
+     * without any requests yet come first in their original order
+     */
+    List<String> order(List<String> tspUrls) {
+        List<String> ordered = new ArrayList<>(tspUrls);
+        ordered.sort(Comparator.comparingDouble(this::getAverage));
+
+        return ordered;
+    }
+
+    /**
+     * @param url the TSP URL
+     * @return the average response time of the TSP in milliseconds, 0 if
+     * there have been no requests yet
+     */
+    double getAverage(String url) {
+        Latency latency = latencies.get(url);
+
+        return latency == null ? 0 : latency.getAverage();
+    }
+
+    /**
+     * @param url the TSP URL
+     * @param percentile the percentile between 1 and 99
+     * @return the given percentile of the recent successful response times of
+     * the TSP in milliseconds, or -1 if there are not enough of them
+     */
+    long getPercentile(String url, int percentile) {
+        Latency latency = latencies.get(url);
+
+        return latency == null ? -1 : latency.getPercentile(percentile);
+    }
+
+    private static final class Latency {
+        private final long[] window = new long[WINDOW_SIZE];
+        private int samples;
+        private int next;
+        private double average = -1;
+
+        synchronized void add(long millis, boolean succeeded) {
+            average = average < 0 ? millis : EWMA_ALPHA * millis + (1 - EWMA_ALPHA) * average;
+
+            if (succeeded) {
+                window[next] = millis;
+                next = (next + 1) % WINDOW_SIZE;
+                samples = Math.min(samples + 1, WINDOW_SIZE);
+            }
+        }
+
+        synchronized double getAverage() {
+            return Math.max(average, 0);
+        }
+
+        synchronized long getPercentile(int percentile) {
+            if (samples < MIN_SAMPLES) {
+                return -1;
+            }
+
+            long[] sorted = Arrays.copyOf(window, samples);
+            Arrays.sort(sorted);
+
+            int index = (int) Math.ceil(percentile / 100.0 * samples) - 1;
+
+            return sorted[Math.max(0, Math.min(index, samples - 1))];
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.db.TablePartitions;
+import ee.ria.xroad.common.messagelog.TimestampRecord;
+
+import org.hibernate.Session;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.cleanUpDatabase;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.initForTest;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Tests removing the archived log records with and without partitions.
+ */
+public class LogCleanerTest {
+
+    private static final long PARTITION_UPPER_BOUND = 1000L;
+    private static final long CLEAN_BEFORE = 2000L;
+
+    /**
+     * Stores two archived records in an outdated partition, an archived and
+     * a not archived record in the partition containing the boundary and an
+     * archived record after the boundary.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Before
+    public void setUp() throws Exception {
+        initForTest();
+
+        doInTransaction(session -> {
+            save(session, 100L, true);
+            save(session, 200L, true);
+            save(session, 1500L, true);
+            save(session, 1500L, false);
+            save(session, 3000L, true);
+
+            return null;
+        });
+    }
+
+    /**
+     * Cleanup test environment for other tests.
+     * @throws Exception in case of any unexpected errors
+     */
+    @After
+    public void tearDown() throws Exception {
+        cleanUpDatabase();
+    }
+
+    @Test
+    public void cleanRecordsOfUnpartitionedTable() throws Exception {
+        long removed = LogCleaner.cleanRecords(CLEAN_BEFORE, LogCleaner.PARTITIONS);
+
+        assertEquals(3, removed);
+        assertFalse(doInTransaction(LogCleaner.PARTITIONS::isPartitioned));
+        assertEquals(2, countRecords());
+    }
+
+    @Test
+    public void cleanRecordsOfPartitionedTable() throws Exception {
+        PartitionsMock partitions = new PartitionsMock();
+
+        long removed = LogCleaner.cleanRecords(CLEAN_BEFORE, partitions);
+
+        // The records of the dropped partition are not deleted row by row
+        assertEquals(1, removed);
+        assertEquals(Long.valueOf(CLEAN_BEFORE), partitions.droppedBefore);
+        assertEquals(1, partitions.created);
+        assertEquals(2, countRecords());
+    }
+
+    private static void save(Session session, long time, boolean archived) {
+        TimestampRecord record = new TimestampRecord();
+        record.setTime(time);
+        record.setArchived(archived);
+        record.setTimestamp("timestamp");
+        record.setHashChainResult("hashChainResult");
+
+        session.save(record);
+    }
+
+    private static long countRecords() throws Exception {
+        return doInTransaction(session -> session.createQuery("select count(*) from AbstractLogRecord", Long.class)
+                .getSingleResult());
+    }
+
+    /**
+     * Simulates a partitioned table by deleting the records of the dropped
+     * partition, which ends before the cleaning boundary.
+     */
+    private static final class PartitionsMock extends TablePartitions {
+
+        private Long droppedBefore;
+        private int created;
+
+        PartitionsMock() {
+            super("logrecord", "create_logrecord_partitions", "drop_logrecord_partitions");
+        }
+
+        @Override
+        public boolean isPartitioned(Session session) {
+            return true;
+        }
+
+        @Override
+        public int dropPartitionsBefore(Session session, long before) {
+            droppedBefore = before;
+
+            session.createQuery("delete AbstractLogRecord r where r.time < :bound")
+                    .setParameter("bound", PARTITION_UPPER_BOUND)
+                    .executeUpdate();
+
+            return 1;
+        }
+
+        @Override
+        public int createPartitions(Session session) {
+            return ++created;
+        }
+    }
+}
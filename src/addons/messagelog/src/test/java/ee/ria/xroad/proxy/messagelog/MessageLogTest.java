@@ -34,6 +34,7 @@ import ee.ria.xroad.common.messagelog.AbstractLogRecord;
 import ee.ria.xroad.common.messagelog.LogRecord;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
+import ee.ria.xroad.common.messagelog.SoapLogMessage;
 import ee.ria.xroad.common.messagelog.TimestampRecord;
 import ee.ria.xroad.common.messagelog.archive.DigestEntry;
 import ee.ria.xroad.common.signature.SignatureData;
@@ -42,6 +43,8 @@ import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampFailed;
 import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSucceeded;
 
 import akka.actor.Props;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.filefilter.RegexFileFilter;
@@ -50,6 +53,8 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import scala.concurrent.Await;
+import scala.concurrent.Future;
 import scala.concurrent.duration.Duration;
 import scala.concurrent.duration.FiniteDuration;
 
@@ -62,7 +67,9 @@ import java.io.FileFilter;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
@@ -75,6 +82,7 @@ import static ee.ria.xroad.proxy.messagelog.TestUtil.createMessage;
 import static ee.ria.xroad.proxy.messagelog.TestUtil.createSignature;
 import static ee.ria.xroad.proxy.messagelog.TestUtil.initForTest;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -173,6 +181,31 @@ public class MessageLogTest extends AbstractMessageLogTest {
         log.info("dead letters: " + getDeadLetters());
     }
 
+    /**
+     * Logs 5 messages through the actor without waiting for the replies in between. The records are written by
+     * the group-commit writer and every sender must get a reply after its record has been saved.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void logMessagesWithGroupCommit() throws Exception {
+        log.trace("logMessagesWithGroupCommit()");
+
+        Timeout timeout = new Timeout(5, TimeUnit.SECONDS);
+        List<Future<Object>> results = new ArrayList<>();
+
+        for (int i = 0; i < 5; i++) {
+            results.add(Patterns.ask(getLogManagerRef(),
+                    new SoapLogMessage(createMessage(), createSignature(), true), timeout));
+        }
+
+        for (Future<Object> result : results) {
+            Object reply = Await.result(result, timeout.duration());
+            assertFalse("Got " + reply, reply instanceof Exception);
+        }
+
+        assertTaskQueueSize(5);
+    }
+
     /**
      * Log message with xRequestId
      * @throws Exception in case of any unexpected errors
@@ -671,6 +704,17 @@ public class MessageLogTest extends AbstractMessageLogTest {
             return super.saveMessageRecord(messageRecord);
         }
 
+        @Override
+        protected void saveMessageRecords(List<MessageRecord> messageRecords) throws Exception {
+            log.info("saving {} message records", messageRecords.size());
+
+            if (logRecordTime != null) {
+                messageRecords.forEach(r -> r.setTime(logRecordTime.getTime()));
+            }
+
+            super.saveMessageRecords(messageRecords);
+        }
+
         @Override
         void setTimestampingStatus(SetTimestampingStatusMessage statusMessage) {
             super.setTimestampingStatus(statusMessage);
@@ -0,0 +1,248 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
+import ee.ria.xroad.common.messagelog.MessageRecord;
+import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampFailed;
+import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampSucceeded;
+import ee.ria.xroad.proxy.messagelog.Timestamper.TimestampTask;
+
+import akka.actor.AbstractActor;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.TestActorRef;
+import akka.testkit.javadsl.TestKit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static ee.ria.xroad.proxy.messagelog.LogManager.TIMESTAMPER_NAME;
+import static ee.ria.xroad.proxy.messagelog.MessageLogDatabaseCtx.doInTransaction;
+import static ee.ria.xroad.proxy.messagelog.TaskQueue.START_TIMESTAMPING;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.cleanUpDatabase;
+import static ee.ria.xroad.proxy.messagelog.TestUtil.initForTest;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Tests the selection of the records to time-stamp, with and without
+ * concurrent batches.
+ */
+public class TaskQueueTest {
+
+    private static final Duration NO_MESSAGE = Duration.ofMillis(200);
+
+    private ActorSystem system;
+    private TestKit timestamper;
+    private TestActorRef<ExpiringTaskQueue> taskQueue;
+    private List<Long> records;
+
+    /**
+     * Stores six records to time-stamp, in batches of at most two records.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Before
+    public void setUp() throws Exception {
+        initForTest();
+        System.setProperty(MessageLogProperties.TIMESTAMP_RECORDS_LIMIT, "2");
+
+        system = ActorSystem.create("TaskQueueTest");
+        timestamper = new TestKit(system);
+        system.actorOf(Props.create(Forwarder.class, timestamper.getRef()), TIMESTAMPER_NAME);
+        taskQueue = TestActorRef.create(system, Props.create(ExpiringTaskQueue.class), "taskQueue");
+
+        records = saveRecords(6);
+    }
+
+    /**
+     * Cleanup test environment for other tests.
+     * @throws Exception in case of any unexpected errors
+     */
+    @After
+    public void tearDown() throws Exception {
+        System.clearProperty(MessageLogProperties.TIMESTAMP_RECORDS_LIMIT);
+        System.clearProperty(MessageLogProperties.TIMESTAMP_MAX_CONCURRENT_BATCHES);
+
+        TestKit.shutdownActorSystem(system);
+        cleanUpDatabase();
+    }
+
+    @Test
+    public void resendRecordsOnEveryRoundWithoutPipelining() {
+        taskQueue.tell(START_TIMESTAMPING, ActorRef.noSender());
+        expectBatch(0, 1);
+
+        // The reply may have been lost, the records are sent again
+        taskQueue.tell(START_TIMESTAMPING, ActorRef.noSender());
+        expectBatch(0, 1);
+    }
+
+    @Test
+    public void pipelinedBatches() {
+        System.setProperty(MessageLogProperties.TIMESTAMP_MAX_CONCURRENT_BATCHES, "3");
+
+        taskQueue.tell(START_TIMESTAMPING, ActorRef.noSender());
+        expectBatch(0, 1);
+        expectBatch(2, 3);
+        expectBatch(4, 5);
+
+        // The records of the batches in progress are not sent again
+        taskQueue.tell(START_TIMESTAMPING, ActorRef.noSender());
+        timestamper.expectNoMessage(NO_MESSAGE);
+    }
+
+    @Test
+    public void outOfOrderCompletion() throws Exception {
+        System.setProperty(MessageLogProperties.TIMESTAMP_MAX_CONCURRENT_BATCHES, "3");
+
+        taskQueue.tell(START_TIMESTAMPING, ActorRef.noSender());
+        expectBatch(0, 1);
+        expectBatch(2, 3);
+        expectBatch(4, 5);
+
+        records.addAll(saveRecords(2));
+
+        // The completed batch in the middle makes room for the new records only
+        taskQueue.tell(succeeded(2, 3), ActorRef.noSender());
+        expectBatch(6, 7);
+
+        taskQueue.tell(succeeded(4, 5), ActorRef.noSender());
+        taskQueue.tell(succeeded(0, 1), ActorRef.noSender());
+        timestamper.expectNoMessage(NO_MESSAGE);
+    }
+
+    @Test
+    public void rewindAfterFailure() {
+        System.setProperty(MessageLogProperties.TIMESTAMP_MAX_CONCURRENT_BATCHES, "3");
+
+        taskQueue.tell(START_TIMESTAMPING, ActorRef.noSender());
+        expectBatch(0, 1);
+        expectBatch(2, 3);
+        expectBatch(4, 5);
+
+        taskQueue.tell(new TimestampFailed(recordIds(2, 3), new Exception("failed")), ActorRef.noSender());
+
+        // The failed records are sent again in smaller batches, up to the next batch in progress
+        taskQueue.tell(START_TIMESTAMPING, ActorRef.noSender());
+        expectBatch(2);
+        timestamper.expectNoMessage(NO_MESSAGE);
+    }
+
+    @Test
+    public void expiredBatches() throws Exception {
+        System.setProperty(MessageLogProperties.TIMESTAMP_MAX_CONCURRENT_BATCHES, "3");
+        taskQueue.underlyingActor().batchExpiryMillis = 100;
+
+        taskQueue.tell(START_TIMESTAMPING, ActorRef.noSender());
+        expectBatch(0, 1);
+        expectBatch(2, 3);
+        expectBatch(4, 5);
+
+        Thread.sleep(200);
+
+        // No reply arrived in time, the records are sent again
+        taskQueue.tell(START_TIMESTAMPING, ActorRef.noSender());
+        expectBatch(0, 1);
+        expectBatch(2, 3);
+        expectBatch(4, 5);
+    }
+
+    private void expectBatch(int... indexes) {
+        assertArrayEquals(recordIds(indexes), timestamper.expectMsgClass(TimestampTask.class).getMessageRecords());
+    }
+
+    private TimestampSucceeded succeeded(int... indexes) {
+        return new TimestampSucceeded(recordIds(indexes), new byte[0], "hashChainResult", new String[0], "url");
+    }
+
+    private Long[] recordIds(int... indexes) {
+        return Arrays.stream(indexes).mapToObj(records::get).toArray(Long[]::new);
+    }
+
+    private static List<Long> saveRecords(int count) throws Exception {
+        ClientId clientId = ClientId.create("instance", "memberclass", "membercode", null);
+
+        return doInTransaction(session -> {
+            List<Long> ids = new ArrayList<>();
+
+            for (int i = 0; i < count; i++) {
+                MessageRecord record = new MessageRecord("qid", "message", "signature", false, clientId, null);
+                record.setTime(System.currentTimeMillis());
+                record.setSignatureHash("signatureHash");
+
+                ids.add((Long) session.save(record));
+            }
+
+            return ids;
+        });
+    }
+
+    /**
+     * Task queue with a configurable batch expiry, which marks the records as
+     * time-stamped instead of saving the time-stamps.
+     */
+    static final class ExpiringTaskQueue extends TaskQueue {
+
+        private long batchExpiryMillis = Long.MAX_VALUE / 2;
+
+        @Override
+        protected long getBatchExpiryMillis() {
+            return batchExpiryMillis;
+        }
+
+        @Override
+        protected void saveTimestampRecord(TimestampSucceeded message) throws Exception {
+            doInTransaction(session -> session
+                    .createQuery("update MessageRecord m set m.signatureHash = null where m.id in (:ids)")
+                    .setParameterList("ids", Arrays.asList(message.getMessageRecords()))
+                    .executeUpdate());
+        }
+    }
+
+    /**
+     * Stands in for the time-stamper, keeping the task queue as the sender.
+     */
+    static final class Forwarder extends AbstractActor {
+
+        private final ActorRef target;
+
+        Forwarder(ActorRef target) {
+            this.target = target;
+        }
+
+        @Override
+        public Receive createReceive() {
+            return receiveBuilder().matchAny(message -> target.forward(message, getContext())).build();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.messagelog;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests the time-stamping provider response time tracking.
+ */
+public class TspLatencyTrackerTest {
+
+    private static final String TSP1 = "http://tsp1";
+    private static final String TSP2 = "http://tsp2";
+    private static final String TSP3 = "http://tsp3";
+
+    private static final long FAILURE_PENALTY = 10000;
+
+    /**
+     * Test that the TSPs are ordered by their average response times.
+     */
+    @Test
+    public void orderByAverageResponseTime() {
+        TspLatencyTracker tracker = new TspLatencyTracker(FAILURE_PENALTY);
+        List<String> urls = Arrays.asList(TSP1, TSP2, TSP3);
+
+        assertEquals(urls, tracker.order(urls));
+
+        tracker.success(TSP1, 500);
+        tracker.success(TSP2, 100);
+
+        // TSP3 has no requests yet and is tried first
+        assertEquals(Arrays.asList(TSP3, TSP2, TSP1), tracker.order(urls));
+
+        tracker.success(TSP3, 300);
+        tracker.failure(TSP2);
+
+        assertEquals(Arrays.asList(TSP3, TSP1, TSP2), tracker.order(urls));
+    }
+
+    /**
+     * Test that the average follows the recent response times.
+     */
+    @Test
+    public void exponentiallyWeightedAverage() {
+        TspLatencyTracker tracker = new TspLatencyTracker(FAILURE_PENALTY);
+
+        tracker.success(TSP1, 100);
+        assertEquals(100, tracker.getAverage(TSP1), 0.001);
+
+        tracker.success(TSP1, 200);
+        assertEquals(120, tracker.getAverage(TSP1), 0.001);
+
+        tracker.failure(TSP1);
+        assertEquals(2096, tracker.getAverage(TSP1), 0.001);
+    }
+
+    /**
+     * Test the percentile of the recent successful response times.
+     */
+    @Test
+    public void percentileOfRecentResponseTimes() {
+        TspLatencyTracker tracker = new TspLatencyTracker(FAILURE_PENALTY);
+
+        assertEquals(-1, tracker.getPercentile(TSP1, 95));
+
+        for (int i = 1; i < TspLatencyTracker.MIN_SAMPLES; i++) {
+            tracker.success(TSP1, i * 10);
+        }
+
+        assertEquals(-1, tracker.getPercentile(TSP1, 95));
+
+        for (int i = TspLatencyTracker.MIN_SAMPLES; i <= 100; i++) {
+            tracker.success(TSP1, i * 10);
+        }
+
+        tracker.failure(TSP1);
+
+        // The window holds the last 64 response times: 370..1000 ms
+        assertEquals(370, tracker.getPercentile(TSP1, 1));
+        assertEquals(680, tracker.getPercentile(TSP1, 50));
+        assertEquals(970, tracker.getPercentile(TSP1, 95));
+    }
+}
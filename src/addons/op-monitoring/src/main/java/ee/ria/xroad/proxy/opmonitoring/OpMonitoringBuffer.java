@@ -30,25 +30,28 @@ import ee.ria.xroad.common.opmonitoring.AbstractOpMonitoringBuffer;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringDaemonHttpClient;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
-import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataRequest;
-import ee.ria.xroad.common.util.JsonUtils;
 import ee.ria.xroad.common.util.TimeUtils;
+import ee.ria.xroad.proxy.opmonitoring.OpMonitoringDaemonSender.Batch;
 
 import akka.actor.ActorRef;
 import akka.actor.Cancellable;
 import akka.actor.Props;
-import com.google.gson.Gson;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.http.impl.client.CloseableHttpClient;
 import scala.concurrent.duration.FiniteDuration;
 
 import java.net.NetworkInterface;
-import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.ListIterator;
 import java.util.Map;
-import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static java.net.NetworkInterface.getNetworkInterfaces;
@@ -58,6 +61,12 @@ import static java.util.Collections.list;
  * Operational monitoring buffer. This buffer is used for gathering
  * operational data and for periodically sending the data to the operational
  * monitoring daemon (using OpMonitoringDaemonSender).
+ *
+ * The records are kept in a bounded queue and sent in batches by several
+ * senders in parallel. If a spill directory is configured, the records that
+ * do not fit into the buffer and the records left in the buffer when the
+ * proxy is stopped are written to disk and sent later, otherwise the eldest
+ * records are discarded on overflow.
  */
 @Slf4j
 public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
@@ -73,37 +82,29 @@ public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
     private static final long SENDING_INTERVAL_SECONDS =
             OpMonitoringSystemProperties.getOpMonitorBufferSendingIntervalSeconds();
 
+    private static final int MAX_CONCURRENT_SENDERS = Math.max(1,
+            OpMonitoringSystemProperties.getOpMonitorBufferMaxConcurrentSenders());
+
     private static final int CLIENT_CONNECTION_TIMEOUT_MILLISECONDS = TimeUtils.secondsToMillis(
             OpMonitoringSystemProperties.getOpMonitorBufferConnectionTimeoutSeconds());
 
     private static final int CLIENT_SOCKET_TIMEOUT_MILLISECONDS = TimeUtils.secondsToMillis(
             OpMonitoringSystemProperties.getOpMonitorBufferSocketTimeoutSeconds());
 
-    private static final Gson GSON = JsonUtils.getSerializer();
-
     private Cancellable tick;
 
-    final Map<Long, OpMonitoringData> buffer =
-            new LinkedHashMap<Long, OpMonitoringData>() {
-                @Override
-                protected boolean removeEldestEntry(Map.Entry eldest) {
-                    boolean overflow = size() > MAX_BUFFER_SIZE;
-
-                    if (overflow) {
-                        log.warn("Operational monitoring buffer overflow, removing eldest record: {}", eldest.getKey());
-                    }
+    final Deque<OpMonitoringData> buffer = new ArrayDeque<>();
 
-                    return overflow;
-                }
-            };
+    private final Deque<ActorRef> idleSenders = new ArrayDeque<>();
 
-    private long bufferIndex = 0;
+    final Map<ActorRef, Batch> batchesInProgress = new HashMap<>();
 
-    private final Set<Long> processedBufferIndices = new HashSet<>();
+    // Set after a sending failure, the sending is retried on the next scheduled tick
+    private boolean sendingSuspended = false;
 
     private final CloseableHttpClient httpClient;
 
-    private final ActorRef sender;
+    private final OpMonitoringBufferSpill spill;
 
     private static String ipAddress;
 
@@ -116,21 +117,41 @@ public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
             log.info("Operational monitoring buffer is switched off, no operational monitoring data is stored");
 
             httpClient = null;
-            sender = null;
+            spill = null;
         } else {
             httpClient = createHttpClient();
-            sender = createSender();
+            spill = createSpill();
+            idleSenders.addAll(createSenders());
         }
     }
 
     CloseableHttpClient createHttpClient() throws Exception {
-        return OpMonitoringDaemonHttpClient.createHttpClient(ServerConf.getSSLKey(), 1, 1,
-                CLIENT_CONNECTION_TIMEOUT_MILLISECONDS, CLIENT_SOCKET_TIMEOUT_MILLISECONDS);
+        return OpMonitoringDaemonHttpClient.createHttpClient(ServerConf.getSSLKey(), MAX_CONCURRENT_SENDERS,
+                MAX_CONCURRENT_SENDERS, CLIENT_CONNECTION_TIMEOUT_MILLISECONDS, CLIENT_SOCKET_TIMEOUT_MILLISECONDS);
     }
 
-    ActorRef createSender() {
-        return getContext().system().actorOf(Props.create(OpMonitoringDaemonSender.class, httpClient),
-                OP_MONITORING_DAEMON_SENDER);
+    List<ActorRef> createSenders() {
+        boolean compressMessages = OpMonitoringSystemProperties.isOpMonitorBufferCompressMessages();
+        List<ActorRef> senders = new ArrayList<>();
+
+        for (int i = 0; i < MAX_CONCURRENT_SENDERS; i++) {
+            senders.add(getContext().system().actorOf(
+                    Props.create(OpMonitoringDaemonSender.class, httpClient, compressMessages),
+                    i == 0 ? OP_MONITORING_DAEMON_SENDER : OP_MONITORING_DAEMON_SENDER + i));
+        }
+
+        return senders;
+    }
+
+    OpMonitoringBufferSpill createSpill() throws Exception {
+        String spillDirectory = OpMonitoringSystemProperties.getOpMonitorBufferSpillDirectory();
+
+        if (StringUtils.isBlank(spillDirectory)) {
+            return null;
+        }
+
+        return new OpMonitoringBufferSpill(Paths.get(spillDirectory),
+                OpMonitoringSystemProperties.getOpMonitorBufferSpillMaxFiles());
     }
 
     @Override
@@ -141,64 +162,128 @@ public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
 
         data.setSecurityServerInternalIp(getIpAddress());
 
-        buffer.put(getNextBufferIndex(), data);
-
-        send();
-    }
+        addToBuffer(data);
 
-    @Override
-    protected void send() throws Exception {
-        if (!canSend()) {
-            return;
+        if (!sendingSuspended) {
+            sendBatches();
         }
+    }
 
-        String json = prepareMonitoringMessage();
+    void addToBuffer(OpMonitoringData data) {
+        buffer.addLast(data);
 
-        sender.tell(json, getSelf());
+        handleOverflow();
     }
 
-    private boolean canSend() {
-        return !buffer.isEmpty() && processedBufferIndices.isEmpty();
+    private void handleOverflow() {
+        while (buffer.size() > MAX_BUFFER_SIZE) {
+            if (spill == null) {
+                buffer.pollFirst();
+
+                log.warn("Operational monitoring buffer overflow, removing eldest record");
+            } else {
+                log.warn("Operational monitoring buffer overflow, spilling eldest records to disk");
+
+                spill.write(pollRecords(MAX_RECORDS_IN_MESSAGE));
+            }
+        }
     }
 
-    private String prepareMonitoringMessage() {
-        StoreOpMonitoringDataRequest request = new StoreOpMonitoringDataRequest();
+    @Override
+    protected void send() throws Exception {
+        sendingSuspended = false;
 
-        for (Map.Entry<Long, OpMonitoringData> entry : buffer.entrySet()) {
-            processedBufferIndices.add(entry.getKey());
-            request.addRecord(entry.getValue().getData());
+        sendBatches();
+    }
 
-            if (request.getRecords().size() == MAX_RECORDS_IN_MESSAGE) {
+    private void sendBatches() {
+        while (!idleSenders.isEmpty()) {
+            Batch batch = nextBatch();
+
+            if (batch == null) {
                 break;
             }
+
+            ActorRef sender = idleSenders.pollFirst();
+
+            batchesInProgress.put(sender, batch);
+            sender.tell(batch, getSelf());
         }
 
         log.debug("Op monitoring buffer records count: {}", buffer.size());
+    }
+
+    private Batch nextBatch() {
+        // Spilled records are sent when the buffer does not have a full message waiting
+        if (spill != null && !spill.isEmpty() && buffer.size() < MAX_RECORDS_IN_MESSAGE) {
+            return Batch.of(spill.poll());
+        }
+
+        if (!buffer.isEmpty()) {
+            return Batch.of(pollRecords(MAX_RECORDS_IN_MESSAGE));
+        }
 
-        return GSON.toJson(request);
+        return null;
+    }
+
+    private List<OpMonitoringData> pollRecords(int maxRecords) {
+        List<OpMonitoringData> records = new ArrayList<>(Math.min(maxRecords, buffer.size()));
+
+        while (records.size() < maxRecords && !buffer.isEmpty()) {
+            records.add(buffer.pollFirst());
+        }
+
+        return records;
     }
 
     @Override
     protected void sendingSuccess() throws Exception {
-        processedBufferIndices.forEach(buffer::remove);
-        processedBufferIndices.clear();
+        Batch batch = senderFinished();
+
+        if (batch != null && batch.getSpillFile() != null) {
+            spill.delete(batch.getSpillFile());
+        }
 
-        if (canSend()) {
-            send();
+        if (!sendingSuspended) {
+            sendBatches();
         }
     }
 
     @Override
     protected void sendingFailure() throws Exception {
-        processedBufferIndices.clear();
+        Batch batch = senderFinished();
+
+        if (batch != null) {
+            giveBack(batch);
+        }
 
         // Do not worry, scheduled sending retries..
+        sendingSuspended = true;
     }
 
-    long getNextBufferIndex() {
-        bufferIndex = bufferIndex == Long.MAX_VALUE ? 0 : bufferIndex + 1;
+    private Batch senderFinished() {
+        ActorRef sender = getSender();
+        Batch batch = batchesInProgress.remove(sender);
 
-        return bufferIndex;
+        if (batch != null) {
+            idleSenders.addLast(sender);
+        }
+
+        return batch;
+    }
+
+    private void giveBack(Batch batch) {
+        if (batch.getSpillFile() != null) {
+            spill.giveBack(batch.getSpillFile());
+        } else {
+            ListIterator<OpMonitoringData> it = batch.getRecords().listIterator(batch.getRecords().size());
+
+            while (it.hasPrevious()) {
+                buffer.addFirst(it.previous());
+            }
+
+            handleOverflow();
+        }
     }
 
     private void scheduleSendMonitoringData() {
@@ -223,11 +308,28 @@ public class OpMonitoringBuffer extends AbstractOpMonitoringBuffer {
             tick.cancel();
         }
 
+        if (spill != null) {
+            spillRemainingRecords();
+        }
+
         if (httpClient != null) {
             IOUtils.closeQuietly(httpClient);
         }
     }
 
+    private void spillRemainingRecords() {
+        // Records of unfinished batches may have been stored by the daemon already,
+        // they are spilled anyway since losing them is worse than storing them twice
+        batchesInProgress.values().stream()
+                .filter(batch -> batch.getRecords() != null)
+                .forEach(batch -> spill.write(batch.getRecords()));
+        batchesInProgress.clear();
+
+        while (!buffer.isEmpty()) {
+            spill.write(pollRecords(MAX_RECORDS_IN_MESSAGE));
+        }
+    }
+
     private boolean ignoreOpMonitoringData() {
         return MAX_BUFFER_SIZE < 1;
     }
@@ -0,0 +1,184 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.opmonitoring;
+
+import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk spill of the operational monitoring buffer. Records that do not fit
+ * into the buffer, or are still in the buffer when the proxy is stopped, are
+ * written to files that each contain one gzip-compressed store request message.
+ * The files are sent to the operational monitoring daemon as they are and are
+ * kept over proxy restarts. Not thread safe, used by the buffer actor only.
+ */
+@Slf4j
+class OpMonitoringBufferSpill {
+
+    private static final String SPILL_FILE_PREFIX = "opmonitoring-";
+    private static final String SPILL_FILE_SUFFIX = ".json.gz";
+    private static final String TMP_FILE_SUFFIX = ".tmp";
+
+    private final Path directory;
+
+    private final int maxFiles;
+
+    private final Deque<Path> files = new ArrayDeque<>();
+
+    private long fileIndex = 0;
+
+    /**
+     * Creates the spill in the given directory and picks up the spill files
+     * left over from the previous run. Temporary files left over from writes
+     * that were interrupted may be incomplete and are deleted.
+     * @param directory the spill directory
+     * @param maxFiles maximum number of spill files
+     * @throws IOException if the directory cannot be read
+     */
+    OpMonitoringBufferSpill(Path directory, int maxFiles) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.maxFiles = maxFiles;
+
+        deleteTmpFiles();
+
+        List<Path> existing = new ArrayList<>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SPILL_FILE_PREFIX + "*" + SPILL_FILE_SUFFIX)) {
+            stream.forEach(existing::add);
+        }
+
+        // File names start with a creation timestamp, so that the oldest files are sent first
+        existing.sort(null);
+        files.addAll(existing);
+
+        if (!files.isEmpty()) {
+            log.info("Found {} operational monitoring data spill files in {}", files.size(), directory);
+        }
+    }
+
+    private void deleteTmpFiles() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SPILL_FILE_PREFIX + "*" + TMP_FILE_SUFFIX)) {
+            for (Path tmpFile : stream) {
+                log.warn("Deleting incomplete operational monitoring data spill file {}", tmpFile);
+
+                deleteQuietly(tmpFile);
+            }
+        }
+    }
+
+    /**
+     * Writes the records into a new spill file.
+     * @param records the records
+     * @return false if the spill is full or writing fails
+     */
+    boolean write(Collection<OpMonitoringData> records) {
+        if (files.size() >= maxFiles) {
+            log.warn("Operational monitoring data spill is full, discarding {} records", records.size());
+
+            return false;
+        }
+
+        String name = String.format("%s%013d-%06d%s", SPILL_FILE_PREFIX, System.currentTimeMillis(),
+                fileIndex++ % 1000000, SPILL_FILE_SUFFIX);
+        Path file = directory.resolve(name);
+        Path tmpFile = directory.resolve(name + TMP_FILE_SUFFIX);
+
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmpFile))) {
+                OpMonitoringDaemonSender.writeMessage(records, out);
+            }
+
+            Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            log.error("Failed to spill {} operational monitoring data records to {}", records.size(), file, e);
+
+            deleteQuietly(tmpFile);
+
+            return false;
+        }
+
+        files.addLast(file);
+
+        log.debug("Spilled {} operational monitoring data records to {}", records.size(), file);
+
+        return true;
+    }
+
+    /**
+     * @return the oldest spill file that is not being sent, or null if there is none
+     */
+    Path poll() {
+        return files.pollFirst();
+    }
+
+    /**
+     * Returns a spill file whose sending failed, so that it is sent again later.
+     * @param file the spill file
+     */
+    void giveBack(Path file) {
+        files.addFirst(file);
+    }
+
+    /**
+     * Deletes a spill file that has been sent.
+     * @param file the spill file
+     */
+    void delete(Path file) {
+        deleteQuietly(file);
+    }
+
+    boolean isEmpty() {
+        return files.isEmpty();
+    }
+
+    int size() {
+        return files.size();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.error("Failed to delete operational monitoring data spill file {}", file, e);
+        }
+    }
+}
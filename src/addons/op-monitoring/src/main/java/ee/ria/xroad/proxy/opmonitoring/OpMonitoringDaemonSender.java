@@ -27,6 +27,7 @@ package ee.ria.xroad.proxy.opmonitoring;
 
 import ee.ria.xroad.common.opmonitoring.AbstractOpMonitoringBuffer;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringDaemonEndpoints;
+import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 import ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataResponse;
 import ee.ria.xroad.common.util.HttpSender;
@@ -35,23 +36,43 @@ import ee.ria.xroad.common.util.MimeTypes;
 import ee.ria.xroad.common.util.MimeUtils;
 import ee.ria.xroad.common.util.TimeUtils;
 
-import akka.actor.ActorRef;
 import akka.actor.UntypedAbstractActor;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.EntityTemplate;
+import org.apache.http.entity.FileEntity;
+import org.apache.http.entity.InputStreamEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataResponse.STATUS_ERROR;
 import static ee.ria.xroad.common.opmonitoring.StoreOpMonitoringDataResponse.STATUS_OK;
 
 /**
  * Actor for sending operational data to the operational monitoring daemon. This actor is used by the
- * OpMonitoringBuffer class for periodically forwarding operational data gathered in the buffer.
+ * OpMonitoringBuffer class for periodically forwarding operational data gathered in the buffer. The records
+ * are streamed into the request body, optionally gzip-compressed, instead of building the message in memory.
  */
 @Slf4j
 public class OpMonitoringDaemonSender extends UntypedAbstractActor {
@@ -64,21 +85,26 @@ public class OpMonitoringDaemonSender extends UntypedAbstractActor {
     private static final int SOCKET_TIMEOUT_MILLISECONDS = TimeUtils.secondsToMillis(
             OpMonitoringSystemProperties.getOpMonitorBufferSocketTimeoutSeconds());
 
-    private CloseableHttpClient httpClient;
+    private static final String GZIP_ENCODING = "gzip";
 
-    OpMonitoringDaemonSender(CloseableHttpClient httpClient) {
+    private final CloseableHttpClient httpClient;
+
+    private final boolean compressMessages;
+
+    OpMonitoringDaemonSender(CloseableHttpClient httpClient, boolean compressMessages) {
         this.httpClient = httpClient;
+        this.compressMessages = compressMessages;
     }
 
     @Override
     public void onReceive(Object message) throws Exception {
-        if (message instanceof String) {
-            String json = (String) message;
+        if (message instanceof Batch) {
+            Batch batch = (Batch) message;
 
-            log.trace("onReceive: {}", json);
+            log.trace("onReceive: {}", batch);
 
             try {
-                send(json);
+                send(createEntity(batch));
                 success();
             } catch (Exception e) {
                 log.error("Sending operational monitoring data failed", e);
@@ -91,19 +117,65 @@ public class OpMonitoringDaemonSender extends UntypedAbstractActor {
     }
 
     private void success() {
-        getSender().tell(AbstractOpMonitoringBuffer.SENDING_SUCCESS, ActorRef.noSender());
+        getSender().tell(AbstractOpMonitoringBuffer.SENDING_SUCCESS, getSelf());
     }
 
     private void failure() {
-        getSender().tell(AbstractOpMonitoringBuffer.SENDING_FAILURE, ActorRef.noSender());
+        getSender().tell(AbstractOpMonitoringBuffer.SENDING_FAILURE, getSelf());
+    }
+
+    HttpEntity createEntity(Batch batch) throws IOException {
+        if (batch.getSpillFile() != null) {
+            return createSpillFileEntity(batch.getSpillFile());
+        }
+
+        EntityTemplate entity;
+
+        if (compressMessages) {
+            entity = new EntityTemplate(out -> {
+                GZIPOutputStream gzip = new GZIPOutputStream(out);
+                writeMessage(batch.getRecords(), gzip);
+                gzip.finish();
+            });
+            entity.setContentEncoding(GZIP_ENCODING);
+        } else {
+            entity = new EntityTemplate(out -> writeMessage(batch.getRecords(), out));
+        }
+
+        entity.setContentType(MimeTypes.JSON);
+
+        return entity;
+    }
+
+    private HttpEntity createSpillFileEntity(Path spillFile) throws IOException {
+        // Spill files contain gzip-compressed messages
+        if (compressMessages) {
+            FileEntity entity = new FileEntity(spillFile.toFile());
+            entity.setContentType(MimeTypes.JSON);
+            entity.setContentEncoding(GZIP_ENCODING);
+
+            return entity;
+        }
+
+        InputStream in = new GZIPInputStream(Files.newInputStream(spillFile));
+        InputStreamEntity entity = new InputStreamEntity(in, -1);
+        entity.setContentType(MimeTypes.JSON);
+
+        return entity;
     }
 
-    private void send(String json) throws Exception {
+    private void send(HttpEntity entity) throws Exception {
         try (HttpSender sender = new HttpSender(httpClient)) {
             sender.setConnectionTimeout(CONNECTION_TIMEOUT_MILLISECONDS);
             sender.setSocketTimeout(SOCKET_TIMEOUT_MILLISECONDS);
 
-            sender.doPost(getAddress(), json, MimeTypes.JSON);
+            try {
+                sender.doPost(getAddress(), entity);
+            } finally {
+                if (entity instanceof InputStreamEntity) {
+                    IOUtils.closeQuietly(entity.getContent());
+                }
+            }
 
             String responseJson = IOUtils.toString(sender.getResponseContent(), MimeUtils.UTF8);
             StoreOpMonitoringDataResponse response;
@@ -134,4 +206,49 @@ public class OpMonitoringDaemonSender extends UntypedAbstractActor {
                 OpMonitoringSystemProperties.getOpMonitorHost(), OpMonitoringSystemProperties.getOpMonitorPort(),
                 OpMonitoringDaemonEndpoints.STORE_DATA_PATH, null, null);
     }
+
+    /**
+     * Writes the store operational monitoring data request message containing the given records.
+     * @param records the records
+     * @param out the output stream, not closed by this method
+     * @throws IOException if writing fails
+     */
+    static void writeMessage(Collection<OpMonitoringData> records, OutputStream out) throws IOException {
+        JsonWriter writer = GSON.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        writer.beginObject();
+        writer.name("records");
+        writer.beginArray();
+
+        for (OpMonitoringData record : records) {
+            GSON.toJson(record.getData(), Map.class, writer);
+        }
+
+        writer.endArray();
+        writer.endObject();
+        writer.flush();
+    }
+
+    /**
+     * Records to be sent in one message, either held in memory or spilled to a file.
+     */
+    @Getter
+    @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+    static final class Batch {
+        private final List<OpMonitoringData> records;
+        private final Path spillFile;
+
+        static Batch of(List<OpMonitoringData> records) {
+            return new Batch(records, null);
+        }
+
+        static Batch of(Path spillFile) {
+            return new Batch(null, spillFile);
+        }
+
+        @Override
+        public String toString() {
+            return spillFile != null ? "spill file " + spillFile : records.size() + " records";
+        }
+    }
 }
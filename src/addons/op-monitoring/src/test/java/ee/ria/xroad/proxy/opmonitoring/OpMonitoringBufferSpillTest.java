@@ -0,0 +1,127 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.opmonitoring;
+
+import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+import ee.ria.xroad.common.util.JsonUtils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the on-disk spill of the operational monitoring buffer.
+ */
+public class OpMonitoringBufferSpillTest {
+
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @Test
+    public void writeAndReload() throws Exception {
+        Path directory = tmpDir.getRoot().toPath();
+        OpMonitoringBufferSpill spill = new OpMonitoringBufferSpill(directory, 10);
+
+        assertTrue(spill.write(Arrays.asList(createData(100), createData(200))));
+        assertTrue(spill.write(Collections.singletonList(createData(300))));
+
+        OpMonitoringBufferSpill reloaded = new OpMonitoringBufferSpill(directory, 10);
+
+        assertEquals(2, reloaded.size());
+
+        // The oldest file comes first
+        assertEquals(2, readRecords(reloaded.poll()).size());
+        assertEquals(1, readRecords(reloaded.poll()).size());
+        assertNull(reloaded.poll());
+    }
+
+    @Test
+    public void giveBackAndDelete() throws Exception {
+        OpMonitoringBufferSpill spill = new OpMonitoringBufferSpill(tmpDir.getRoot().toPath(), 10);
+
+        spill.write(Collections.singletonList(createData(100)));
+        spill.write(Collections.singletonList(createData(200)));
+
+        Path first = spill.poll();
+        spill.giveBack(first);
+
+        assertEquals(2, spill.size());
+        assertEquals(first, spill.poll());
+
+        spill.delete(first);
+
+        assertFalse(Files.exists(first));
+        assertEquals(1, spill.size());
+    }
+
+    @Test
+    public void discardRecordsWhenFull() throws Exception {
+        OpMonitoringBufferSpill spill = new OpMonitoringBufferSpill(tmpDir.getRoot().toPath(), 1);
+
+        assertTrue(spill.write(Collections.singletonList(createData(100))));
+        assertFalse(spill.write(Collections.singletonList(createData(200))));
+        assertEquals(1, spill.size());
+    }
+
+    @Test
+    public void deleteIncompleteFilesOnInit() throws Exception {
+        Path directory = tmpDir.getRoot().toPath();
+        Path tmpFile = Files.write(directory.resolve("opmonitoring-0000000000000-000000.json.gz.tmp"),
+                new byte[] {0x1f});
+
+        OpMonitoringBufferSpill spill = new OpMonitoringBufferSpill(directory, 10);
+
+        assertFalse(Files.exists(tmpFile));
+        assertTrue(spill.isEmpty());
+    }
+
+    private static List<?> readRecords(Path spillFile) throws Exception {
+        try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(spillFile)),
+                StandardCharsets.UTF_8)) {
+            return (List<?>) JsonUtils.getSerializer().fromJson(reader, Map.class).get("records");
+        }
+    }
+
+    private static OpMonitoringData createData(long requestInTs) {
+        return new OpMonitoringData(OpMonitoringData.SecurityServerType.CLIENT, requestInTs);
+    }
+}
@@ -26,15 +26,35 @@
 package ee.ria.xroad.proxy.opmonitoring;
 
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+import ee.ria.xroad.proxy.opmonitoring.OpMonitoringDaemonSender.Batch;
 
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
 import akka.testkit.TestActorRef;
+import akka.testkit.javadsl.TestKit;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static ee.ria.xroad.common.opmonitoring.AbstractOpMonitoringBuffer.SENDING_FAILURE;
+import static ee.ria.xroad.common.opmonitoring.AbstractOpMonitoringBuffer.SENDING_SUCCESS;
+import static ee.ria.xroad.common.opmonitoring.AbstractOpMonitoringBuffer.SEND_MONITORING_DATA;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests operational monitoring buffer.
@@ -42,6 +62,19 @@ import static org.junit.Assert.assertEquals;
 public class OpMonitoringBufferTest {
     private static final ActorSystem ACTOR_SYSTEM = ActorSystem.create();
 
+    static {
+        // The buffer reads its configuration once, when the class is loaded
+        System.setProperty("xroad.op-monitor-buffer.size", "2");
+        System.setProperty("xroad.op-monitor-buffer.max-records-in-message", "1");
+        System.setProperty("xroad.op-monitor-buffer.sending-interval-seconds", "3600");
+    }
+
+    private static List<ActorRef> testSenders;
+    private static OpMonitoringBufferSpill testSpill;
+
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+
     private static class TestOpMonitoringBuffer extends OpMonitoringBuffer {
         TestOpMonitoringBuffer() throws Exception {
             super();
@@ -53,16 +86,43 @@ public class OpMonitoringBufferTest {
         }
 
         @Override
-        ActorRef createSender() {
-            return null;
+        List<ActorRef> createSenders() {
+            return Collections.emptyList();
         }
 
         @Override
         protected void store(OpMonitoringData data) throws Exception {
-            buffer.put(getNextBufferIndex(), data);
+            addToBuffer(data);
         }
     }
 
+    private static class SendingTestOpMonitoringBuffer extends OpMonitoringBuffer {
+        SendingTestOpMonitoringBuffer() throws Exception {
+            super();
+        }
+
+        @Override
+        CloseableHttpClient createHttpClient() throws Exception {
+            return null;
+        }
+
+        @Override
+        List<ActorRef> createSenders() {
+            return testSenders;
+        }
+
+        @Override
+        OpMonitoringBufferSpill createSpill() throws Exception {
+            return testSpill;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        testSenders = Collections.emptyList();
+        testSpill = null;
+    }
+
     @Test
     public void bufferOverflow() throws Exception {
         System.setProperty("xroad.op-monitor-buffer.size", "2");
@@ -74,15 +134,153 @@ public class OpMonitoringBufferTest {
         TestOpMonitoringBuffer opMonitoringBuffer =
                 testActorRef.underlyingActor();
 
-        OpMonitoringData opMonitoringData = new OpMonitoringData(
+        OpMonitoringData opMonitoringData1 = new OpMonitoringData(
                 OpMonitoringData.SecurityServerType.CLIENT, 100);
+        OpMonitoringData opMonitoringData2 = new OpMonitoringData(
+                OpMonitoringData.SecurityServerType.CLIENT, 200);
+        OpMonitoringData opMonitoringData3 = new OpMonitoringData(
+                OpMonitoringData.SecurityServerType.CLIENT, 300);
 
-        opMonitoringBuffer.store(opMonitoringData);
-        opMonitoringBuffer.store(opMonitoringData);
-        opMonitoringBuffer.store(opMonitoringData);
+        opMonitoringBuffer.store(opMonitoringData1);
+        opMonitoringBuffer.store(opMonitoringData2);
+        opMonitoringBuffer.store(opMonitoringData3);
 
         assertEquals(2, opMonitoringBuffer.buffer.size());
-        assertEquals(true, opMonitoringBuffer.buffer.containsKey(2L));
-        assertEquals(true, opMonitoringBuffer.buffer.containsKey(3L));
+        assertSame(opMonitoringData2, opMonitoringBuffer.buffer.getFirst());
+        assertSame(opMonitoringData3, opMonitoringBuffer.buffer.getLast());
+    }
+
+    @Test
+    public void sendBatchesWithConcurrentSenders() throws Exception {
+        TestKit sender1 = new TestKit(ACTOR_SYSTEM);
+        TestKit sender2 = new TestKit(ACTOR_SYSTEM);
+        testSenders = Arrays.asList(sender1.getRef(), sender2.getRef());
+
+        TestActorRef<SendingTestOpMonitoringBuffer> testActorRef = createSendingBuffer();
+        SendingTestOpMonitoringBuffer opMonitoringBuffer = testActorRef.underlyingActor();
+
+        OpMonitoringData data1 = createData(100);
+        OpMonitoringData data2 = createData(200);
+        OpMonitoringData data3 = createData(300);
+
+        testActorRef.tell(data1, ActorRef.noSender());
+        testActorRef.tell(data2, ActorRef.noSender());
+        testActorRef.tell(data3, ActorRef.noSender());
+
+        assertSame(data1, sender1.expectMsgClass(Batch.class).getRecords().get(0));
+        assertSame(data2, sender2.expectMsgClass(Batch.class).getRecords().get(0));
+        assertEquals(2, opMonitoringBuffer.batchesInProgress.size());
+        assertEquals(Collections.singletonList(data3), new ArrayList<>(opMonitoringBuffer.buffer));
+
+        // The sender that finishes first gets the next batch
+        testActorRef.tell(SENDING_SUCCESS, sender2.getRef());
+
+        assertSame(data3, sender2.expectMsgClass(Batch.class).getRecords().get(0));
+        assertTrue(opMonitoringBuffer.buffer.isEmpty());
+        assertEquals(2, opMonitoringBuffer.batchesInProgress.size());
+
+        testActorRef.tell(SENDING_SUCCESS, sender1.getRef());
+        testActorRef.tell(SENDING_SUCCESS, sender2.getRef());
+
+        assertTrue(opMonitoringBuffer.batchesInProgress.isEmpty());
+        sender1.expectNoMessage(Duration.ofMillis(100));
+        sender2.expectNoMessage(Duration.ofMillis(100));
+    }
+
+    @Test
+    public void giveBackRecordsAfterFailedSend() throws Exception {
+        TestKit sender = new TestKit(ACTOR_SYSTEM);
+        testSenders = Collections.singletonList(sender.getRef());
+
+        TestActorRef<SendingTestOpMonitoringBuffer> testActorRef = createSendingBuffer();
+        SendingTestOpMonitoringBuffer opMonitoringBuffer = testActorRef.underlyingActor();
+
+        OpMonitoringData data1 = createData(100);
+        OpMonitoringData data2 = createData(200);
+
+        testActorRef.tell(data1, ActorRef.noSender());
+        testActorRef.tell(data2, ActorRef.noSender());
+
+        assertSame(data1, sender.expectMsgClass(Batch.class).getRecords().get(0));
+
+        testActorRef.tell(SENDING_FAILURE, sender.getRef());
+
+        // The records of the failed batch are returned to the head of the buffer
+        // and the sending is suspended until the next scheduled tick
+        assertEquals(Arrays.asList(data1, data2), new ArrayList<>(opMonitoringBuffer.buffer));
+        assertTrue(opMonitoringBuffer.batchesInProgress.isEmpty());
+        sender.expectNoMessage(Duration.ofMillis(100));
+
+        testActorRef.tell(SEND_MONITORING_DATA, ActorRef.noSender());
+
+        assertSame(data1, sender.expectMsgClass(Batch.class).getRecords().get(0));
+        assertEquals(Collections.singletonList(data2), new ArrayList<>(opMonitoringBuffer.buffer));
+    }
+
+    @Test
+    public void spillOverflowAndSendSpillFile() throws Exception {
+        TestKit sender = new TestKit(ACTOR_SYSTEM);
+        testSenders = Collections.singletonList(sender.getRef());
+        testSpill = new OpMonitoringBufferSpill(tmpDir.getRoot().toPath(), 10);
+
+        TestActorRef<SendingTestOpMonitoringBuffer> testActorRef = createSendingBuffer();
+
+        OpMonitoringData data1 = createData(100);
+        OpMonitoringData data2 = createData(200);
+        OpMonitoringData data3 = createData(300);
+        OpMonitoringData data4 = createData(400);
+
+        testActorRef.tell(data1, ActorRef.noSender());
+        testActorRef.tell(data2, ActorRef.noSender());
+        testActorRef.tell(data3, ActorRef.noSender());
+        testActorRef.tell(data4, ActorRef.noSender());
+
+        // The eldest buffered record did not fit into the buffer
+        assertEquals(1, testSpill.size());
+        assertSame(data1, sender.expectMsgClass(Batch.class).getRecords().get(0));
+
+        // The buffered records are sent before the spilled ones
+        testActorRef.tell(SENDING_SUCCESS, sender.getRef());
+        assertSame(data3, sender.expectMsgClass(Batch.class).getRecords().get(0));
+
+        testActorRef.tell(SENDING_SUCCESS, sender.getRef());
+        assertSame(data4, sender.expectMsgClass(Batch.class).getRecords().get(0));
+
+        testActorRef.tell(SENDING_SUCCESS, sender.getRef());
+        Path spillFile = sender.expectMsgClass(Batch.class).getSpillFile();
+
+        assertNotNull(spillFile);
+        assertTrue(testSpill.isEmpty());
+
+        testActorRef.tell(SENDING_SUCCESS, sender.getRef());
+
+        assertFalse(Files.exists(spillFile));
+    }
+
+    @Test
+    public void spillRemainingRecordsOnStop() throws Exception {
+        Path spillDirectory = tmpDir.getRoot().toPath();
+        testSpill = new OpMonitoringBufferSpill(spillDirectory, 10);
+
+        TestActorRef<SendingTestOpMonitoringBuffer> testActorRef = createSendingBuffer();
+
+        testActorRef.tell(createData(100), ActorRef.noSender());
+        testActorRef.tell(createData(200), ActorRef.noSender());
+
+        TestKit watcher = new TestKit(ACTOR_SYSTEM);
+        watcher.watch(testActorRef);
+        testActorRef.stop();
+        watcher.expectTerminated(testActorRef);
+
+        // The records are picked up by the next run
+        assertEquals(2, new OpMonitoringBufferSpill(spillDirectory, 10).size());
+    }
+
+    private static TestActorRef<SendingTestOpMonitoringBuffer> createSendingBuffer() {
+        return TestActorRef.create(ACTOR_SYSTEM, Props.create(SendingTestOpMonitoringBuffer.class));
+    }
+
+    private static OpMonitoringData createData(long requestInTs) {
+        return new OpMonitoringData(OpMonitoringData.SecurityServerType.CLIENT, requestInTs);
     }
 }
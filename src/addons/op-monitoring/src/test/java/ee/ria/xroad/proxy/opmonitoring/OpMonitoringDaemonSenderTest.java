@@ -0,0 +1,139 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.opmonitoring;
+
+import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
+import ee.ria.xroad.common.util.JsonUtils;
+import ee.ria.xroad.proxy.opmonitoring.OpMonitoringDaemonSender.Batch;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.TestActorRef;
+import org.apache.http.HttpEntity;
+import org.junit.AfterClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests the request bodies of the operational monitoring daemon sender.
+ */
+public class OpMonitoringDaemonSenderTest {
+
+    private static final ActorSystem ACTOR_SYSTEM = ActorSystem.create();
+
+    private static final List<OpMonitoringData> RECORDS = Arrays.asList(
+            new OpMonitoringData(OpMonitoringData.SecurityServerType.CLIENT, 100),
+            new OpMonitoringData(OpMonitoringData.SecurityServerType.PRODUCER, 200));
+
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+
+    @AfterClass
+    public static void tearDown() {
+        ACTOR_SYSTEM.terminate();
+    }
+
+    @Test
+    public void compressedRecords() throws Exception {
+        HttpEntity entity = createSender(true).createEntity(Batch.of(RECORDS));
+
+        assertEquals("gzip", entity.getContentEncoding().getValue());
+        assertEquals(2, readRecords(new GZIPInputStream(new ByteArrayInputStream(toBytes(entity)))).size());
+    }
+
+    @Test
+    public void uncompressedRecords() throws Exception {
+        HttpEntity entity = createSender(false).createEntity(Batch.of(RECORDS));
+
+        assertNull(entity.getContentEncoding());
+        assertEquals(2, readRecords(new ByteArrayInputStream(toBytes(entity))).size());
+    }
+
+    @Test
+    public void spillFileIsSentAsIsWhenCompressing() throws Exception {
+        Path spillFile = spill();
+
+        HttpEntity entity = createSender(true).createEntity(Batch.of(spillFile));
+
+        assertEquals("gzip", entity.getContentEncoding().getValue());
+        assertArrayEquals(Files.readAllBytes(spillFile), toBytes(entity));
+    }
+
+    @Test
+    public void spillFileIsDecompressedWhenNotCompressing() throws Exception {
+        HttpEntity entity = createSender(false).createEntity(Batch.of(spill()));
+
+        try (InputStream content = entity.getContent()) {
+            assertNull(entity.getContentEncoding());
+            assertEquals(2, readRecords(content).size());
+        }
+    }
+
+    private Path spill() throws Exception {
+        OpMonitoringBufferSpill spill = new OpMonitoringBufferSpill(tmpDir.getRoot().toPath(), 1);
+        spill.write(RECORDS);
+
+        return spill.poll();
+    }
+
+    private static OpMonitoringDaemonSender createSender(boolean compressMessages) {
+        TestActorRef<OpMonitoringDaemonSender> testActorRef = TestActorRef.create(ACTOR_SYSTEM,
+                Props.create(OpMonitoringDaemonSender.class, null, compressMessages));
+
+        return testActorRef.underlyingActor();
+    }
+
+    private static byte[] toBytes(HttpEntity entity) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        entity.writeTo(out);
+
+        return out.toByteArray();
+    }
+
+    private static List<?> readRecords(InputStream in) throws Exception {
+        Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+
+        return (List<?>) JsonUtils.getSerializer().fromJson(reader, Map.class).get("records");
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.db;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+/**
+ * Maintains the daily partitions of a table that is partitioned by the
+ * database migrations on PostgreSQL 11 and later. The migrations define a
+ * function for creating the partitions ahead and a function for dropping the
+ * outdated ones, both taking a single argument and returning the number of
+ * affected partitions. On other databases the table is not partitioned and
+ * the callers delete the records row by row.
+ */
+@Slf4j
+public class TablePartitions {
+
+    public static final int PARTITIONS_AHEAD_DAYS = 7;
+
+    private static final String PARTITIONED_CHECK_SQL =
+            "select count(*) from pg_partitioned_table p, pg_proc f"
+                    + " where p.partrelid = to_regclass(?) and f.proname = ?";
+
+    private final String table;
+    private final String createFunction;
+    private final String dropFunction;
+
+    private volatile Boolean partitioned;
+
+    /**
+     * @param table the name of the partitioned table
+     * @param createFunction the name of the function creating the partitions
+     * for the given number of days ahead
+     * @param dropFunction the name of the function dropping the partitions
+     * older than the given boundary
+     */
+    public TablePartitions(String table, String createFunction, String dropFunction) {
+        this.table = table;
+        this.createFunction = createFunction;
+        this.dropFunction = dropFunction;
+    }
+
+    /**
+     * Drops the outdated partitions and creates the partitions for the days
+     * ahead, if the table is partitioned.
+     * @param session the current session
+     * @param before the boundary passed to the drop function
+     * @return the number of dropped partitions
+     */
+    public int maintain(Session session, long before) {
+        if (!isPartitioned(session)) {
+            return 0;
+        }
+
+        int dropped = dropPartitionsBefore(session, before);
+
+        if (dropped > 0) {
+            log.info("Dropped {} outdated partitions of table {}", dropped, table);
+        }
+
+        createPartitions(session);
+
+        return dropped;
+    }
+
+    /**
+     * @param session the current session
+     * @return true if the table is partitioned and the maintenance functions
+     * exist
+     */
+    public boolean isPartitioned(Session session) {
+        if (partitioned == null) {
+            partitioned = session.doReturningWork(connection -> {
+                DatabaseMetaData metaData = connection.getMetaData();
+
+                if (!"PostgreSQL".equals(metaData.getDatabaseProductName())
+                        || metaData.getDatabaseMajorVersion() < 11) {
+                    return false;
+                }
+
+                try (PreparedStatement statement = connection.prepareStatement(PARTITIONED_CHECK_SQL)) {
+                    statement.setString(1, table);
+                    statement.setString(2, dropFunction);
+
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        return resultSet.next() && resultSet.getLong(1) > 0;
+                    }
+                }
+            });
+
+            log.info("Table {} is {}partitioned", table, partitioned ? "" : "not ");
+        }
+
+        return partitioned;
+    }
+
+    /**
+     * Drops the partitions that only contain records older than the given
+     * boundary.
+     * @param session the current session
+     * @param before the boundary, in the unit of the partition key
+     * @return the number of dropped partitions
+     */
+    public int dropPartitionsBefore(Session session, long before) {
+        return callFunction(session, dropFunction, before);
+    }
+
+    /**
+     * Creates the partitions for the current day and the days ahead, unless
+     * they exist already.
+     * @param session the current session
+     * @return the number of created partitions
+     */
+    public int createPartitions(Session session) {
+        return callFunction(session, createFunction, PARTITIONS_AHEAD_DAYS);
+    }
+
+    private static int callFunction(Session session, String function, Object argument) {
+        Object result = session.createNativeQuery("select " + function + "(:argument)")
+                .setParameter("argument", argument)
+                .getSingleResult();
+
+        return ((Number) result).intValue();
+    }
+}
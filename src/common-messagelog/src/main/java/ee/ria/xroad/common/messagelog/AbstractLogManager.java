@@ -33,8 +33,8 @@ import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Base class for log manager actors.
@@ -43,7 +43,7 @@ import java.util.Map;
 public abstract class AbstractLogManager extends UntypedAbstractActor {
 
     @Getter
-    protected static Map<String, DiagnosticsStatus> statusMap = new HashMap<>();
+    protected static Map<String, DiagnosticsStatus> statusMap = new ConcurrentHashMap<>();
 
     protected AbstractLogManager(JobManager jobManager) {
         if (jobManager == null) {
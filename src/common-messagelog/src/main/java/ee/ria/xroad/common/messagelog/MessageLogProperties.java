@@ -48,15 +48,28 @@ public final class MessageLogProperties {
 
     private static final int DEFAULT_TIMESTAMP_RECORDS_LIMIT = 10000;
 
+    private static final int DEFAULT_TIMESTAMP_MAX_CONCURRENT_BATCHES = 1;
+
+    private static final int DEFAULT_TIMESTAMP_BATCH_TARGET_DURATION = 5000;
+
     private static final int DEFAULT_TIMESTAMPER_CLIENT_CONNECT_TIMEOUT = 20000;
 
     private static final int DEFAULT_TIMESTAMPER_CLIENT_READ_TIMEOUT = 60000;
 
     private static final int DEFAULT_TIMESTAMP_RETRY_DELAY = 60;
 
+    private static final int DEFAULT_TIMESTAMPER_HEDGING_PERCENTILE = 0;
+
     private static final int DEFAULT_ARCHIVE_TRANSACTION_BATCH_SIZE = 10000;
+    private static final int DEFAULT_ARCHIVE_PARALLELISM = 0;
+    private static final int DEFAULT_ARCHIVE_COMPRESSION_LEVEL = 0;
+    private static final int MAX_ARCHIVE_COMPRESSION_LEVEL = 9;
     private static final int DEFAULT_CLEAN_TRANSACTION_BATCH_SIZE = 10000;
 
+    private static final int DEFAULT_WRITE_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_WRITE_BATCH_SIZE = 50;
+    private static final int DEFAULT_SHARD_COUNT = 1;
+
     private static final long DEFAULT_MAX_LOGGABLE_MESSAGE_BODY_SIZE = 10 * 1024 * 1024;
     private static final long MAX_LOGGABLE_MESSAGE_BODY_SIZE_LIMIT = 1024 * 1024 * 1024;
 
@@ -68,10 +81,19 @@ public final class MessageLogProperties {
     /** Property name of the timestamper client read timeout (milliseconds). */
     public static final String TIMESTAMPER_CLIENT_READ_TIMEOUT = PREFIX + "timestamper-client-read-timeout";
 
+    /** Property name of the latency percentile after which a time-stamp request is also sent to the next TSP. */
+    public static final String TIMESTAMPER_HEDGING_PERCENTILE = PREFIX + "timestamper-hedging-percentile";
+
     public static final String TIMESTAMP_IMMEDIATELY = PREFIX + "timestamp-immediately";
 
     public static final String TIMESTAMP_RECORDS_LIMIT = PREFIX + "timestamp-records-limit";
 
+    /** Property name of the maximum number of batch time-stamp requests in progress at the same time. */
+    public static final String TIMESTAMP_MAX_CONCURRENT_BATCHES = PREFIX + "timestamp-max-concurrent-batches";
+
+    /** Property name of the targeted duration of a batch time-stamp request (milliseconds). */
+    public static final String TIMESTAMP_BATCH_TARGET_DURATION = PREFIX + "timestamp-batch-target-duration";
+
     /** Property name of the timestamp retry delay (seconds). */
     public static final String TIMESTAMP_RETRY_DELAY = PREFIX + "timestamp-retry-delay";
 
@@ -87,10 +109,25 @@ public final class MessageLogProperties {
 
     public static final String ARCHIVE_TRANSACTION_BATCH = PREFIX + "archive-transaction-batch";
 
+    /** Property name of the number of threads that create ASiC containers for the archive in parallel. */
+    public static final String ARCHIVE_PARALLELISM = PREFIX + "archive-parallelism";
+
+    /** Property name of the deflate compression level (0-9) of the archive files. */
+    public static final String ARCHIVE_COMPRESSION_LEVEL = PREFIX + "archive-compression-level";
+
     public static final String CLEAN_INTERVAL = PREFIX + "clean-interval";
 
     private static final String CLEAN_TRANSACTION_BATCH = "clean-transaction-batch";
 
+    /** Property name of the maximum number of message records waiting to be written to the database. */
+    public static final String WRITE_QUEUE_SIZE = PREFIX + "write-queue-size";
+
+    /** Property name of the maximum number of message records written to the database in one transaction. */
+    public static final String WRITE_BATCH_SIZE = PREFIX + "write-batch-size";
+
+    /** Property name of the number of actors that create and save message records in parallel. */
+    public static final String SHARD_COUNT = PREFIX + "shard-count";
+
     public static final String HASH_ALGO_ID = PREFIX + "hash-algo-id";
 
     public static final String ARCHIVE_TRANSFER_COMMAND = PREFIX + "archive-transfer-command";
@@ -149,6 +186,15 @@ public final class MessageLogProperties {
                 DEFAULT_TIMESTAMPER_CLIENT_READ_TIMEOUT);
     }
 
+    /**
+     * @return the percentile of the recent response times of a TSP after which a time-stamp request is also sent to
+     * the next TSP if no response has been received, taking the response that arrives first. Values between 1 and 99
+     * enable hedged requests, '0' by default (the next TSP is only tried after the previous one fails).
+     */
+    public static int getTimestamperHedgingPercentile() {
+        return getInt(System.getProperty(TIMESTAMPER_HEDGING_PERCENTILE), DEFAULT_TIMESTAMPER_HEDGING_PERCENTILE);
+    }
+
     /**
      * @return the timestamp retry delay in seconds. A retry delay of zero is
      * interpreted as retry delay is disabled. '60' by default.
@@ -173,6 +219,23 @@ public final class MessageLogProperties {
         return getInt(System.getProperty(TIMESTAMP_RECORDS_LIMIT), DEFAULT_TIMESTAMP_RECORDS_LIMIT);
     }
 
+    /**
+     * @return the maximum number of batch time-stamp requests in progress at the same time, each for a different set
+     * of message records. '1' by default.
+     */
+    public static int getTimestampMaxConcurrentBatches() {
+        return getInt(System.getProperty(TIMESTAMP_MAX_CONCURRENT_BATCHES), DEFAULT_TIMESTAMP_MAX_CONCURRENT_BATCHES);
+    }
+
+    /**
+     * @return the targeted duration of a batch time-stamp request in milliseconds when several batches are in
+     * progress at the same time. The number of records in a batch is increased up to the time-stamp records limit
+     * while the requests are faster and decreased when they are slower or fail. '5000' by default.
+     */
+    public static int getTimestampBatchTargetDuration() {
+        return getInt(System.getProperty(TIMESTAMP_BATCH_TARGET_DURATION), DEFAULT_TIMESTAMP_BATCH_TARGET_DURATION);
+    }
+
     /**
      * @return the time period in seconds, how long is time-stamping allowed to be failed before message log stops
      * accepting any more messages.
@@ -182,6 +245,30 @@ public final class MessageLogProperties {
                 DEFAULT_ACCEPTABLE_TIMESTAMP_FAILURE_PERIOD);
     }
 
+    /**
+     * @return the maximum number of message records waiting to be written to the database. A value of zero disables
+     * the group commit and every message record is written in its own transaction. '1000' by default.
+     */
+    public static int getWriteQueueSize() {
+        return getInt(System.getProperty(WRITE_QUEUE_SIZE), DEFAULT_WRITE_QUEUE_SIZE);
+    }
+
+    /**
+     * @return the maximum number of message records written to the database in one transaction. '50' by default.
+     */
+    public static int getWriteBatchSize() {
+        return getInt(System.getProperty(WRITE_BATCH_SIZE), DEFAULT_WRITE_BATCH_SIZE);
+    }
+
+    /**
+     * @return the number of actors that create and save message records in parallel. Messages are distributed
+     * between the actors by the hash of the query id. A value of one disables sharding and the log manager handles
+     * all messages itself. '1' by default.
+     */
+    public static int getShardCount() {
+        return getInt(System.getProperty(SHARD_COUNT), DEFAULT_SHARD_COUNT);
+    }
+
     /**
      * @return the time interval as Cron expression for archiving time-stamped records.
      */
@@ -196,6 +283,25 @@ public final class MessageLogProperties {
         return getInt(System.getProperty(ARCHIVE_TRANSACTION_BATCH), DEFAULT_ARCHIVE_TRANSACTION_BATCH_SIZE);
     }
 
+    /**
+     * @return number of threads that create ASiC containers for the archive in parallel, defaults to the
+     * number of available processors. A value of 1 creates the containers in the archiver thread.
+     */
+    public static int getArchiveParallelism() {
+        int parallelism = getInt(System.getProperty(ARCHIVE_PARALLELISM), DEFAULT_ARCHIVE_PARALLELISM);
+
+        return parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * @return the deflate compression level (0-9) of the archive files, defaults to 0 (no compression).
+     */
+    public static int getArchiveCompressionLevel() {
+        int level = getInt(System.getProperty(ARCHIVE_COMPRESSION_LEVEL), DEFAULT_ARCHIVE_COMPRESSION_LEVEL);
+
+        return Math.max(0, Math.min(level, MAX_ARCHIVE_COMPRESSION_LEVEL));
+    }
+
     /**
      * @return the time interval as Cron expression for cleaning archived records from online database.
      */
@@ -30,11 +30,15 @@ import ee.ria.xroad.common.asic.AsicContainerNameGenerator;
 import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.messagelog.MessageRecord;
 
-import com.google.common.io.CountingOutputStream;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.io.FileUtils;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.FilterOutputStream;
 import java.io.IOException;
@@ -45,10 +49,12 @@ import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.util.Date;
 import java.util.function.Supplier;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 
 import static ee.ria.xroad.common.ErrorCodes.X_IO_ERROR;
+import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveCompressionLevel;
 import static ee.ria.xroad.common.messagelog.MessageLogProperties.getArchiveMaxFilesize;
 import static ee.ria.xroad.common.messagelog.archive.LogArchiveWriter.MAX_RANDOM_GEN_ATTEMPTS;
 
@@ -72,7 +78,7 @@ class LogArchiveCache implements Closeable {
     private State state = State.NEW;
 
     private Path archiveTmpFile;
-    private ZipOutputStream archiveTmp;
+    private ZipArchiveOutputStream archiveTmp;
 
     private Date minCreationTime;
     private Date maxCreationTime;
@@ -88,16 +94,69 @@ class LogArchiveCache implements Closeable {
     }
 
     void add(MessageRecord messageRecord) throws Exception {
+        add(messageRecord, null);
+    }
+
+    /**
+     * Adds the message record to the archive using an ASiC container that was created in advance
+     * with {@link #createContainer(MessageRecord)}. Creates the container here if it is null.
+     */
+    void add(MessageRecord messageRecord, Container container) throws Exception {
         try {
             validateMessageRecord(messageRecord);
             handleRotation();
-            cacheRecord(messageRecord);
+            cacheRecord(messageRecord, container);
             updateState();
         } catch (Exception e) {
             handleCacheError(e);
         }
     }
 
+    /**
+     * Creates and digests the ASiC container of the message record in memory and compresses it if archive
+     * compression is enabled. Does not depend on the state of the cache, so that containers can be created
+     * concurrently and added in order later.
+     * @param messageRecord the message record
+     * @return the container data and digest
+     * @throws Exception in case of any errors
+     */
+    static Container createContainer(MessageRecord messageRecord) throws Exception {
+        final MessageDigest digest = MessageDigest.getInstance(MessageLogProperties.getHashAlg());
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (OutputStream out = new DigestOutputStream(bytes, digest)) {
+            messageRecord.toAsicContainer().write(out);
+        }
+
+        final byte[] data = bytes.toByteArray();
+        final int level = getArchiveCompressionLevel();
+
+        if (level == Deflater.NO_COMPRESSION) {
+            return new Container(data, digest.digest(), data.length, 0, false);
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(data);
+
+        return new Container(deflate(data, level), digest.digest(), data.length, crc.getValue(), true);
+    }
+
+    private static byte[] deflate(byte[] data, int level) throws IOException {
+        final Deflater deflater = new Deflater(level, true);
+
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 64);
+
+            try (OutputStream deflaterOut = new DeflaterOutputStream(out, deflater)) {
+                deflaterOut.write(data);
+            }
+
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
     Path getArchiveFile() throws IOException {
         try {
             addLinkingInfoToArchive(archiveTmp);
@@ -118,13 +177,13 @@ class LogArchiveCache implements Closeable {
         throw e;
     }
 
-    private void addLinkingInfoToArchive(ZipOutputStream zipOut)
+    private void addLinkingInfoToArchive(ZipArchiveOutputStream zipOut)
             throws IOException {
-        ZipEntry linkingInfoEntry = new ZipEntry("linkinginfo");
+        ZipArchiveEntry linkingInfoEntry = new ZipArchiveEntry("linkinginfo");
 
-        zipOut.putNextEntry(linkingInfoEntry);
+        zipOut.putArchiveEntry(linkingInfoEntry);
         zipOut.write(linkingInfoBuilder.build());
-        zipOut.closeEntry();
+        zipOut.closeArchiveEntry();
 
         linkingInfoBuilder.afterArchiveCreated();
     }
@@ -167,7 +226,7 @@ class LogArchiveCache implements Closeable {
     }
 
     @SuppressWarnings("checkstyle:InnerAssignment")
-    private void cacheRecord(MessageRecord messageRecord) throws Exception {
+    private void cacheRecord(MessageRecord messageRecord, Container container) throws Exception {
         final Date creationTime = new Date(messageRecord.getTime());
 
         if (minCreationTime == null && maxCreationTime == null) {
@@ -177,7 +236,12 @@ class LogArchiveCache implements Closeable {
         } else if (creationTime.after(maxCreationTime)) {
             maxCreationTime = creationTime;
         }
-        addContainerToArchive(messageRecord);
+
+        if (container != null) {
+            addContainerToArchive(messageRecord, container);
+        } else {
+            addContainerToArchive(messageRecord);
+        }
     }
 
     private void updateState() {
@@ -188,24 +252,48 @@ class LogArchiveCache implements Closeable {
         return archivesTotalSize > getArchiveMaxFilesize();
     }
 
+    private void addContainerToArchive(MessageRecord record, Container container) throws IOException {
+        String archiveFilename = getArchiveFilename(record);
+        ZipArchiveEntry entry = new ZipArchiveEntry(archiveFilename);
+
+        if (container.isDeflated()) {
+            // Compressed in advance, copied to the archive as is
+            entry.setMethod(ZipArchiveEntry.DEFLATED);
+            entry.setSize(container.getSize());
+            entry.setCompressedSize(container.getData().length);
+            entry.setCrc(container.getCrc());
+            archiveTmp.addRawArchiveEntry(entry, new ByteArrayInputStream(container.getData()));
+        } else {
+            archiveTmp.putArchiveEntry(entry);
+            archiveTmp.write(container.getData());
+            archiveTmp.closeArchiveEntry();
+        }
+
+        archivesTotalSize += entry.getCompressedSize();
+        linkingInfoBuilder.addNextFile(archiveFilename, container.getDigest());
+    }
+
+    private String getArchiveFilename(MessageRecord record) {
+        return nameGenerator.getArchiveFilename(record.getQueryId(),
+                record.isResponse() ? AsicContainerNameGenerator.TYPE_RESPONSE
+                        : AsicContainerNameGenerator.TYPE_REQUEST);
+    }
+
     private void addContainerToArchive(MessageRecord record) throws Exception {
-        String archiveFilename =
-                nameGenerator.getArchiveFilename(record.getQueryId(),
-                        record.isResponse() ? AsicContainerNameGenerator.TYPE_RESPONSE
-                                : AsicContainerNameGenerator.TYPE_REQUEST);
+        String archiveFilename = getArchiveFilename(record);
 
         final MessageDigest digest = MessageDigest.getInstance(MessageLogProperties.getHashAlg());
-        archiveTmp.putNextEntry(new ZipEntry(archiveFilename));
-        try (CountingOutputStream cos = new CountingOutputStream(
-                new DigestOutputStream(new EntryStream(archiveTmp), digest));
-                OutputStream bos = new BufferedOutputStream(cos)) {
-            // ZipOutputStream writing directly to a DigestOutputStream is extremely inefficient, hence the additional
-            // buffering. Digesting a stream instead of an in-memory buffer because the archive can be
+        final ZipArchiveEntry entry = new ZipArchiveEntry(archiveFilename);
+        archiveTmp.putArchiveEntry(entry);
+        try (OutputStream bos = new BufferedOutputStream(
+                new DigestOutputStream(new EntryStream(archiveTmp), digest))) {
+            // ZipArchiveOutputStream writing directly to a DigestOutputStream is extremely inefficient, hence the
+            // additional buffering. Digesting a stream instead of an in-memory buffer because the archive can be
             // large (over 1GiB)
             record.toAsicContainer().write(bos);
-            archivesTotalSize += cos.getCount();
         }
-        archiveTmp.closeEntry();
+        archiveTmp.closeArchiveEntry();
+        archivesTotalSize += entry.getCompressedSize();
         linkingInfoBuilder.addNextFile(archiveFilename, digest.digest());
     }
 
@@ -223,8 +311,8 @@ class LogArchiveCache implements Closeable {
     private void resetArchive() throws IOException {
         deleteArchiveArtifacts();
         archiveTmpFile = Files.createTempFile(workingDir, "tmp-mlog-", ".tmp");
-        archiveTmp = new ZipOutputStream(Files.newOutputStream(archiveTmpFile));
-        archiveTmp.setLevel(0);
+        archiveTmp = new ZipArchiveOutputStream(archiveTmpFile.toFile());
+        archiveTmp.setLevel(getArchiveCompressionLevel());
     }
 
     private void deleteArchiveArtifacts() {
@@ -248,6 +336,19 @@ class LogArchiveCache implements Closeable {
         nameGenerator = new AsicContainerNameGenerator(randomGenerator, MAX_RANDOM_GEN_ATTEMPTS);
     }
 
+    /**
+     * ASiC container of a message record, created in advance. The data is raw deflate data if the
+     * container is deflated.
+     */
+    @Value
+    static class Container {
+        private final byte[] data;
+        private final byte[] digest;
+        private final long size;
+        private final long crc;
+        private final boolean deflated;
+    }
+
     static class EntryStream extends FilterOutputStream {
 
         EntryStream(OutputStream out) {
@@ -36,6 +36,12 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
@@ -57,6 +63,7 @@ public class LogArchiveWriter implements Closeable {
 
     private final Path outputPath;
     private final LogArchiveBase archiveBase;
+    private final ExecutorService executor;
 
     private final LinkingInfoBuilder linkingInfoBuilder;
     private final LogArchiveCache logArchiveCache;
@@ -69,8 +76,20 @@ public class LogArchiveWriter implements Closeable {
      * @param archiveBase interface to archive database.
      */
     public LogArchiveWriter(Path outputPath, LogArchiveBase archiveBase) {
+        this(outputPath, archiveBase, null);
+    }
+
+    /**
+     * Creates new LogArchiveWriter that creates the ASiC containers of message records
+     * written with {@link #write(List)} concurrently.
+     * @param outputPath  directory where the log archive is created.
+     * @param archiveBase interface to archive database.
+     * @param executor    executor for creating the ASiC containers, null to create them sequentially.
+     */
+    public LogArchiveWriter(Path outputPath, LogArchiveBase archiveBase, ExecutorService executor) {
         this.outputPath = outputPath;
         this.archiveBase = archiveBase;
+        this.executor = executor;
 
         this.linkingInfoBuilder = new LinkingInfoBuilder(
                 MessageLogProperties.getHashAlg(),
@@ -101,6 +120,76 @@ public class LogArchiveWriter implements Closeable {
             logArchiveCache.add((MessageRecord)logRecord);
         }
 
+        return markArchived(logRecord);
+    }
+
+    /**
+     * Write message log records. The ASiC containers of the records are created concurrently if
+     * an executor was given, but the records are added to the archive in the given order.
+     * Containers of records with attachments are always created while adding them to the archive
+     * to avoid buffering the attachments in memory.
+     * @param messageRecords the message records
+     * @return true if the archive file was rotated
+     * @throws Exception in case of any errors
+     */
+    public boolean write(List<MessageRecord> messageRecords) throws Exception {
+        if (executor == null || messageRecords.size() < 2) {
+            boolean rotated = false;
+
+            for (MessageRecord messageRecord : messageRecords) {
+                rotated |= write(messageRecord);
+            }
+
+            return rotated;
+        }
+
+        List<Future<LogArchiveCache.Container>> containers = new ArrayList<>(messageRecords.size());
+
+        for (MessageRecord messageRecord : messageRecords) {
+            if (messageRecord == null) {
+                throw new IllegalArgumentException("log record must not be null");
+            }
+
+            containers.add(messageRecord.getAttachment() == null
+                    ? executor.submit(() -> LogArchiveCache.createContainer(messageRecord)) : null);
+        }
+
+        boolean rotated = false;
+
+        try {
+            for (int i = 0; i < messageRecords.size(); i++) {
+                MessageRecord messageRecord = messageRecords.get(i);
+
+                if (log.isTraceEnabled()) log.trace("write({})", messageRecord.getId());
+
+                logArchiveCache.add(messageRecord, getContainer(containers.get(i)));
+                rotated |= markArchived(messageRecord);
+            }
+        } finally {
+            containers.stream().filter(Objects::nonNull).forEach(container -> container.cancel(false));
+        }
+
+        return rotated;
+    }
+
+    private static LogArchiveCache.Container getContainer(Future<LogArchiveCache.Container> container)
+            throws Exception {
+        if (container == null) {
+            return null;
+        }
+
+        try {
+            return container.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    private boolean markArchived(LogRecord logRecord) throws Exception {
         archiveBase.markRecordArchived(logRecord);
 
         if (logArchiveCache.isRotating()) {
@@ -57,6 +57,7 @@ import java.util.function.Supplier;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -128,6 +129,60 @@ public class LogArchiveCacheTest {
         assertZip(expectedNormalSizeRequestEntryName(), getArchiveBytes());
     }
 
+    /**
+     * Test to ensure an entry with a container created in advance is added like any other entry.
+     *
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void addOneEntryWithContainerCreatedInAdvance() throws Exception {
+        // Given
+        setMaxArchiveSizeDefault();
+        MessageRecord record = createRequestRecordNormal();
+
+        // When
+        cache.add(record, LogArchiveCache.createContainer(record));
+
+        // Then
+        assertFalse(
+                "Should not rotate, as entry is small enough to fit in.",
+                cache.isRotating());
+        assertEquals(normalRequestCreationTime(), cache.getStartTime());
+        assertZip(expectedNormalSizeRequestEntryName(), getArchiveBytes());
+    }
+
+    /**
+     * Test to ensure entries compressed in advance and while adding them can both be read from the archive.
+     *
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void addCompressedEntries() throws Exception {
+        // Given
+        setMaxArchiveSizeDefault();
+        System.setProperty(MessageLogProperties.ARCHIVE_COMPRESSION_LEVEL, "9");
+
+        try {
+            MessageRecord large = createRequestRecordTooLarge();
+            MessageRecord normal = createRequestRecordNormal();
+
+            // When
+            cache.add(large, LogArchiveCache.createContainer(large));
+            cache.add(normal);
+
+            // Then
+            try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(getArchiveBytes()))) {
+                assertEquals(ENTRY_NAME_REQUEST_LARGE, zip.getNextEntry().getName());
+                assertArrayEquals(containerTooLarge(), IOUtils.toByteArray(zip));
+                assertEquals(ENTRY_NAME_REQUEST_NORMAL, zip.getNextEntry().getName());
+                assertArrayEquals(containerOfNormalSize(), IOUtils.toByteArray(zip));
+                assertEquals("linkinginfo", zip.getNextEntry().getName());
+            }
+        } finally {
+            System.clearProperty(MessageLogProperties.ARCHIVE_COMPRESSION_LEVEL);
+        }
+    }
+
     /**
      * Test to ensure log archive is rotated if an entry is too large.
      *
@@ -41,6 +41,10 @@ import org.junit.Test;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.Assert.assertTrue;
 
@@ -100,6 +104,37 @@ public class LogArchiveTest {
         assertTrue(rotated);
     }
 
+    /**
+     * Writes records with containers created in parallel and rotates to new file.
+     */
+    @Test
+    public void writeInParallelAndRotate() throws Exception {
+        System.setProperty(MessageLogProperties.ARCHIVE_MAX_FILESIZE, "3000");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try (LogArchiveWriter writer = getWriter(executor)) {
+            for (int i = 0; i < NUM_TIMESTAMPS; i++) {
+                TimestampRecord ts = nextTimestampRecord();
+                List<MessageRecord> records = new ArrayList<>();
+
+                for (int j = 0; j < NUM_RECORDS_PER_TIMESTAMP; j++) {
+                    MessageRecord messageRecord = nextMessageRecord();
+                    messageRecord.setTimestampRecord(ts);
+                    messageRecord.setTimestampHashChain("foo");
+                    records.add(messageRecord);
+                }
+
+                writer.write(records);
+                writer.write(ts);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(rotated);
+    }
+
     // ------------------------------------------------------------------------
 
     private void writeRecordsToLog(boolean finishAfterRotate) throws Exception {
@@ -121,9 +156,14 @@ public class LogArchiveTest {
     }
 
     private LogArchiveWriter getWriter() {
+        return getWriter(null);
+    }
+
+    private LogArchiveWriter getWriter(ExecutorService executor) {
         return new LogArchiveWriter(
                 Paths.get("build/slog"),
-                dummyLogArchiveBase()) {
+                dummyLogArchiveBase(),
+                executor) {
 
             @Override
             protected void rotate() throws IOException {
@@ -74,6 +74,33 @@ public final class OpMonitoringSystemProperties {
     private static final String OP_MONITOR_BUFFER_CONNECTION_TIMEOUT_SECONDS =
             PREFIX + "op-monitor-buffer.connection-timeout-seconds";
 
+    /**
+     * Property name of the maximum number of messages the operational monitoring buffer sends to the operational
+     * monitoring daemon in parallel.
+     */
+    private static final String OP_MONITOR_BUFFER_MAX_CONCURRENT_SENDERS =
+            PREFIX + "op-monitor-buffer.max-concurrent-senders";
+
+    /**
+     * Property name of the flag for compressing the messages sent by the operational monitoring buffer to the
+     * operational monitoring daemon.
+     */
+    private static final String OP_MONITOR_BUFFER_COMPRESS_MESSAGES =
+            PREFIX + "op-monitor-buffer.compress-messages";
+
+    /**
+     * Property name of the directory where the operational monitoring buffer spills the records that do not fit
+     * into the buffer.
+     */
+    private static final String OP_MONITOR_BUFFER_SPILL_DIRECTORY =
+            PREFIX + "op-monitor-buffer.spill-directory";
+
+    /**
+     * Property name of the maximum number of spill files of the operational monitoring buffer.
+     */
+    private static final String OP_MONITOR_BUFFER_SPILL_MAX_FILES =
+            PREFIX + "op-monitor-buffer.spill-max-files";
+
     // Operational monitoring service ---------------------------------------//
 
     /**
@@ -193,6 +220,35 @@ public final class OpMonitoringSystemProperties {
         return Integer.parseInt(System.getProperty(OP_MONITOR_BUFFER_CONNECTION_TIMEOUT_SECONDS, "30"));
     }
 
+    /**
+     * @return the maximum number of messages sent to the operational monitoring daemon in parallel, '2' by default.
+     */
+    public static int getOpMonitorBufferMaxConcurrentSenders() {
+        return Integer.parseInt(System.getProperty(OP_MONITOR_BUFFER_MAX_CONCURRENT_SENDERS, "2"));
+    }
+
+    /**
+     * @return whether the messages sent to the operational monitoring daemon are compressed, 'false' by default.
+     */
+    public static boolean isOpMonitorBufferCompressMessages() {
+        return Boolean.parseBoolean(System.getProperty(OP_MONITOR_BUFFER_COMPRESS_MESSAGES, "false"));
+    }
+
+    /**
+     * @return the directory where the operational monitoring buffer spills the records that do not fit into the
+     * buffer, empty by default. In case the directory is empty, the records are discarded instead.
+     */
+    public static String getOpMonitorBufferSpillDirectory() {
+        return System.getProperty(OP_MONITOR_BUFFER_SPILL_DIRECTORY, "");
+    }
+
+    /**
+     * @return the maximum number of spill files of the operational monitoring buffer, '1000' by default.
+     */
+    public static int getOpMonitorBufferSpillMaxFiles() {
+        return Integer.parseInt(System.getProperty(OP_MONITOR_BUFFER_SPILL_MAX_FILES, "1000"));
+    }
+
     /**
      * @return the operational monitoring service HTTP client SO_TIMEOUT in seconds, '60' by default.
      */
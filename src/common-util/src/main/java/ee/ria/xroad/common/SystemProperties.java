@@ -189,6 +189,15 @@ public final class SystemProperties {
 
     public static final String SERVER_CONF_CLIENT_CACHE_SIZE = PREFIX + "proxy.server-conf-client-cache-size";
 
+    /** Property name of the maximum size of message content cached in memory before it is written to a file. */
+    public static final String PROXY_CACHE_MEMORY_THRESHOLD = PREFIX + "proxy.cache-memory-threshold";
+
+    /** Property name of the maximum number of threads parsing incoming SOAP requests in the client proxy. */
+    public static final String PROXY_CLIENT_SOAP_HANDLER_THREADS = PREFIX + "proxy.client-soap-handler-threads";
+
+    /** Property name of the buffer size of the pipe between the SOAP parser and the request sender. */
+    public static final String PROXY_CLIENT_REQUEST_PIPE_SIZE = PREFIX + "proxy.client-request-pipe-size";
+
     public static final String SERVER_CONF_SERVICE_CACHE_SIZE = PREFIX + "proxy.server-conf-service-cache-size";
 
     public static final String SERVER_CONF_ACL_CACHE_SIZE = PREFIX + "proxy.server-conf-acl-cache-size";
@@ -339,6 +348,24 @@ public final class SystemProperties {
 
     private static final int OCSP_VERIFIER_CACHE_PERIOD_MAX = 180;
 
+    private static final String CERT_PATH_CACHE_PERIOD =
+            PREFIX + "proxy.cert-path-cache-period";
+
+    private static final String CERT_PATH_CACHE_SIZE =
+            PREFIX + "proxy.cert-path-cache-size";
+
+    private static final String BATCH_SIGNER_LINGER_TIME =
+            PREFIX + "proxy.batch-signer-linger-time";
+
+    private static final String BATCH_SIGNER_MAX_BATCH_SIZE =
+            PREFIX + "proxy.batch-signer-max-batch-size";
+
+    private static final String BATCH_SIGNER_MAX_HASH_CHAIN_DEPTH =
+            PREFIX + "proxy.batch-signer-max-hash-chain-depth";
+
+    private static final String BATCH_SIGNER_MAX_CONCURRENT_BATCHES =
+            PREFIX + "proxy.batch-signer-max-concurrent-batches";
+
     // Signer -----------------------------------------------------------------
 
     /** Property name of the key configuration file. */
@@ -383,6 +410,11 @@ public final class SystemProperties {
 
     private static final String DEFAULT_SIGNER_OCSP_RETRY_DELAY = "60";
 
+    public static final String SIGNER_OCSP_FETCH_PARALLELISM =
+            PREFIX + "signer.ocsp-fetch-parallelism";
+
+    private static final String DEFAULT_SIGNER_OCSP_FETCH_PARALLELISM = "1";
+
     public static final String SIGNER_MODULE_MANAGER_UPDATE_INTERVAL =
             PREFIX + "signer.module-manager-update-interval";
 
@@ -923,6 +955,14 @@ public final class SystemProperties {
                 DEFAULT_SIGNER_OCSP_RETRY_DELAY));
     }
 
+    /**
+     * @return the number of OCSP responses that the signer fetches concurrently, 1 by default
+     */
+    public static int getOcspFetchParallelism() {
+        return Integer.parseInt(System.getProperty(SIGNER_OCSP_FETCH_PARALLELISM,
+                DEFAULT_SIGNER_OCSP_FETCH_PARALLELISM));
+    }
+
     /**
      * @return the module manager update interval in seconds that should be set for signer, 60 by default
      */
@@ -1350,6 +1390,50 @@ public final class SystemProperties {
         return period < OCSP_VERIFIER_CACHE_PERIOD_MAX ? period : OCSP_VERIFIER_CACHE_PERIOD_MAX;
     }
 
+    /**
+     * @return the number of seconds successfully verified certificate paths are kept in memory,
+     * '300' by default. Value of 0 disables the cache.
+     */
+    public static int getCertPathCachePeriod() {
+        return Integer.parseInt(System.getProperty(CERT_PATH_CACHE_PERIOD, "300"));
+    }
+
+    /**
+     * @return the maximum number of verified certificate paths kept in memory, '1000' by default
+     */
+    public static int getCertPathCacheSize() {
+        return Integer.parseInt(System.getProperty(CERT_PATH_CACHE_SIZE, "1000"));
+    }
+
+    /**
+     * @return the number of milliseconds the batch signer waits for more signing requests before signing a
+     * batch that is not full, '0' by default (sign as soon as a signature can be created)
+     */
+    public static int getBatchSignerLingerTime() {
+        return Integer.parseInt(System.getProperty(BATCH_SIGNER_LINGER_TIME, "0"));
+    }
+
+    /**
+     * @return the maximum number of signing requests in one batch signature, '0' (no limit) by default
+     */
+    public static int getBatchSignerMaxBatchSize() {
+        return Integer.parseInt(System.getProperty(BATCH_SIGNER_MAX_BATCH_SIZE, "0"));
+    }
+
+    /**
+     * @return the maximum depth of the hash chain of a batch signature, '0' (no limit) by default
+     */
+    public static int getBatchSignerMaxHashChainDepth() {
+        return Integer.parseInt(System.getProperty(BATCH_SIGNER_MAX_HASH_CHAIN_DEPTH, "0"));
+    }
+
+    /**
+     * @return the maximum number of batch signatures created concurrently with one signing key, '1' by default
+     */
+    public static int getBatchSignerMaxConcurrentBatches() {
+        return Integer.parseInt(System.getProperty(BATCH_SIGNER_MAX_CONCURRENT_BATCHES, "1"));
+    }
+
     /**
      * @return serverproxy initial idle time (used until the request processing starts)
      */
@@ -1569,6 +1653,33 @@ public final class SystemProperties {
         return Long.getLong(SERVER_CONF_ACL_CACHE_SIZE, 100_000);
     }
 
+    /**
+     * @return the maximum size in bytes of message content (attachments, REST bodies) that is cached in memory
+     * before it is written to a temporary file, '65536' by default. Zero caches all content in files.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static int getProxyCacheMemoryThreshold() {
+        return Integer.getInteger(PROXY_CACHE_MEMORY_THRESHOLD, 65536);
+    }
+
+    /**
+     * @return the maximum number of threads parsing incoming SOAP requests in the client proxy, '500' by default.
+     * Requests exceeding the limit wait until a thread becomes available.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static int getClientProxySoapHandlerThreads() {
+        return Integer.getInteger(PROXY_CLIENT_SOAP_HANDLER_THREADS, 500);
+    }
+
+    /**
+     * @return the buffer size in bytes of the pipe between the SOAP parser and the request sender
+     * in the client proxy, '65536' by default.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static int getClientProxyRequestPipeSize() {
+        return Integer.getInteger(PROXY_CLIENT_REQUEST_PIPE_SIZE, 65536);
+    }
+
     private static void checkVersionValidity(int version, int current, String defaultVersion) {
         if (version > current || version < 1) {
             throw new IllegalArgumentException("Illegal minimum global configuration version in system parameters");
@@ -41,6 +41,7 @@ import ee.ria.xroad.common.conf.globalconf.sharedparameters.v2.SubsystemType;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.GlobalGroupId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
+import ee.ria.xroad.common.util.CryptoUtils;
 
 import lombok.AccessLevel;
 import lombok.Getter;
@@ -59,6 +60,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -82,8 +84,15 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
             new HashMap<>();
     private final Map<X509Certificate, List<OcspInfoType>> caCertsAndOcspData =
             new HashMap<>();
+    private final Map<X509Certificate, Set<X509Certificate>> caCertsAndOcspResponderCerts =
+            new HashMap<>();
     private final Map<ClientId, Set<String>> memberAddresses = new HashMap<>();
-    private final Map<ClientId, Set<byte[]>> memberAuthCerts = new HashMap<>();
+    // Base64 encoded authentication certificate hashes of the member's security servers
+    private final Map<ClientId, Set<String>> memberAuthCerts = new HashMap<>();
+    private final Map<ClientId, String> memberNames = new HashMap<>();
+    private final Map<String, GlobalGroupType> globalGroupsByCode = new HashMap<>();
+    private final Map<String, Set<ClientId>> globalGroupMembers = new HashMap<>();
+    private final Map<String, String> approvedTspNames = new HashMap<>();
     private final Map<String, SecurityServerType> serverByAuthCert =
             new HashMap<>();
     private final Map<SecurityServerId, Set<ClientId>> securityServerClients =
@@ -150,9 +159,18 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
             return null;
         }
 
-        return confType.getGlobalGroup().stream()
-                .filter(g -> g.getGroupCode().equals(groupId.getGroupCode()))
-                .findFirst().orElse(null);
+        return globalGroupsByCode.get(groupId.getGroupCode());
+    }
+
+    boolean isGlobalGroupMember(GlobalGroupId groupId, ClientId subjectId) {
+        if (!groupId.getXRoadInstance().equals(
+                confType.getInstanceIdentifier())) {
+            return false;
+        }
+
+        Set<ClientId> members = globalGroupMembers.get(groupId.getGroupCode());
+
+        return members != null && members.contains(subjectId);
     }
 
     X509Certificate getCaCertForSubject(X509Certificate subject)
@@ -179,6 +197,9 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
             cacheCaCerts();
             cacheKnownAddresses();
             cacheSecurityServers();
+            cacheMemberNames();
+            cacheGlobalGroups();
+            cacheApprovedTspNames();
         } catch (Exception e) {
             throw translateException(e);
         }
@@ -199,8 +220,13 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         caCertsAndCertProfiles.clear();
         caCertsAndApprovedCAData.clear();
         caCertsAndOcspData.clear();
+        caCertsAndOcspResponderCerts.clear();
         memberAddresses.clear();
         memberAuthCerts.clear();
+        memberNames.clear();
+        globalGroupsByCode.clear();
+        globalGroupMembers.clear();
+        approvedTspNames.clear();
         serverByAuthCert.clear();
         securityServerClients.clear();
         verificationCaCerts.clear();
@@ -296,7 +322,7 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
 
         // Add the mapping from client to authentication certificate.
         for (byte[] authCert : server.getAuthCertHash()) {
-            addToMap(memberAuthCerts, client, authCert);
+            addToMap(memberAuthCerts, client, encodeBase64(authCert));
         }
 
         MemberType owner = getOwner(server);
@@ -308,6 +334,27 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
         addToMap(securityServerClients, securityServerId, client);
     }
 
+    private void cacheMemberNames() {
+        for (MemberType member : confType.getMember()) {
+            memberNames.putIfAbsent(createMemberId(member), member.getName());
+        }
+    }
+
+    private void cacheGlobalGroups() {
+        for (GlobalGroupType globalGroup : confType.getGlobalGroup()) {
+            if (globalGroupsByCode.putIfAbsent(globalGroup.getGroupCode(), globalGroup) == null) {
+                globalGroupMembers.put(globalGroup.getGroupCode(),
+                        new HashSet<>(globalGroup.getGroupMember()));
+            }
+        }
+    }
+
+    private void cacheApprovedTspNames() {
+        for (ApprovedTSAType tsa : confType.getApprovedTSA()) {
+            approvedTspNames.putIfAbsent(tsa.getUrl(), tsa.getName());
+        }
+    }
+
     private Map<String, ClientId> getClientIds() {
         Map<String, ClientId> ret = new HashMap<>();
 
@@ -329,6 +376,14 @@ public class SharedParametersV2 extends AbstractXmlConf<SharedParametersTypeV2>
             X509Certificate cert = readCertificate(caType.getCert());
             List<OcspInfoType> caOcspTypes = caType.getOcsp();
             caCertsAndOcspData.put(cert, caOcspTypes);
+
+            Set<X509Certificate> responderCerts = caCertsAndOcspResponderCerts
+                    .computeIfAbsent(cert, k -> new HashSet<>());
+            caOcspTypes.stream()
+                    .map(OcspInfoType::getCert)
+                    .filter(Objects::nonNull)
+                    .map(CryptoUtils::readCertificate)
+                    .forEach(responderCerts::add);
         }
     }
 
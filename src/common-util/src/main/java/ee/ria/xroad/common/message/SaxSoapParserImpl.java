@@ -41,6 +41,7 @@ import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.input.BOMInputStream;
 import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.xml.sax.Attributes;
@@ -55,8 +56,8 @@ import javax.xml.parsers.SAXParserFactory;
 import javax.xml.soap.SOAPException;
 
 import java.io.BufferedWriter;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.Arrays;
@@ -194,12 +195,13 @@ public class SaxSoapParserImpl implements SoapParser {
     private Soap parseMessage(InputStream is, String mimeType, String contentType, String charset) throws Exception {
         log.trace("parseMessage({}, {})", mimeType, charset);
 
-        ByteArrayOutputStream rawXml = new ByteArrayOutputStream();
-        ByteArrayOutputStream processedXml = new ByteArrayOutputStream();
+        // Chunked buffers avoid copying the whole message each time the buffer grows
+        XmlBuffer rawXml = new XmlBuffer("Raw XML");
+        XmlBuffer processedXml = new XmlBuffer("Processed XML");
 
         InputStream proxyStream = excludeUtf8Bom(contentType, new TeeInputStream(is, rawXml));
         Writer outputWriter = new OutputStreamWriter(processedXml, charset);
-        XRoadSoapHandler handler = handleSoap(outputWriter, proxyStream);
+        XRoadSoapHandler handler = handleSoap(outputWriter, proxyStream, rawXml, processedXml);
 
         CodedException fault = handler.getFault();
         if (fault != null) {
@@ -211,10 +213,10 @@ public class SaxSoapParserImpl implements SoapParser {
         return createSoapMessage(contentType, charset, handler, xmlBytes);
     }
 
-    private XRoadSoapHandler handleSoap(Writer writer, InputStream inputStream)
-            throws Exception {
+    private XRoadSoapHandler handleSoap(Writer writer, InputStream inputStream, XmlBuffer rawXml,
+            XmlBuffer processedXml) throws Exception {
         try (BufferedWriter out = new BufferedWriter(writer)) {
-            XRoadSoapHandler handler = new XRoadSoapHandler(out);
+            XRoadSoapHandler handler = new XRoadSoapHandler(out, rawXml, processedXml);
             SAXParser saxParser = PARSER_FACTORY.newSAXParser();
             XMLReader xmlReader = saxParser.getXMLReader();
             xmlReader.setProperty(LEXICAL_HANDLER_PROPERTY, handler);
@@ -236,7 +238,7 @@ public class SaxSoapParserImpl implements SoapParser {
     }
 
     private static Soap createSoapFault(String charset,
-            ByteArrayOutputStream rawXml, CodedException fault) {
+            XmlBuffer rawXml, CodedException fault) {
         return new SoapFault(fault.getFaultCode(), fault.getFaultString(),
                 fault.getFaultActor(), fault.getFaultDetail(),
                 rawXml.toByteArray(), charset);
@@ -257,13 +259,55 @@ public class SaxSoapParserImpl implements SoapParser {
 
     /**
      * Determines whether the raw XML of the SOAP message should be re-encoded
-     * or if the original should be used in the output.
+     * or if the original should be used in the output. The result must not
+     * change after the SOAP header has been parsed, since only the XML that
+     * is going to be used is collected once the body has been reached.
      * @return false by default
      */
     protected boolean isProcessedXmlRequired() {
         return false;
     }
 
+    /**
+     * Collects the raw or the processed XML of the message. When the first element of the body is reached, it is
+     * known which of the two is going to be used and collecting the other one is stopped, so that large messages
+     * are not buffered twice in memory.
+     */
+    private static final class XmlBuffer extends OutputStream {
+        private final String name;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        XmlBuffer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void write(int b) {
+            if (buffer != null) {
+                buffer.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (buffer != null) {
+                buffer.write(b, off, len);
+            }
+        }
+
+        void discard() {
+            buffer = null;
+        }
+
+        byte[] toByteArray() {
+            if (buffer == null) {
+                throw new IllegalStateException(name + " of the message is not available");
+            }
+
+            return buffer.toByteArray();
+        }
+    }
+
     private InputStream excludeUtf8Bom(String contentType, InputStream soapStream) {
         return hasUtf8Charset(contentType) ? new BOMInputStream(soapStream) : soapStream;
     }
@@ -303,10 +347,19 @@ public class SaxSoapParserImpl implements SoapParser {
     private class XRoadSoapHandler extends DefaultHandler2 {
         private static final String NAMESPACE_PREFIX_SEPARATOR = ":";
 
+        private static final int BODY_DEPTH = 2;
+        private static final int BODY_CHILD_DEPTH = 3;
+
         private static final String XML_VERSION_ENCODING = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>";
 
         private final BufferedWriter out;
 
+        private final XmlBuffer rawXml;
+
+        private final XmlBuffer processedXml;
+
+        private boolean inBody;
+
         private char[] xmlEntity;
 
         private Stack<XmlElementHandler> elementHandlers = new Stack<>();
@@ -356,12 +409,29 @@ public class SaxSoapParserImpl implements SoapParser {
                 handleElement(attributes, element);
             }
 
+            discardUnusedXml(element);
+
             if (isProcessedXmlRequired()) {
                 String prefix = findNamespacePrefix(qName);
                 writeStartElementXml(prefix, element, attributes, out);
             }
         }
 
+        private void discardUnusedXml(QName element) {
+            if (elementHandlers.size() == BODY_DEPTH && element.equals(QNAME_SOAP_BODY)) {
+                inBody = true;
+            } else if (inBody && elementHandlers.size() == BODY_CHILD_DEPTH) {
+                // faults are always returned as raw XML
+                if (!element.equals(QNAME_SOAP_FAULT) && isProcessedXmlRequired()) {
+                    rawXml.discard();
+                } else {
+                    processedXml.discard();
+                }
+
+                inBody = false;
+            }
+        }
+
         private void handleElement(Attributes attributes, QName element) {
             XmlElementHandler elementHandler = elementHandlers.peek().getChildElementHandler(element);
             elementHandler.setAttributes(attributes);
@@ -27,9 +27,11 @@ package ee.ria.xroad.common.util;
 
 import ee.ria.xroad.common.DefaultFilepaths;
 import ee.ria.xroad.common.ErrorCodes;
+import ee.ria.xroad.common.SystemProperties;
 
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.ByteArrayOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.nio.channels.Channels;
@@ -39,30 +41,48 @@ import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 
 /**
- * Caches stuff in a temporary file.
+ * Caches stuff in memory up to a threshold and in a temporary file beyond it.
  */
 @Slf4j
 public class CachingStream extends FilterOutputStream {
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private final int memoryThreshold;
+
+    private MemoryBuffer buffer;
     private SeekableByteChannel channel;
     private Path tempFile;
 
     /**
-     * Constructs a new caching stream that caches data in a temporary file.
+     * Constructs a new caching stream that caches data in memory up to the configured threshold
+     * and in a temporary file beyond it.
      *
      * @throws IOException if I/O errors occurred
+     * @see SystemProperties#getProxyCacheMemoryThreshold()
      */
     public CachingStream() throws IOException {
+        this(SystemProperties.getProxyCacheMemoryThreshold());
+    }
+
+    /**
+     * Constructs a new caching stream that caches data in memory up to the given threshold
+     * and in a temporary file beyond it.
+     *
+     * @param memoryThreshold maximum number of bytes cached in memory, zero to always use a temporary file
+     * @throws IOException if I/O errors occurred
+     */
+    public CachingStream(int memoryThreshold) throws IOException {
         // Construct the parent class with null stream and replace it later.
         super(null);
 
-        tempFile = DefaultFilepaths.createTempFile("tmpattach", null);
-        channel = Files.newByteChannel(tempFile, StandardOpenOption.CREATE,
-                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
-                StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+        this.memoryThreshold = memoryThreshold;
 
-        // Now that we are set up, we can set the output stream in the
-        // parent class.
-        out = Channels.newOutputStream(channel);
+        if (memoryThreshold > 0) {
+            buffer = new MemoryBuffer(Math.min(INITIAL_BUFFER_SIZE, memoryThreshold));
+            out = buffer;
+        } else {
+            spillToFile();
+        }
     }
 
     @Override
@@ -71,8 +91,15 @@ public class CachingStream extends FilterOutputStream {
         flush();
     }
 
+    @Override
+    public void write(int b) throws IOException {
+        ensureCapacity(1);
+        out.write(b);
+    }
+
     @Override
     public void write(byte[] b, int off, int len) throws IOException {
+        ensureCapacity(len);
         // prevent FilterOutputStream from writing inefficiently
         out.write(b, off, len);
     }
@@ -80,10 +107,19 @@ public class CachingStream extends FilterOutputStream {
     /**
      * @return input stream that contains the encoded attachment contents.
      * The returned stream does not support mark, and closing the stream has no effect.
+     * If the contents were cached in memory and have been consumed, the returned stream is empty.
      * @see #consume() to free resources used by the cache.
      */
     public CacheInputStream getCachedContents() {
         try {
+            if (buffer != null) {
+                return new CacheInputStream(new MemoryByteChannel(buffer.array(), buffer.size()));
+            }
+
+            if (channel == null) {
+                return new CacheInputStream(new MemoryByteChannel(new byte[0], 0));
+            }
+
             return new CacheInputStream(channel);
         } catch (IOException ex) { // the position shouldn't really throw
             throw ErrorCodes.translateException(ex);
@@ -94,6 +130,12 @@ public class CachingStream extends FilterOutputStream {
      * Finalize caching stream. Use to avoid file handle leaks.
      */
     public void consume() {
+        buffer = null;
+
+        if (channel == null) {
+            return;
+        }
+
         try {
             channel.close();
         } catch (IOException e) {
@@ -101,4 +143,42 @@ public class CachingStream extends FilterOutputStream {
         }
     }
 
+    boolean isCachedInMemory() {
+        return buffer != null;
+    }
+
+    private void ensureCapacity(int len) throws IOException {
+        if (buffer != null && buffer.size() + (long) len > memoryThreshold) {
+            spillToFile();
+        }
+    }
+
+    private void spillToFile() throws IOException {
+        tempFile = DefaultFilepaths.createTempFile("tmpattach", null);
+        channel = Files.newByteChannel(tempFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.DELETE_ON_CLOSE);
+
+        // Now that we are set up, we can set the output stream in the
+        // parent class.
+        out = Channels.newOutputStream(channel);
+
+        if (buffer != null) {
+            out.write(buffer.array(), 0, buffer.size());
+            buffer = null;
+        }
+    }
+
+    /**
+     * Byte array output stream that gives access to its buffer without copying.
+     */
+    private static final class MemoryBuffer extends ByteArrayOutputStream {
+        MemoryBuffer(int size) {
+            super(size);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
 }
@@ -0,0 +1,247 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory pipe between one writer thread and one reader thread, backed by a fixed size ring buffer.
+ * Unlike {@link java.io.PipedInputStream}, the buffer size is not limited to 1 KB by default and waiting threads
+ * are woken up by signals instead of periodic polling.
+ * <p>
+ * Closing the output stream signals the end of data to the reader. Closing the input stream makes all further
+ * writes fail, so that the writer does not block forever when the reader gives up.
+ */
+public final class RingBufferPipe {
+    private static final int BYTE_MASK = 0xFF;
+
+    private final byte[] buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private final InputStream inputStream = new PipeInputStream();
+    private final OutputStream outputStream = new PipeOutputStream();
+
+    private int readPos;
+    private int count;
+    private boolean writerClosed;
+    private boolean readerClosed;
+
+    /**
+     * Constructs a new pipe.
+     * @param capacity size of the ring buffer in bytes
+     */
+    public RingBufferPipe(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Pipe capacity must be positive");
+        }
+
+        this.buffer = new byte[capacity];
+    }
+
+    /**
+     * @return the read end of the pipe
+     */
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    /**
+     * @return the write end of the pipe
+     */
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    private int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        lockInterruptibly();
+        try {
+            while (count == 0) {
+                if (readerClosed) {
+                    throw new IOException("Pipe closed");
+                }
+
+                if (writerClosed) {
+                    return -1;
+                }
+
+                notEmpty.await();
+            }
+
+            if (readerClosed) {
+                throw new IOException("Pipe closed");
+            }
+
+            int n = Math.min(len, count);
+            int first = Math.min(n, buffer.length - readPos);
+
+            System.arraycopy(buffer, readPos, b, off, first);
+            System.arraycopy(buffer, 0, b, off + first, n - first);
+
+            readPos = (readPos + n) % buffer.length;
+            count -= n;
+
+            notFull.signal();
+
+            return n;
+        } catch (InterruptedException e) {
+            throw interrupted();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        lockInterruptibly();
+        try {
+            int offset = off;
+            int remaining = len;
+
+            while (remaining > 0) {
+                while (count == buffer.length && !readerClosed && !writerClosed) {
+                    notFull.await();
+                }
+
+                if (readerClosed || writerClosed) {
+                    throw new IOException("Pipe closed");
+                }
+
+                int writePos = (readPos + count) % buffer.length;
+                int n = Math.min(remaining, buffer.length - count);
+                int first = Math.min(n, buffer.length - writePos);
+
+                System.arraycopy(b, offset, buffer, writePos, first);
+                System.arraycopy(b, offset + first, buffer, 0, n - first);
+
+                count += n;
+                offset += n;
+                remaining -= n;
+
+                notEmpty.signal();
+            }
+        } catch (InterruptedException e) {
+            throw interrupted();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int available() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeWriter() {
+        lock.lock();
+        try {
+            writerClosed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeReader() {
+        lock.lock();
+        try {
+            readerClosed = true;
+            count = 0;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void lockInterruptibly() throws IOException {
+        try {
+            lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            throw interrupted();
+        }
+    }
+
+    private static InterruptedIOException interrupted() {
+        Thread.currentThread().interrupt();
+
+        return new InterruptedIOException("Interrupted while waiting for pipe");
+    }
+
+    private final class PipeInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+
+            return RingBufferPipe.this.read(b, 0, 1) == -1 ? -1 : b[0] & BYTE_MASK;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            return RingBufferPipe.this.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            return RingBufferPipe.this.available();
+        }
+
+        @Override
+        public void close() {
+            closeReader();
+        }
+    }
+
+    private final class PipeOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            RingBufferPipe.this.write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            RingBufferPipe.this.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            closeWriter();
+        }
+    }
+}
@@ -143,7 +143,12 @@ public final class FileWatcherRunner {
 
     private FileWatcherRunner(FileWatcher watcher) {
         this.watcher = requireNonNull(watcher);
-        this.executor = Executors.newSingleThreadExecutor();
+        // the watcher must not keep the JVM running if the owner never stops it
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "FileWatcher");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     private FileWatcherRunner start() {
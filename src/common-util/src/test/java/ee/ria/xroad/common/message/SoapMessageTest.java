@@ -244,6 +244,65 @@ public class SoapMessageTest {
         assertEquals("yyy", fault.getDetail());
     }
 
+    /**
+     * Tests that messages are parsed correctly when only the processed XML of the message is used.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void processedXmlRequired() throws Exception {
+        SoapParser parser = new SaxSoapParserImpl() {
+            @Override
+            protected boolean isProcessedXmlRequired() {
+                return true;
+            }
+        };
+
+        Soap message = parser.parse(MimeTypes.TEXT_XML_UTF8,
+                new FileInputStream(QUERY_DIR + "simple.query"));
+
+        assertTrue(message instanceof SoapMessageImpl);
+        assertEquals("1234567890", ((SoapMessageImpl) message).getQueryId());
+        assertNotNull(((SoapMessageImpl) message).getBytes());
+
+        String soapFaultXml = SoapFault.createFaultXml("foo.bar", "baz", "xxx", "yyy");
+        Soap fault = parser.parse(MimeTypes.TEXT_XML_UTF8,
+                new ByteArrayInputStream(soapFaultXml.getBytes()));
+
+        assertTrue(fault instanceof SoapFault);
+        assertEquals("foo.bar", ((SoapFault) fault).getCode());
+        assertEquals(soapFaultXml, fault.getXml());
+    }
+
+    /**
+     * Tests that the raw XML of the message is used when the processed XML is required only for the header,
+     * as in the client proxy.
+     * @throws Exception in case of any unexpected errors
+     */
+    @Test
+    public void processedXmlRequiredForHeaderOnly() throws Exception {
+        SoapParser parser = new SaxSoapParserImpl() {
+            private SoapHeaderHandler headerHandler;
+
+            @Override
+            protected boolean isProcessedXmlRequired() {
+                return headerHandler == null || !headerHandler.isFinished();
+            }
+
+            @Override
+            protected SoapHeaderHandler getSoapHeaderHandler(SoapHeader header) {
+                headerHandler = super.getSoapHeaderHandler(header);
+                return headerHandler;
+            }
+        };
+
+        byte[] xml = fileToBytes("simple.query");
+        Soap message = parser.parse(MimeTypes.TEXT_XML_UTF8, new ByteArrayInputStream(xml));
+
+        assertTrue(message instanceof SoapMessageImpl);
+        assertEquals("1234567890", ((SoapMessageImpl) message).getQueryId());
+        assertTrue(Arrays.areEqual(xml, ((SoapMessageImpl) message).getBytes()));
+    }
+
     /**
      * Checks that inconsistencies between two messages are detected.
      * @throws Exception in case of any unexpected errors
@@ -0,0 +1,136 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import ee.ria.xroad.common.SystemProperties;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link CachingStream}
+ */
+public class CachingStreamTest {
+    private static final int THRESHOLD = 1024;
+
+    @BeforeClass
+    public static void setUpClass() {
+        System.setProperty(SystemProperties.TEMP_FILES_PATH, "build/tmp");
+    }
+
+    /**
+     * Content smaller than the threshold is kept in memory.
+     */
+    @Test
+    public void smallContentCachedInMemory() throws Exception {
+        byte[] data = randomBytes(THRESHOLD);
+
+        CachingStream cache = new CachingStream(THRESHOLD);
+        cache.write(data);
+        cache.close();
+
+        assertTrue(cache.isCachedInMemory());
+        assertContents(data, cache);
+        // contents can be read more than once
+        assertContents(data, cache);
+
+        cache.consume();
+    }
+
+    /**
+     * Content larger than the threshold is moved to a temporary file, including what was already buffered.
+     */
+    @Test
+    public void largeContentSpilledToFile() throws Exception {
+        byte[] data = randomBytes(THRESHOLD * 3 + 1);
+
+        CachingStream cache = new CachingStream(THRESHOLD);
+        cache.write(data, 0, THRESHOLD / 2);
+        assertTrue(cache.isCachedInMemory());
+
+        cache.write(data[THRESHOLD / 2]);
+        cache.write(data, THRESHOLD / 2 + 1, data.length - THRESHOLD / 2 - 1);
+        cache.close();
+
+        assertFalse(cache.isCachedInMemory());
+        assertContents(data, cache);
+
+        cache.consume();
+    }
+
+    /**
+     * Zero threshold always uses a temporary file.
+     */
+    @Test
+    public void zeroThresholdUsesFile() throws Exception {
+        byte[] data = randomBytes(10);
+
+        CachingStream cache = new CachingStream(0);
+        cache.write(data);
+        cache.close();
+
+        assertFalse(cache.isCachedInMemory());
+        assertContents(data, cache);
+
+        cache.consume();
+    }
+
+    /**
+     * Contents cached in memory are empty after the cache has been consumed.
+     */
+    @Test
+    public void consumedMemoryCacheIsEmpty() throws Exception {
+        CachingStream cache = new CachingStream(THRESHOLD);
+        cache.write(randomBytes(10));
+        cache.close();
+
+        cache.consume();
+
+        assertContents(new byte[0], cache);
+    }
+
+    private static void assertContents(byte[] expected, CachingStream cache) throws Exception {
+        CacheInputStream contents = cache.getCachedContents();
+
+        assertEquals(expected.length, contents.size());
+        assertArrayEquals(expected, IOUtils.toByteArray(contents));
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+
+        return data;
+    }
+}
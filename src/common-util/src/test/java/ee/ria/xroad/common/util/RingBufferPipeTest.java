@@ -0,0 +1,123 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.util;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit tests for {@link RingBufferPipe}
+ */
+public class RingBufferPipeTest {
+
+    /**
+     * Data larger than the buffer is transferred intact from the writer thread to the reader.
+     */
+    @Test
+    public void transfersDataLargerThanBuffer() throws Exception {
+        byte[] data = new byte[100_000];
+        new Random(1).nextBytes(data);
+
+        RingBufferPipe pipe = new RingBufferPipe(1000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<?> writer = executor.submit(() -> {
+                try (OutputStream out = pipe.getOutputStream()) {
+                    for (int off = 0; off < data.length; off += 777) {
+                        out.write(data, off, Math.min(777, data.length - off));
+                    }
+
+                    return null;
+                }
+            });
+
+            byte[] received = IOUtils.toByteArray(pipe.getInputStream());
+            writer.get(5, TimeUnit.SECONDS);
+
+            assertArrayEquals(data, received);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Single byte reads and writes work and closing the writer signals end of stream.
+     */
+    @Test
+    public void singleBytes() throws Exception {
+        RingBufferPipe pipe = new RingBufferPipe(2);
+        OutputStream out = pipe.getOutputStream();
+        InputStream in = pipe.getInputStream();
+
+        out.write(0xFE);
+        out.write(1);
+        out.close();
+
+        assertEquals(0xFE, in.read());
+        assertEquals(1, in.read());
+        assertEquals(-1, in.read());
+    }
+
+    /**
+     * A writer blocked on a full buffer fails when the reader closes the pipe.
+     */
+    @Test(expected = IOException.class)
+    public void writeFailsWhenReaderClosed() throws Throwable {
+        RingBufferPipe pipe = new RingBufferPipe(10);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        try {
+            Future<?> writer = executor.submit(() -> {
+                pipe.getOutputStream().write(new byte[100]);
+
+                return null;
+            });
+
+            Thread.sleep(100);
+            pipe.getInputStream().close();
+
+            writer.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
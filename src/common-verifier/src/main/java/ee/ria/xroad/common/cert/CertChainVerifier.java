@@ -26,11 +26,15 @@
 package ee.ria.xroad.common.cert;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.globalconfextension.GlobalConfExtensions;
 import ee.ria.xroad.common.ocsp.OcspVerifier;
 import ee.ria.xroad.common.ocsp.OcspVerifierOptions;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.Value;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 
 import java.security.cert.CertPath;
@@ -38,10 +42,10 @@ import java.security.cert.CertPathBuilder;
 import java.security.cert.CertPathBuilderException;
 import java.security.cert.CertPathValidator;
 import java.security.cert.CertPathValidatorResult;
+import java.security.cert.Certificate;
 import java.security.cert.CertStore;
 import java.security.cert.CollectionCertStoreParameters;
 import java.security.cert.PKIXBuilderParameters;
-import java.security.cert.PKIXCertPathValidatorResult;
 import java.security.cert.TrustAnchor;
 import java.security.cert.X509CertSelector;
 import java.security.cert.X509Certificate;
@@ -50,6 +54,7 @@ import java.util.Date;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_CANNOT_CREATE_CERT_PATH;
 import static ee.ria.xroad.common.ErrorCodes.X_CERT_VALIDATION;
@@ -65,8 +70,20 @@ public class CertChainVerifier {
     /** Default validation algorithm type is PKIX. */
     private static final String VALIDATION_ALGORITHM = "PKIX";
 
-    /** Holds the PKIX algorithm parameters. */
-    private final PKIXBuilderParameters pkixParams;
+    /**
+     * Holds the certificate paths that have been successfully built and validated, keyed by the
+     * certificates of the chain. OCSP responses are not cached here and are verified every time.
+     */
+    private static final Cache<List<X509Certificate>, VerifiedCertPath> VERIFIED_PATH_CACHE;
+
+    private static final boolean VERIFIED_PATH_CACHE_ENABLED = SystemProperties.getCertPathCachePeriod() > 0;
+
+    static {
+        VERIFIED_PATH_CACHE = CacheBuilder.newBuilder()
+                .expireAfterWrite(SystemProperties.getCertPathCachePeriod(), TimeUnit.SECONDS)
+                .maximumSize(SystemProperties.getCertPathCacheSize())
+                .build();
+    }
 
     /** Holds the constructed certificate path. */
     private CertPath certPath;
@@ -75,34 +92,13 @@ public class CertChainVerifier {
     private CertChain certChain;
 
     /**
-     * Builds the certificate path for the target certificate using a list
-     * of trust anchors and a list of intermediate certificates.
+     * Creates the verifier for the certificate chain. The certificate path is built from the target certificate
+     * using the trust anchor and the intermediate certificates of the chain when the chain is verified and the
+     * path is not found in the cache.
      * @param certChain the certificate chain object
      */
     public CertChainVerifier(CertChain certChain) {
         this.certChain = certChain;
-
-        Set<TrustAnchor> trustAnchors =
-                createTrustAnchorSet(
-                        Arrays.asList(certChain.getTrustedRootCert()));
-
-        X509CertSelector certSelector = new X509CertSelector();
-        certSelector.setCertificate(certChain.getEndEntityCert());
-
-        try {
-            pkixParams = new PKIXBuilderParameters(trustAnchors, certSelector);
-            pkixParams.setRevocationEnabled(false);
-
-            if (!certChain.getAdditionalCerts().isEmpty()) {
-                CertStore intermediateCertStore =
-                        CertStore.getInstance("Collection",
-                                new CollectionCertStoreParameters(
-                                        certChain.getAdditionalCerts()), "BC");
-                pkixParams.addCertStore(intermediateCertStore);
-            }
-        } catch (Exception e) {
-            throw translateWithPrefix(X_CANNOT_CREATE_CERT_PATH, e);
-        }
     }
 
     /**
@@ -146,16 +142,14 @@ public class CertChainVerifier {
     }
 
     private void verifyImpl(List<OCSPResp> ocspResponses, Date atDate) {
-        pkixParams.setDate(atDate);
-        try {
-            certPath = buildCertPath(pkixParams);
+        CertPath cachedPath = getCachedCertPath(atDate != null ? atDate : new Date());
+        PKIXBuilderParameters pkixParams = cachedPath == null ? createPkixParams(atDate) : null;
 
-            PKIXCertPathValidatorResult pkixResult =
-                    verifyCertPath(certPath, pkixParams);
+        try {
+            certPath = cachedPath != null ? cachedPath : buildAndVerifyCertPath(pkixParams);
 
             if (ocspResponses != null) {
-                verifyOcspResponses(
-                        getCerts(), ocspResponses, pkixResult, atDate);
+                verifyOcspResponses(getCerts(), ocspResponses, atDate);
             }
         } catch (CertPathBuilderException ex) {
             throw translateWithPrefix(X_CANNOT_CREATE_CERT_PATH, ex);
@@ -164,9 +158,56 @@ public class CertChainVerifier {
         }
     }
 
+    private CertPath getCachedCertPath(Date atDate) {
+        if (!VERIFIED_PATH_CACHE_ENABLED) {
+            return null;
+        }
+
+        VerifiedCertPath cached = VERIFIED_PATH_CACHE.getIfPresent(certChain.getAllCerts());
+
+        return cached != null && cached.isValidAt(atDate) ? cached.getCertPath() : null;
+    }
+
+    private CertPath buildAndVerifyCertPath(PKIXBuilderParameters pkixParams) throws Exception {
+        CertPath path = buildCertPath(pkixParams);
+        verifyCertPath(path, pkixParams);
+
+        if (VERIFIED_PATH_CACHE_ENABLED) {
+            VERIFIED_PATH_CACHE.put(certChain.getAllCerts(), VerifiedCertPath.create(path));
+        }
+
+        return path;
+    }
+
+    private PKIXBuilderParameters createPkixParams(Date atDate) {
+        Set<TrustAnchor> trustAnchors =
+                createTrustAnchorSet(
+                        Arrays.asList(certChain.getTrustedRootCert()));
+
+        X509CertSelector certSelector = new X509CertSelector();
+        certSelector.setCertificate(certChain.getEndEntityCert());
+
+        try {
+            PKIXBuilderParameters pkixParams = new PKIXBuilderParameters(trustAnchors, certSelector);
+            pkixParams.setRevocationEnabled(false);
+            pkixParams.setDate(atDate);
+
+            if (!certChain.getAdditionalCerts().isEmpty()) {
+                CertStore intermediateCertStore =
+                        CertStore.getInstance("Collection",
+                                new CollectionCertStoreParameters(
+                                        certChain.getAdditionalCerts()), "BC");
+                pkixParams.addCertStore(intermediateCertStore);
+            }
+
+            return pkixParams;
+        } catch (Exception e) {
+            throw translateWithPrefix(X_CANNOT_CREATE_CERT_PATH, e);
+        }
+    }
+
     private void verifyOcspResponses(List<X509Certificate> certs,
-            List<OCSPResp> ocspResponses, PKIXCertPathValidatorResult result,
-            Date atDate) throws Exception {
+            List<OCSPResp> ocspResponses, Date atDate) throws Exception {
         for (X509Certificate subject : certs) {
             X509Certificate issuer =
                     GlobalConf.getCaCert(certChain.getInstanceIdentifier(),
@@ -196,15 +237,12 @@ public class CertChainVerifier {
         return certPathBuilder.build(pkixParams).getCertPath();
     }
 
-    private static PKIXCertPathValidatorResult verifyCertPath(CertPath certPath,
+    private static CertPathValidatorResult verifyCertPath(CertPath certPath,
             PKIXBuilderParameters pkixParams) throws Exception {
         CertPathValidator certPathValidator =
                 CertPathValidator.getInstance(VALIDATION_ALGORITHM);
 
-        CertPathValidatorResult result =
-                certPathValidator.validate(certPath, pkixParams);
-
-        return (PKIXCertPathValidatorResult) result;
+        return certPathValidator.validate(certPath, pkixParams);
     }
 
     private static Set<TrustAnchor> createTrustAnchorSet(
@@ -218,4 +256,38 @@ public class CertChainVerifier {
         return trustAnchors;
     }
 
+    /**
+     * Certificate path that has been built and validated, together with the
+     * period during which all the certificates of the path are valid.
+     */
+    @Value
+    private static class VerifiedCertPath {
+        private final CertPath certPath;
+        private final Date notBefore;
+        private final Date notAfter;
+
+        static VerifiedCertPath create(CertPath certPath) {
+            Date notBefore = null;
+            Date notAfter = null;
+
+            for (Certificate cert : certPath.getCertificates()) {
+                X509Certificate x509 = (X509Certificate) cert;
+
+                if (notBefore == null || x509.getNotBefore().after(notBefore)) {
+                    notBefore = x509.getNotBefore();
+                }
+
+                if (notAfter == null || x509.getNotAfter().before(notAfter)) {
+                    notAfter = x509.getNotAfter();
+                }
+            }
+
+            return new VerifiedCertPath(certPath, notBefore, notAfter);
+        }
+
+        boolean isValidAt(Date atDate) {
+            return notBefore != null && !atDate.before(notBefore) && !atDate.after(notAfter);
+        }
+    }
+
 }
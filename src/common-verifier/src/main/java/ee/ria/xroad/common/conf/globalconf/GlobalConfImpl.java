@@ -194,11 +194,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
             throw new CodedException(X_INTERNAL_ERROR, e);
         }
 
-        return p == null ? null : p.getMembers().stream()
-                .filter(m -> p.createMemberId(m).memberEquals(clientId))
-                .map(MemberType::getName)
-                .findFirst()
-                .orElse(null);
+        return p == null ? null : p.getMemberNames().get(clientId.getMemberId());
     }
 
     @Override
@@ -237,11 +233,13 @@ public class GlobalConfImpl implements GlobalConfProvider {
             throw new CodedException(X_INTERNAL_ERROR, e);
         }
 
-        return p == null ? null : p.getGlobalGroups().stream()
-                .filter(g -> g.getGroupCode().equals(
-                        globalGroupId.getGroupCode()))
-                .map(GlobalGroupType::getDescription)
-                .findFirst().orElse(null);
+        if (p == null) {
+            return null;
+        }
+
+        GlobalGroupType group = p.findGlobalGroup(globalGroupId);
+
+        return group != null ? group.getDescription() : null;
     }
 
     @Override
@@ -327,13 +325,8 @@ public class GlobalConfImpl implements GlobalConfProvider {
         List<X509Certificate> responderCerts = new ArrayList<>();
         try {
             for (SharedParametersV2 p : getSharedParameters()) {
-                for (List<OcspInfoType> ocspTypes
-                        : p.getCaCertsAndOcspData().values()) {
-                    ocspTypes.stream().map(OcspInfoType::getCert)
-                            .filter(Objects::nonNull)
-                            .map(CryptoUtils::readCertificate)
-                            .forEach(responderCerts::add);
-                }
+                p.getCaCertsAndOcspResponderCerts().values()
+                        .forEach(responderCerts::addAll);
             }
         } catch (Exception e) {
             log.error("Error while getting OCSP responder certificates", e);
@@ -411,12 +404,8 @@ public class GlobalConfImpl implements GlobalConfProvider {
     public boolean isOcspResponderCert(X509Certificate ca,
             X509Certificate ocspCert) {
         return getSharedParameters().stream()
-                .map(p -> p.getCaCertsAndOcspData().get(ca))
-                .filter(Objects::nonNull).flatMap(o -> o.stream())
-                .map(OcspInfoType::getCert).filter(Objects::nonNull)
-                .map(CryptoUtils::readCertificate)
-                .filter(c -> c.equals(ocspCert))
-                .findFirst().isPresent();
+                .map(p -> p.getCaCertsAndOcspResponderCerts().get(ca))
+                .anyMatch(c -> c != null && c.contains(ocspCert));
     }
 
     @Override
@@ -464,12 +453,10 @@ public class GlobalConfImpl implements GlobalConfProvider {
     @Override
     public boolean authCertMatchesMember(X509Certificate cert,
             ClientId memberId) throws Exception {
-        byte[] inputCertHash = certHash(cert);
+        String b64 = encodeBase64(certHash(cert));
         return getSharedParameters().stream()
                 .map(p -> p.getMemberAuthCerts().get(memberId))
-                .filter(Objects::nonNull).flatMap(h -> h.stream())
-                .filter(h -> Arrays.equals(inputCertHash, h)).findFirst()
-                .isPresent();
+                .anyMatch(h -> h != null && h.contains(b64));
     }
 
     @Override
@@ -534,9 +521,8 @@ public class GlobalConfImpl implements GlobalConfProvider {
     @Override
     public String getApprovedTspName(String instanceIdentifier,
             String approvedTspUrl) {
-        return getSharedParameters(instanceIdentifier).getApprovedTSAs()
-                .stream().filter(t -> t.getUrl().equals(approvedTspUrl))
-                .map(ApprovedTSAType::getName).findFirst().orElse(null);
+        return getSharedParameters(instanceIdentifier).getApprovedTspNames()
+                .get(approvedTspUrl);
     }
 
     @Override
@@ -572,13 +558,7 @@ public class GlobalConfImpl implements GlobalConfProvider {
             return false;
         }
 
-        GlobalGroupType group = p.findGlobalGroup(groupId);
-        if (group == null) {
-            return false;
-        }
-
-        return group.getGroupMember().stream().filter(m -> m.equals(subjectId))
-                .findFirst().isPresent();
+        return p.isGlobalGroupMember(groupId, subjectId);
     }
 
     @Override
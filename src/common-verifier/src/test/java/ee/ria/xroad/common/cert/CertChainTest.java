@@ -233,6 +233,29 @@ public class CertChainTest {
         }
     }
 
+    /**
+     * Tests that a previously verified chain is not accepted at a date when
+     * the certificates of the chain are no longer valid.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void verifiedChainNotAcceptedAfterExpiry() throws Exception {
+        X509Certificate rootCa = TestCertUtil.getCertChainCert("root_ca.p12");
+        X509Certificate userCert = TestCertUtil.getCertChainCert("user_0.p12");
+
+        CertChain chain = new CertChain("EE", userCert, rootCa,
+                new ArrayList<X509Certificate>());
+        verifyChainOnly(chain, makeDate(userCert.getNotBefore(), 1));
+        verifyChainOnly(chain, makeDate(userCert.getNotBefore(), 2));
+
+        try {
+            verifyChainOnly(chain, makeDate(userCert.getNotAfter(), 1));
+            fail("Path creation should fail");
+        } catch (CodedException e) {
+            assertTrue(e.getCause() instanceof CertPathBuilderException);
+        }
+    }
+
     // -- Utility methods
 
     private static void  verify(CertChain chain, List<OCSPResp> ocspResponses,
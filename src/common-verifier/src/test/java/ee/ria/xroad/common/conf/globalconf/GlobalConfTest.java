@@ -144,6 +144,33 @@ public class GlobalConfTest {
         assertNull("Description", GlobalConf.getGlobalGroupDescription(GlobalGroupId.create("EE", "foo")));
     }
 
+    /**
+     * Tests checking global group membership.
+     */
+    @Test
+    public void isSubjectInGlobalGroup() {
+        GlobalGroupId group = GlobalGroupId.create("EE", "Test group");
+
+        assertTrue(GlobalConf.isSubjectInGlobalGroup(ClientId.create("EE", "BUSINESS", "member2"), group));
+        assertFalse(GlobalConf.isSubjectInGlobalGroup(ClientId.create("EE", "BUSINESS", "member5"), group));
+        assertFalse(GlobalConf.isSubjectInGlobalGroup(ClientId.create("EE", "BUSINESS", "member2"),
+                GlobalGroupId.create("EE", "foo")));
+    }
+
+    /**
+     * Tests getting member names and approved TSP names.
+     */
+    @Test
+    public void getNames() {
+        assertEquals("Experimental producer", GlobalConf.getMemberName(ClientId.create("EE", "BUSINESS", "producer")));
+        assertEquals("Experimental producer",
+                GlobalConf.getMemberName(ClientId.create("EE", "BUSINESS", "producer", "subsys")));
+        assertNull(GlobalConf.getMemberName(ClientId.create("EE", "BUSINESS", "unknown")));
+
+        assertEquals("Test TSP", GlobalConf.getApprovedTspName("EE", "http://www.foo.bar"));
+        assertNull(GlobalConf.getApprovedTspName("EE", "http://unknown"));
+    }
+
     /**
      * Tests getting the actual service identifier for a given identifier.
      *
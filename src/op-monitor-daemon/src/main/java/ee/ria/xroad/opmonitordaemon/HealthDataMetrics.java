@@ -33,13 +33,16 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
-import com.codahale.metrics.SlidingTimeWindowReservoir;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Supplier;
 
 import static ee.ria.xroad.opmonitordaemon.HealthDataMetricsUtil.getLastRequestTimestampGaugeName;
@@ -66,13 +69,10 @@ final class HealthDataMetrics {
     static final String MONITORING_STARTUP_TIMESTAMP =
             "monitoringStartupTimestamp";
 
-    // The timestamps of last successful and unsuccessful requests are stored
-    // for each service that is handled for, and are provided when the
-    // respective gauge is queried.
-    private static Map<String, Long> requestTimestamps = new HashMap<>();
-
-    // Stores the service types of the services
-    private static Map<String, String> serviceTypes = new HashMap<>();
+    // The metrics of each service, by metric registry, so that the records
+    // can be processed without looking up the metrics from the registry.
+    private static final Map<MetricRegistry, Map<ServiceId, ServiceMetrics>>
+            SERVICE_METRICS = Collections.synchronizedMap(new WeakHashMap<>());
 
     private HealthDataMetrics() {
     }
@@ -99,97 +99,39 @@ final class HealthDataMetrics {
      */
     static void processRecords(MetricRegistry registry,
             List<OperationalDataRecord> records) {
-        for (OperationalDataRecord rec : records) {
-            if (!rec.getSecurityServerType().equals(
-                    OpMonitoringData.SecurityServerType.PRODUCER)) {
-                // Health data is computed over the requests that are handled
-                // in the producer role only.
-                continue;
-            }
-
-            ServiceId serviceId = HealthDataMetricsUtil.getServiceId(rec);
-
-            if (serviceId == null) {
-                // Ignore records without service ID.
-                continue;
-            }
-
-            registerOrUpdateGauges(registry, serviceId, rec);
-            registerOrUpdateCounters(registry, serviceId, rec);
-
-            if (rec.getSucceeded()) {
-                // Statistics of request duration and the sizes of the request
-                // and response are computed over the successful requests only.
-                registerOrUpdateHistograms(registry, serviceId, rec);
-            }
-        }
-    }
+        HealthData healthData = new HealthData();
+        records.forEach(healthData::add);
 
-    private static void registerOrUpdateGauges(MetricRegistry registry,
-            ServiceId serviceId, OperationalDataRecord rec) {
-        // last request timestamp
-        String expectedGaugeName = getLastRequestTimestampGaugeName(serviceId,
-                rec.getSucceeded());
-        requestTimestamps.put(expectedGaugeName, rec.getResponseOutTs());
-        Gauge gauge = HealthDataMetricsUtil.findGauge(registry,
-                expectedGaugeName);
-        if (gauge == null) {
-            registry.register(expectedGaugeName,
-                    (Gauge<Long>) () -> requestTimestamps.get(
-                            expectedGaugeName));
-        }
-
-        // service type
-        String serviceTypeGaugeName = getServiceTypeName(serviceId);
-        serviceTypes.put(serviceTypeGaugeName, rec.getServiceType());
-        Gauge serviceTypeGauge = HealthDataMetricsUtil.findGauge(registry,
-                serviceTypeGaugeName);
-        if (serviceTypeGauge == null) {
-            registry.register(serviceTypeGaugeName,
-                    (Gauge<String>) () -> serviceTypes.get(serviceTypeGaugeName));
-        }
+        processHealthData(registry, healthData);
     }
 
-    private static void registerOrUpdateCounters(MetricRegistry registry,
-            ServiceId serviceId, OperationalDataRecord rec) {
-        String expectedCounterName = getRequestCounterName(serviceId,
-                rec.getSucceeded());
-        Counter counter = HealthDataMetricsUtil.findCounter(registry,
-                expectedCounterName);
-
-        if (counter == null) {
-            // Register and increment a new counter.
-            counter = new SlidingTimeWindowCounter(
-                    OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS, TimeUnit.SECONDS);
-            registry.register(expectedCounterName, counter);
-        }
-
-        counter.inc();
-    }
-
-    private static void registerOrUpdateHistograms(MetricRegistry registry,
-            ServiceId serviceId, OperationalDataRecord rec) {
-        registerOrUpdateHistogram(registry, getRequestDurationName(serviceId), getRequestDuration(rec));
-
-        registerOrUpdateHistogram(registry, getRequestSizeName(serviceId), rec.getRequestSize());
-        registerOrUpdateHistogram(registry, getResponseSizeName(serviceId), rec.getResponseSize());
+    /**
+     * Update the metrics registry with the health data aggregated from
+     * a set of records. If necessary, new metrics are registered.
+     * @param registry   the metric registry of the operational monitoring daemon
+     * @param healthData the health data of the records
+     */
+    static void processHealthData(MetricRegistry registry,
+            HealthData healthData) {
+        Map<ServiceId, ServiceMetrics> serviceMetrics =
+                SERVICE_METRICS.computeIfAbsent(registry,
+                        r -> new ConcurrentHashMap<>());
+
+        healthData.services.forEach((serviceId, data) ->
+                serviceMetrics.computeIfAbsent(serviceId,
+                        id -> new ServiceMetrics(registry, id)).update(data));
     }
 
-    private static void registerOrUpdateHistogram(MetricRegistry registry, String histogramName, Long newValue) {
-
-        if (newValue == null) return;
-
-        Histogram histogram = HealthDataMetricsUtil.findHistogram(registry, histogramName);
-
-        if (histogram == null) {
-            // Add a histogram corresponding to the service and update it.
-            histogram = registry.register(histogramName,
-                    new Histogram(new SlidingTimeWindowReservoir(
-                            OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS,
-                            TimeUnit.SECONDS)));
-        }
-
-        histogram.update(newValue);
+    /**
+     * @param rec an operational data record
+     * @return true if the record is taken into account in health data
+     */
+    static boolean isHealthDataRecord(OperationalDataRecord rec) {
+        // Health data is computed over the requests that are handled
+        // in the producer role only. Records without service ID are ignored.
+        return rec.getSecurityServerType().equals(
+                OpMonitoringData.SecurityServerType.PRODUCER)
+                && HealthDataMetricsUtil.getServiceId(rec) != null;
     }
 
     /**
@@ -224,4 +166,213 @@ final class HealthDataMetrics {
                 (Gauge<Long>) startupTimestampProvider::get);
     }
 
+    private static SlidingTimeWindowCounter createCounter() {
+        return new SlidingTimeWindowCounter(
+                OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static WindowHistogram createHistogram() {
+        return new WindowHistogram(new SlidingTimeWindowStatsReservoir(
+                OP_MONITOR_HEALTH_STATS_PERIOD_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * The health data of a set of records, aggregated by service. The size
+     * of the aggregates does not depend on the number of records, so the
+     * records can be aggregated while they are being stored and the metrics
+     * updated after the records have been committed.
+     */
+    static final class HealthData {
+
+        private final Map<ServiceId, ServiceHealthData> services =
+                new HashMap<>();
+
+        /**
+         * Adds the record to the health data, if it is taken into account
+         * in health data.
+         * @param rec an operational data record
+         */
+        void add(OperationalDataRecord rec) {
+            if (!isHealthDataRecord(rec)) {
+                return;
+            }
+
+            services.computeIfAbsent(HealthDataMetricsUtil.getServiceId(rec),
+                    id -> new ServiceHealthData()).add(rec);
+        }
+    }
+
+    /**
+     * The health data of a single service in a set of records.
+     */
+    private static final class ServiceHealthData {
+
+        private final RequestStatusData successful = new RequestStatusData();
+        private final RequestStatusData unsuccessful = new RequestStatusData();
+
+        private final SlidingTimeWindowStatsReservoir.Bucket requestDuration =
+                new SlidingTimeWindowStatsReservoir.Bucket();
+        private final SlidingTimeWindowStatsReservoir.Bucket requestSize =
+                new SlidingTimeWindowStatsReservoir.Bucket();
+        private final SlidingTimeWindowStatsReservoir.Bucket responseSize =
+                new SlidingTimeWindowStatsReservoir.Bucket();
+
+        private String serviceType;
+
+        void add(OperationalDataRecord rec) {
+            serviceType = rec.getServiceType();
+
+            if (rec.getSucceeded()) {
+                successful.add(rec);
+
+                addValue(requestDuration, getRequestDuration(rec));
+                addValue(requestSize, rec.getRequestSize());
+                addValue(responseSize, rec.getResponseSize());
+            } else {
+                unsuccessful.add(rec);
+            }
+        }
+
+        private static void addValue(
+                SlidingTimeWindowStatsReservoir.Bucket values, Long value) {
+            if (value != null) {
+                values.add(value);
+            }
+        }
+    }
+
+    /**
+     * The number of either the successful or the unsuccessful requests of
+     * a service in a set of records, and the timestamp of the last of them.
+     */
+    private static final class RequestStatusData {
+
+        private long count;
+        private Long lastRequestTimestamp;
+
+        void add(OperationalDataRecord rec) {
+            count++;
+            lastRequestTimestamp = rec.getResponseOutTs();
+        }
+    }
+
+    /**
+     * Histogram that can be updated with values aggregated elsewhere.
+     */
+    private static final class WindowHistogram extends Histogram {
+
+        private final SlidingTimeWindowStatsReservoir reservoir;
+        private final LongAdder count = new LongAdder();
+
+        WindowHistogram(SlidingTimeWindowStatsReservoir reservoir) {
+            super(reservoir);
+            this.reservoir = reservoir;
+        }
+
+        void update(SlidingTimeWindowStatsReservoir.Bucket values) {
+            count.add(values.getCount());
+            reservoir.update(values);
+        }
+
+        @Override
+        public long getCount() {
+            return super.getCount() + count.sum();
+        }
+    }
+
+    /**
+     * The metrics of a single service. The metrics are registered with the
+     * registry the first time they have a value.
+     */
+    private static final class ServiceMetrics {
+
+        private final MetricRegistry registry;
+        private final ServiceId serviceId;
+
+        private final RequestStatusMetrics successful = new RequestStatusMetrics(true);
+        private final RequestStatusMetrics unsuccessful = new RequestStatusMetrics(false);
+
+        private volatile String serviceType;
+
+        // Statistics of request duration and the sizes of the request
+        // and response are computed over the successful requests only.
+        private WindowHistogram requestDuration;
+        private WindowHistogram requestSize;
+        private WindowHistogram responseSize;
+
+        ServiceMetrics(MetricRegistry registry, ServiceId serviceId) {
+            this.registry = registry;
+            this.serviceId = serviceId;
+
+            registry.register(getServiceTypeName(serviceId),
+                    (Gauge<String>) () -> serviceType);
+        }
+
+        synchronized void update(ServiceHealthData data) {
+            serviceType = data.serviceType;
+
+            successful.update(data.successful);
+            unsuccessful.update(data.unsuccessful);
+
+            requestDuration = updateHistogram(requestDuration,
+                    getRequestDurationName(serviceId), data.requestDuration);
+            requestSize = updateHistogram(requestSize,
+                    getRequestSizeName(serviceId), data.requestSize);
+            responseSize = updateHistogram(responseSize,
+                    getResponseSizeName(serviceId), data.responseSize);
+        }
+
+        private WindowHistogram updateHistogram(WindowHistogram histogram,
+                String histogramName,
+                SlidingTimeWindowStatsReservoir.Bucket values) {
+            if (values.getCount() == 0) {
+                return histogram;
+            }
+
+            if (histogram == null) {
+                // Add a histogram corresponding to the service.
+                histogram = registry.register(histogramName, createHistogram());
+            }
+
+            histogram.update(values);
+
+            return histogram;
+        }
+
+        /**
+         * The last request timestamp and the request counter of either the
+         * successful or the unsuccessful requests of the service.
+         */
+        private final class RequestStatusMetrics {
+
+            private final boolean success;
+
+            private volatile Long lastRequestTimestamp;
+
+            private Counter requestCounter;
+
+            RequestStatusMetrics(boolean success) {
+                this.success = success;
+            }
+
+            void update(RequestStatusData data) {
+                if (data.count == 0) {
+                    return;
+                }
+
+                lastRequestTimestamp = data.lastRequestTimestamp;
+
+                if (requestCounter == null) {
+                    registry.register(
+                            getLastRequestTimestampGaugeName(serviceId, success),
+                            (Gauge<Long>) () -> lastRequestTimestamp);
+                    requestCounter = registry.register(
+                            getRequestCounterName(serviceId, success),
+                            createCounter());
+                }
+
+                requestCounter.inc(data.count);
+            }
+        }
+    }
 }
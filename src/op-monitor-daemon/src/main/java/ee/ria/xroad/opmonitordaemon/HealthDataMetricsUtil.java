@@ -30,18 +30,16 @@ import ee.ria.xroad.common.identifier.ServiceId;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Metric;
 import com.codahale.metrics.MetricRegistry;
-import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.SortedMap;
 import java.util.regex.Pattern;
 
 /**
  * Helper utilities for preparing and processing health data metrics.
  */
-@Slf4j
 final class HealthDataMetricsUtil {
 
     // The template of the names of the metrics that are registered each time
@@ -227,18 +225,7 @@ final class HealthDataMetricsUtil {
      * @return the found gauge or null if it does not exist
      */
     static Gauge findGauge(MetricRegistry registry, String expectedGaugeName) {
-        SortedMap<String, Gauge> gauges = registry.getGauges(
-                (name, metric) -> name.matches(HealthDataMetricsUtil
-                        .formatMetricMatchRegexp(expectedGaugeName))
-        );
-
-        if (gauges.size() > 1) {
-            // Should not happen because we use a strict regexp.
-            log.warn("Multiple gauges matched the name "
-                    + expectedGaugeName);
-        }
-
-        return gauges.isEmpty() ? null : gauges.values().iterator().next();
+        return findMetric(registry, expectedGaugeName, Gauge.class);
     }
 
     /**
@@ -248,18 +235,7 @@ final class HealthDataMetricsUtil {
      */
     static Counter findCounter(MetricRegistry registry,
             String expectedCounterName) {
-        SortedMap<String, Counter> counters = registry.getCounters(
-                (name, metric) -> name.matches(HealthDataMetricsUtil
-                        .formatMetricMatchRegexp(expectedCounterName))
-        );
-
-        if (counters.size() > 1) {
-            // Should not happen because we use a strict regexp.
-            log.warn("Multiple counters matched the name "
-                    + expectedCounterName);
-        }
-
-        return counters.isEmpty() ? null : counters.values().iterator().next();
+        return findMetric(registry, expectedCounterName, Counter.class);
     }
 
     /**
@@ -270,18 +246,15 @@ final class HealthDataMetricsUtil {
      */
     static Histogram findHistogram(MetricRegistry registry,
             String expectedHistogramName) {
-        SortedMap<String, Histogram> histograms = registry.getHistograms(
-                (name, metric) -> name.matches(HealthDataMetricsUtil
-                        .formatMetricMatchRegexp(expectedHistogramName))
-        );
-
-        if (histograms.size() > 1) {
-            // Should not happen because we use a strict regexp.
-            log.warn("Multiple histograms matched the name "
-                    + expectedHistogramName);
-        }
+        return findMetric(registry, expectedHistogramName, Histogram.class);
+    }
+
+    private static <T extends Metric> T findMetric(MetricRegistry registry,
+            String name, Class<T> type) {
+        // The metrics map of the registry is looked up by the exact name,
+        // without scanning all the registered metrics.
+        Metric metric = registry.getMetrics().get(name);
 
-        return histograms.isEmpty() ? null
-                : histograms.values().iterator().next();
+        return type.isInstance(metric) ? type.cast(metric) : null;
     }
 }
@@ -217,37 +217,31 @@ public class HealthDataRequestHandler extends QueryRequestHandler {
             Optional<Histogram> requestDuration =
                     Optional.ofNullable(findHistogram(healthMetricRegistry,
                             getRequestDurationName(service)));
-            requestDuration.ifPresent(h -> {
-                lastPeriodStats.setRequestMinDuration(h.getSnapshot().getMin());
-                lastPeriodStats.setRequestAverageDuration(
-                        h.getSnapshot().getMean());
-                lastPeriodStats.setRequestMaxDuration(h.getSnapshot().getMax());
-                lastPeriodStats.setRequestDurationStdDev(
-                        h.getSnapshot().getStdDev());
+            requestDuration.map(Histogram::getSnapshot).ifPresent(s -> {
+                lastPeriodStats.setRequestMinDuration(s.getMin());
+                lastPeriodStats.setRequestAverageDuration(s.getMean());
+                lastPeriodStats.setRequestMaxDuration(s.getMax());
+                lastPeriodStats.setRequestDurationStdDev(s.getStdDev());
             });
 
             Optional<Histogram> requestSize =
                     Optional.ofNullable(findHistogram(healthMetricRegistry,
                             getRequestSizeName(service)));
-            requestSize.ifPresent(h -> {
-                lastPeriodStats.setRequestMinSize(h.getSnapshot().getMin());
-                lastPeriodStats.setRequestAverageSize(
-                        h.getSnapshot().getMean());
-                lastPeriodStats.setRequestMaxSize(h.getSnapshot().getMax());
-                lastPeriodStats.setRequestSizeStdDev(
-                        h.getSnapshot().getStdDev());
+            requestSize.map(Histogram::getSnapshot).ifPresent(s -> {
+                lastPeriodStats.setRequestMinSize(s.getMin());
+                lastPeriodStats.setRequestAverageSize(s.getMean());
+                lastPeriodStats.setRequestMaxSize(s.getMax());
+                lastPeriodStats.setRequestSizeStdDev(s.getStdDev());
             });
 
             Optional<Histogram> responseSize =
                     Optional.ofNullable(findHistogram(healthMetricRegistry,
                             getResponseSizeName(service)));
-            responseSize.ifPresent(h -> {
-                lastPeriodStats.setResponseMinSize(h.getSnapshot().getMin());
-                lastPeriodStats.setResponseAverageSize(
-                        h.getSnapshot().getMean());
-                lastPeriodStats.setResponseMaxSize(h.getSnapshot().getMax());
-                lastPeriodStats.setResponseSizeStdDev(
-                        h.getSnapshot().getStdDev());
+            responseSize.map(Histogram::getSnapshot).ifPresent(s -> {
+                lastPeriodStats.setResponseMinSize(s.getMin());
+                lastPeriodStats.setResponseAverageSize(s.getMean());
+                lastPeriodStats.setResponseMaxSize(s.getMax());
+                lastPeriodStats.setResponseSizeStdDev(s.getStdDev());
             });
         }
 
@@ -25,6 +25,7 @@
  */
 package ee.ria.xroad.opmonitordaemon;
 
+import ee.ria.xroad.common.db.TablePartitions;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 import ee.ria.xroad.common.util.JobManager;
 import ee.ria.xroad.common.util.MessageSendingJob;
@@ -44,7 +45,10 @@ import java.util.concurrent.TimeUnit;
 import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
 
 /**
- * Deletes outdated operational data records from the database.
+ * Deletes outdated operational data records from the database. If the
+ * operational data table is partitioned, the partitions containing only
+ * outdated records are dropped first and new partitions are created for
+ * the upcoming days.
  */
 @Slf4j
 final class OperationalDataRecordCleaner extends UntypedAbstractActor {
@@ -54,6 +58,9 @@ final class OperationalDataRecordCleaner extends UntypedAbstractActor {
     private static final String OPERATIONAL_DATA_RECORD_CLEANER =
             OperationalDataRecordCleaner.class.getSimpleName();
 
+    static final TablePartitions PARTITIONS = new TablePartitions("operational_data",
+            "create_operational_data_partitions", "drop_operational_data_partitions");
+
     /**
      * Initializes the operational data recorder cleaner creating an operational
      * data records cleaner actor in the given actor system and scheduling a
@@ -91,12 +98,21 @@ final class OperationalDataRecordCleaner extends UntypedAbstractActor {
     }
 
     static int cleanRecords(Instant before) throws Exception {
+        return cleanRecords(before, PARTITIONS);
+    }
+
+    static int cleanRecords(Instant before, TablePartitions partitions) throws Exception {
         log.trace("cleanRecords({})", before);
 
+        long beforeTs = TimeUnit.MILLISECONDS.toSeconds(before.toEpochMilli());
+
         return doInTransaction(session -> {
+            partitions.maintain(session, beforeTs);
+
+            // Removes the outdated records that remain in the partition
+            // containing the boundary and in the default partition
             String hql =
-                    "delete OperationalDataRecord r where r.monitoringDataTs < "
-                            + TimeUnit.MILLISECONDS.toSeconds(before.toEpochMilli());
+                    "delete OperationalDataRecord r where r.monitoringDataTs < " + beforeTs;
 
             int removed = session.createQuery(hql).executeUpdate();
 
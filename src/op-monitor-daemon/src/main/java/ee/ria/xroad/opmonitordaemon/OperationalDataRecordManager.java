@@ -30,14 +30,18 @@ import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 
 import lombok.Setter;
+import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
 import static ee.ria.xroad.opmonitordaemon.OperationalDataOutputSpecFields.MONITORING_DATA_TS;
@@ -51,6 +55,8 @@ final class OperationalDataRecordManager {
 
     private static final int DEFAULT_BATCH_SIZE = 50;
 
+    private static final int QUERY_FETCH_SIZE = 1000;
+
     @Setter
     private static int maxRecordsInPayload = OpMonitoringSystemProperties.getOpMonitorMaxRecordsInPayload();
 
@@ -63,6 +69,21 @@ final class OperationalDataRecordManager {
         doInTransaction(session -> storeInTransaction(session, records, timestamp));
     }
 
+    /**
+     * Stores the records decoded by the reader in a single transaction. The records are read and written to the
+     * database in batches of the configured JDBC batch size, so that only one batch is held in memory at a time.
+     * @param reader the reader of the records
+     * @param timestamp the monitoring data timestamp of the records
+     * @param storedRecordsHandler called with each batch of records after it has been written, before the
+     * transaction is committed
+     * @return the number of stored records
+     * @throws Exception if the records cannot be read or stored
+     */
+    static int storeRecords(OperationalDataRecordsReader reader, long timestamp,
+            Consumer<List<OperationalDataRecord>> storedRecordsHandler) throws Exception {
+        return doInTransaction(session -> storeInTransaction(session, reader, timestamp, storedRecordsHandler));
+    }
+
     static OperationalDataRecords queryAllRecords() throws Exception {
         return doInTransaction(OperationalDataRecordManager::queryAllOperationalDataInTransaction);
     }
@@ -78,14 +99,35 @@ final class OperationalDataRecordManager {
 
     static OperationalDataRecords queryRecords(long recordsFrom, long recordsTo, ClientId clientFilter,
             ClientId serviceProviderFilter, Set<String> outputFields) throws Exception {
-        OperationalDataRecords records = doInTransaction(session -> queryOperationalDataInTransaction(session,
-                recordsFrom, recordsTo, clientFilter, serviceProviderFilter, outputFields));
+        List<OperationalDataRecord> recordList = new ArrayList<>();
+        Long nextRecordsFrom = queryRecords(recordsFrom, recordsTo, clientFilter, serviceProviderFilter,
+                outputFields, recordList::add);
 
-        removeMonitoringDataTsIfNotSpecified(records, outputFields);
+        OperationalDataRecords records = new OperationalDataRecords(recordList);
+        records.setNextRecordsFrom(nextRecordsFrom);
 
         return records;
     }
 
+    /**
+     * Queries operational data records from the database and passes them to the handler one at a time as they are
+     * read from a database cursor, in the order of their monitoringDataTs timestamps.
+     * @param recordsFrom           records from timestamp seconds
+     * @param recordsTo             records to timestamp seconds
+     * @param clientFilter          filter records by client (if not null)
+     * @param serviceProviderFilter filter records by service provider (if not null)
+     * @param outputFields          list of the requested operational data field
+     * @param recordHandler         called with each record
+     * @return the timestamp to continue querying from if not all the records fit into the response, otherwise null
+     * @throws Exception if the records cannot be queried
+     */
+    static Long queryRecords(long recordsFrom, long recordsTo, ClientId clientFilter,
+            ClientId serviceProviderFilter, Set<String> outputFields, Consumer<OperationalDataRecord> recordHandler)
+            throws Exception {
+        return doInTransaction(session -> queryOperationalDataInTransaction(session, recordsFrom, recordsTo,
+                clientFilter, serviceProviderFilter, outputFields, recordHandler));
+    }
+
     private static Void storeInTransaction(Session session, List<OperationalDataRecord> records, long timestamp) {
         int storedCount = 0;
         int batchSize = getConfiguredBatchSize(session);
@@ -103,6 +145,29 @@ final class OperationalDataRecordManager {
         return null;
     }
 
+    @SneakyThrows
+    private static int storeInTransaction(Session session, OperationalDataRecordsReader reader, long timestamp,
+            Consumer<List<OperationalDataRecord>> storedRecordsHandler) {
+        int storedCount = 0;
+        int batchSize = getConfiguredBatchSize(session);
+        List<OperationalDataRecord> records;
+
+        while (!(records = reader.read(batchSize)).isEmpty()) {
+            for (OperationalDataRecord record : records) {
+                record.setMonitoringDataTs(timestamp);
+                session.save(record);
+            }
+
+            session.flush();
+            session.clear();
+
+            storedRecordsHandler.accept(records);
+            storedCount += records.size();
+        }
+
+        return storedCount;
+    }
+
     private static int getConfiguredBatchSize(Session session) {
         if (configuredBatchSize == 0) {
             configuredBatchSize = HibernateUtil.getConfiguredBatchSize(session, DEFAULT_BATCH_SIZE);
@@ -121,75 +186,54 @@ final class OperationalDataRecordManager {
     /**
      * Queries operational data records from the database using search criteria parameters. The number of returned
      * records is limited by the configured value maxRecordsInPayload plus overflow records with the same
-     * monitorindDataTs timestamp as the last included record.
+     * monitorindDataTs timestamp as the last included record. The records are read in a single pass: reading stops
+     * at the first record after the overflow records, whose presence also means that records are left.
      * @param session               database session
      * @param recordsFrom           records from timestamp seconds
      * @param recordsTo             records to timestamp seconds
      * @param clientFilter          filter records by client (if not null)
      * @param serviceProviderFilter filter records by service provider (if not null)
      * @param outputFields          list of the requested operational data field
-     * @return operational data records.
+     * @param recordHandler         called with each returned record
+     * @return the timestamp to continue querying from in case of records overflow, otherwise null
      */
-    @SuppressWarnings("unchecked")
-    private static OperationalDataRecords queryOperationalDataInTransaction(Session session, long recordsFrom,
-            long recordsTo, ClientId clientFilter, ClientId serviceProviderFilter, Set<String> outputFields) {
-
+    private static Long queryOperationalDataInTransaction(Session session, long recordsFrom, long recordsTo,
+            ClientId clientFilter, ClientId serviceProviderFilter, Set<String> outputFields,
+            Consumer<OperationalDataRecord> recordHandler) {
         final OperationalDataRecordQuery
                 query = new OperationalDataRecordQuery(session, clientFilter, serviceProviderFilter, outputFields);
         query.between(recordsFrom, recordsTo);
         query.orderByAsc(MONITORING_DATA_TS);
-        query.setMaxRecords(maxRecordsInPayload);
-        OperationalDataRecords records = new OperationalDataRecords(query.list());
 
-        // Check overflow.
-        if (records.size() == maxRecordsInPayload) {
-            log.trace("Check possible records overflow");
+        boolean removeMonitoringDataTs = !outputFields.isEmpty() && !outputFields.contains(MONITORING_DATA_TS);
+        int count = 0;
+        Long lastMonitoringDataTs = null;
 
-            long lastMonitoringDataTs = records.getLastMonitoringDataTs();
-            final OperationalDataRecordQuery overflow =
-                    new OperationalDataRecordQuery(session, clientFilter, serviceProviderFilter, outputFields);
-            overflow.addOverflowCriteria(lastMonitoringDataTs);
-            OperationalDataRecords overflowRecords = new OperationalDataRecords(overflow.list());
+        try (Stream<OperationalDataRecord> records = query.stream(QUERY_FETCH_SIZE)) {
+            Iterator<OperationalDataRecord> it = records.iterator();
 
-            records.removeRecordsByMonitoringDataTs(lastMonitoringDataTs);
-            records.append(overflowRecords);
+            while (it.hasNext()) {
+                OperationalDataRecord record = it.next();
+                long monitoringDataTs = record.getMonitoringDataTs();
 
-            if (recordsOverflow(session, lastMonitoringDataTs, recordsTo, clientFilter, serviceProviderFilter)) {
-                log.debug("Records overflow, set nextRecordsFrom to {}", lastMonitoringDataTs + 1);
-
-                records.setNextRecordsFrom(lastMonitoringDataTs + 1);
-            }
-        }
+                if (lastMonitoringDataTs != null && monitoringDataTs != lastMonitoringDataTs) {
+                    log.debug("Records overflow, set nextRecordsFrom to {}", lastMonitoringDataTs + 1);
 
-        return records;
-    }
+                    return lastMonitoringDataTs + 1;
+                }
 
-    private static void removeMonitoringDataTsIfNotSpecified(OperationalDataRecords records, Set<String> outputFields) {
-        if (!outputFields.isEmpty() && !outputFields.contains(MONITORING_DATA_TS)) {
-            records.getRecords().forEach(i -> i.setMonitoringDataTs(null));
-        }
-    }
+                if (++count == maxRecordsInPayload) {
+                    lastMonitoringDataTs = monitoringDataTs;
+                }
 
-    private static boolean recordsOverflow(Session session, long lastMonitoringDataTs, long recordsTo,
-            ClientId clientFilter, ClientId serviceProviderFilter) {
-        // Indicate overflow only if some records are not included.
-        return lastMonitoringDataTs < recordsTo && hasRecordsLeft(session, lastMonitoringDataTs, recordsTo,
-                clientFilter, serviceProviderFilter);
-    }
+                if (removeMonitoringDataTs) {
+                    record.setMonitoringDataTs(null);
+                }
 
-    private static boolean hasRecordsLeft(Session session, long lastMonitoringDataTs, long recordsTo,
-            ClientId clientFilter, ClientId serviceProviderFilter) {
-        if (lastMonitoringDataTs == recordsTo) {
-            return false;
+                recordHandler.accept(record);
+            }
         }
 
-        final OperationalDataRecordQuery query =
-                new OperationalDataRecordQuery(session, clientFilter, serviceProviderFilter,
-                        Collections.singleton(MONITORING_DATA_TS));
-        // BETWEEN treats the endpoint values as included in the range.
-        query.between(lastMonitoringDataTs + 1, recordsTo);
-        query.setMaxRecords(1);
-
-        return query.list().size() > 0;
+        return null;
     }
 }
@@ -48,6 +48,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.CLIENT_MEMBER_CLASS;
 import static ee.ria.xroad.common.opmonitoring.OpMonitoringData.CLIENT_MEMBER_CODE;
@@ -151,19 +152,22 @@ final class OperationalDataRecordQuery {
                                 member.getSubsystemCode()));
     }
 
-    void addOverflowCriteria(long monitoringDataTs) {
-        pred = cb.and(pred, cb.equal(from.get(MONITORING_DATA_TS), monitoringDataTs));
-    }
-
-    List<OperationalDataRecord> list() {
+    /**
+     * Streams the matching records from a database cursor.
+     * @param fetchSize the number of rows fetched from the database at a time
+     * @return the records, the stream must be closed after use
+     */
+    Stream<OperationalDataRecord> stream(int fetchSize) {
         query.multiselect(projection).where(pred);
         if (order != null) {
             query.orderBy(order);
         }
-        return transform(session.createQuery(query)
+        return session.createQuery(query)
                 .setReadOnly(true)
+                .setFetchSize(fetchSize)
                 .setMaxResults(maxRecords)
-                .getResultList());
+                .stream()
+                .map(OperationalDataRecordQuery::transform);
     }
 
     void between(long fromTs, long toTs) {
@@ -175,7 +179,7 @@ final class OperationalDataRecordQuery {
     }
 
     /**
-     * Transforms a list of Tuple to list of OperationalDataRecord
+     * Transforms a Tuple to OperationalDataRecord
      *
      * A tuple represents a partial OperationalDataRecord. Assumes that the column aliases in a tuple match the field
      * names and a setter for the field exists (uses reflection). Assumes that the values can
@@ -183,24 +187,19 @@ final class OperationalDataRecordQuery {
      * @see #configureOutputFields
      * @see OperationalDataRecord
      */
-    private static List<OperationalDataRecord> transform(List<Tuple> result) {
-        List<OperationalDataRecord> tmp = new ArrayList<>(result.size());
-
-        for (Tuple t : result) {
-            final OperationalDataRecord record = new OperationalDataRecord();
-            for (TupleElement<?> te : t.getElements()) {
-                final Method method = SETTERS.get(te.getAlias());
-                if (method != null) {
-                    try {
-                        method.invoke(record, t.get(te));
-                    } catch (InvocationTargetException | IllegalAccessException e) {
-                        throw new IllegalArgumentException("Unable to transform", e);
-                    }
+    private static OperationalDataRecord transform(Tuple t) {
+        final OperationalDataRecord record = new OperationalDataRecord();
+        for (TupleElement<?> te : t.getElements()) {
+            final Method method = SETTERS.get(te.getAlias());
+            if (method != null) {
+                try {
+                    method.invoke(record, t.get(te));
+                } catch (InvocationTargetException | IllegalAccessException e) {
+                    throw new IllegalArgumentException("Unable to transform", e);
                 }
             }
-            tmp.add(record);
         }
-        return tmp;
+        return record;
     }
 
     /*
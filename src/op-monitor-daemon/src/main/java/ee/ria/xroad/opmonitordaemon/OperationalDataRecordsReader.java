@@ -0,0 +1,130 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.util.JsonUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming decoder of the JSON payload of store operational data requests.
+ * The records of the payload are decoded a batch at a time as they arrive,
+ * so that the whole payload is never held in memory.
+ */
+class OperationalDataRecordsReader {
+
+    private static final Gson GSON = JsonUtils.getSerializer();
+
+    private static final String RECORDS = "records";
+
+    private final JsonReader reader;
+
+    private boolean started;
+    private boolean inRecords;
+    private boolean finished;
+
+    /**
+     * @param in the input stream of the JSON payload, encoded in UTF-8
+     */
+    OperationalDataRecordsReader(InputStream in) {
+        this.reader = new JsonReader(
+                new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reads the next records of the payload.
+     * @param maxRecords the maximum number of records to read
+     * @return the records, or an empty list if all the records have been read
+     * @throws Exception if the payload is empty or not valid
+     */
+    List<OperationalDataRecord> read(int maxRecords) throws Exception {
+        if (!started) {
+            start();
+        }
+
+        List<OperationalDataRecord> records = new ArrayList<>();
+
+        try {
+            while (records.size() < maxRecords && hasNextRecord()) {
+                records.add(GSON.fromJson(reader,
+                        OperationalDataRecord.class));
+            }
+        } catch (Exception e) {
+            throw new Exception("Received invalid request", e);
+        }
+
+        return records;
+    }
+
+    private void start() throws Exception {
+        started = true;
+
+        try {
+            reader.beginObject();
+        } catch (EOFException e) {
+            throw new Exception(
+                    "No data was found in the request to store data");
+        } catch (Exception e) {
+            throw new Exception("Received invalid request", e);
+        }
+    }
+
+    // Moves the reader to the next record of the records array, skipping
+    // any other members of the payload object.
+    private boolean hasNextRecord() throws IOException {
+        while (!finished) {
+            if (inRecords) {
+                if (reader.hasNext()) {
+                    return true;
+                }
+
+                reader.endArray();
+                inRecords = false;
+            } else if (!reader.hasNext()) {
+                reader.endObject();
+                finished = true;
+            } else if (RECORDS.equals(reader.nextName())
+                    && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                inRecords = true;
+            } else {
+                reader.skipValue();
+            }
+        }
+
+        return false;
+    }
+}
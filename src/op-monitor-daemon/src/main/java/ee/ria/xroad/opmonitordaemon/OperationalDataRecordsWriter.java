@@ -0,0 +1,90 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.util.JsonUtils;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import lombok.Getter;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming encoder of the JSON payload of operational data responses. The
+ * records are encoded one at a time as they are read from the database, so
+ * that the whole payload is never held in memory. The output is the same as
+ * {@link OperationalDataRecords#getPayload(Gson)} produces.
+ */
+class OperationalDataRecordsWriter implements Closeable {
+
+    private static final Gson GSON = JsonUtils.getSerializer();
+
+    private static final String RECORDS = "records";
+
+    private final JsonWriter writer;
+
+    @Getter
+    private int count;
+
+    /**
+     * @param out the output stream of the JSON payload, closed when this
+     * writer is closed
+     * @throws IOException if writing the start of the payload fails
+     */
+    OperationalDataRecordsWriter(OutputStream out) throws IOException {
+        this.writer = GSON.newJsonWriter(
+                new OutputStreamWriter(out, StandardCharsets.UTF_8));
+
+        writer.beginObject();
+        writer.name(RECORDS);
+        writer.beginArray();
+    }
+
+    /**
+     * Writes the record into the payload.
+     * @param record the record
+     */
+    void write(OperationalDataRecord record) {
+        GSON.toJson(record, OperationalDataRecord.class, writer);
+        count++;
+    }
+
+    /**
+     * Writes the end of the payload and closes the underlying stream.
+     * @throws IOException if writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        writer.endArray();
+        writer.endObject();
+        writer.close();
+    }
+}
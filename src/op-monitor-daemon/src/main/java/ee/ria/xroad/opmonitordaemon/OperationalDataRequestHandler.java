@@ -42,6 +42,7 @@ import ee.ria.xroad.opmonitordaemon.message.SearchCriteriaType;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.ByteArrayOutputStream;
 
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
@@ -52,6 +53,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
 
 import static ee.ria.xroad.common.ErrorCodes.CLIENT_X;
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
@@ -165,7 +167,6 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
             long recordsFrom, long recordsTo, ClientId filterByServiceProvider,
             Set<String> outputFields, long recordsAvailableBefore)
             throws IOException {
-        OperationalDataRecords responseRecords;
         GetSecurityServerOperationalDataResponseType opDataResponse =
                 OBJECT_FACTORY
                         .createGetSecurityServerOperationalDataResponseType();
@@ -180,22 +181,27 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
             opDataResponse.setNextRecordsFrom(recordsAvailableBefore);
         }
 
-        responseRecords = getOperationalDataRecords(filterByClient,
-                recordsFrom, recordsTo, filterByServiceProvider, outputFields);
+        // The records are compressed as they are read from the database,
+        // only the compressed payload is held in memory. It is needed as a
+        // whole since the records count precedes it in the response.
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        Long nextRecordsFrom;
 
-        opDataResponse.setRecordsCount(responseRecords.size());
-        String payload = responseRecords.getPayload(GSON);
+        try (OperationalDataRecordsWriter writer =
+                new OperationalDataRecordsWriter(
+                        new GZIPOutputStream(payload))) {
+            nextRecordsFrom = writeOperationalDataRecords(filterByClient,
+                    recordsFrom, recordsTo, filterByServiceProvider,
+                    outputFields, writer);
 
-        // Optimize memory usage: release records memory before compressing
-        // operation.
-        responseRecords.getRecords().clear();
+            opDataResponse.setRecordsCount(writer.getCount());
+        }
 
-        opDataResponse.setRecords(createAttachmentDataSource(compress(payload),
-                CID, MimeTypes.GZIP));
+        opDataResponse.setRecords(createAttachmentDataSource(
+                payload.toByteArray(), CID, MimeTypes.GZIP));
 
-        if (responseRecords.getNextRecordsFrom() != null) {
-            opDataResponse.setNextRecordsFrom(
-                    responseRecords.getNextRecordsFrom());
+        if (nextRecordsFrom != null) {
+            opDataResponse.setNextRecordsFrom(nextRecordsFrom);
         }
 
         return opDataResponse;
@@ -207,13 +213,13 @@ class OperationalDataRequestHandler extends QueryRequestHandler {
                 opDataResponse);
     }
 
-    protected OperationalDataRecords getOperationalDataRecords(
-            ClientId filterByClient, long recordsFrom, long recordsTo,
-            ClientId filterByServiceProvider, Set<String> outputFields) {
+    protected Long writeOperationalDataRecords(ClientId filterByClient,
+            long recordsFrom, long recordsTo, ClientId filterByServiceProvider,
+            Set<String> outputFields, OperationalDataRecordsWriter writer) {
         try {
             return OperationalDataRecordManager.queryRecords(recordsFrom,
                     recordsTo, filterByClient, filterByServiceProvider,
-                    outputFields);
+                    outputFields, writer::write);
         } catch (Exception e) {
             log.error("Failed to get records for response", e);
 
@@ -39,7 +39,6 @@ import com.sun.istack.ByteArrayDataSource;
 import com.sun.xml.bind.api.AccessorException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.xml.sax.SAXException;
 
@@ -56,15 +55,12 @@ import javax.xml.bind.attachment.AttachmentMarshaller;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 
-import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.UUID;
 import java.util.function.Consumer;
-import java.util.zip.GZIPOutputStream;
 
 import static ee.ria.xroad.common.ErrorCodes.CLIENT_X;
 import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
@@ -195,19 +191,6 @@ abstract class QueryRequestHandler {
         };
     }
 
-    static byte[] compress(String data) throws IOException {
-        byte[] dataBytes = data.getBytes(StandardCharsets.UTF_8);
-
-        try (ByteArrayOutputStream bos = new ByteArrayOutputStream(
-                dataBytes.length)) {
-            GZIPOutputStream gzip = new GZIPOutputStream(bos);
-            gzip.write(dataBytes);
-            gzip.close();
-
-            return bos.toByteArray();
-        }
-    }
-
     private static Map<String, String> getAdditionalAttachmentHeaders(
             String cid) {
         Map<String, String> additionalHeaders = new HashMap<>();
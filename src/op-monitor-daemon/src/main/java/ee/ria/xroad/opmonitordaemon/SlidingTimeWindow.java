@@ -0,0 +1,129 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import com.codahale.metrics.Clock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A window of time divided into a fixed number of buckets that are reused in
+ * a ring. Values are accumulated into the bucket of the current moment and
+ * a bucket is cleared when it is reused, so both updating and reading take
+ * constant time regardless of the number of values in the window.
+ * Values leave the window one bucket at a time, i.e. with a precision of
+ * 1/{@value #NUMBER_OF_BUCKETS} of the window length.
+ * This class is not thread-safe, the users must synchronize access.
+ * @param <B> the type of the buckets
+ */
+final class SlidingTimeWindow<B> {
+
+    static final int NUMBER_OF_BUCKETS = 60;
+
+    private final Clock clock;
+
+    private final long bucketLengthNanos;
+
+    private final Supplier<B> bucketFactory;
+
+    private final Object[] buckets = new Object[NUMBER_OF_BUCKETS];
+
+    // the sequence numbers of the periods the buckets currently hold
+    private final long[] bucketPeriods = new long[NUMBER_OF_BUCKETS];
+
+    /**
+     * Creates a window of time with the given length.
+     *
+     * @param window        the length of the window
+     * @param windowUnit    the unit of {@code window}
+     * @param clock         the clock that provides the current time
+     * @param bucketFactory creates an empty bucket
+     */
+    SlidingTimeWindow(long window, TimeUnit windowUnit, Clock clock,
+            Supplier<B> bucketFactory) {
+        this.clock = clock;
+        this.bucketLengthNanos = Math.max(1L,
+                windowUnit.toNanos(window) / NUMBER_OF_BUCKETS);
+        this.bucketFactory = bucketFactory;
+    }
+
+    /**
+     * @return the bucket of the current moment, cleared if it was last used
+     * for an earlier period
+     */
+    @SuppressWarnings("unchecked")
+    B getCurrentBucket() {
+        long period = currentPeriod();
+        int index = (int) Math.floorMod(period, (long) NUMBER_OF_BUCKETS);
+
+        if (buckets[index] == null || bucketPeriods[index] != period) {
+            releaseExpiredBuckets(period);
+
+            buckets[index] = bucketFactory.get();
+            bucketPeriods[index] = period;
+        }
+
+        return (B) buckets[index];
+    }
+
+    /**
+     * Performs the given action for each bucket that is still inside the
+     * window.
+     * @param action the action
+     */
+    @SuppressWarnings("unchecked")
+    void forEachBucket(Consumer<B> action) {
+        long period = currentPeriod();
+
+        releaseExpiredBuckets(period);
+
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            if (buckets[i] != null
+                    && bucketPeriods[i] > period - NUMBER_OF_BUCKETS) {
+                action.accept((B) buckets[i]);
+            }
+        }
+    }
+
+    /**
+     * Releases the buckets that have slid out of the window, so that the
+     * memory of idle windows is freed.
+     */
+    private void releaseExpiredBuckets(long period) {
+        for (int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            if (buckets[i] != null
+                    && bucketPeriods[i] <= period - NUMBER_OF_BUCKETS) {
+                buckets[i] = null;
+            }
+        }
+    }
+
+    private long currentPeriod() {
+        return Math.floorDiv(clock.getTick(), bucketLengthNanos);
+    }
+}
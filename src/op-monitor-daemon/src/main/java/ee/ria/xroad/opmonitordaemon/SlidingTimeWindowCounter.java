@@ -25,15 +25,16 @@
  */
 package ee.ria.xroad.opmonitordaemon;
 
+import com.codahale.metrics.Clock;
 import com.codahale.metrics.Counter;
-import com.codahale.metrics.Reservoir;
-import com.codahale.metrics.SlidingTimeWindowReservoir;
+import org.apache.commons.lang3.mutable.MutableLong;
 
 import java.util.concurrent.TimeUnit;
 
 /**
- * A counter metric that uses the sliding time window reservoir internally to
- * support periodic and configurable resetting.
+ * A counter metric that counts the increments made during a sliding window
+ * of time, to support periodic and configurable resetting. The increments
+ * are accumulated in the buckets of a {@link SlidingTimeWindow}.
  * This counter does not support manually decrementing the count (the dec()
  * methods raise a runtime exception).
  * We extend Counter instead of implementing the Metric and Counting
@@ -42,7 +43,7 @@ import java.util.concurrent.TimeUnit;
  */
 class SlidingTimeWindowCounter extends Counter {
 
-    private final Reservoir reservoir;
+    private final SlidingTimeWindow<MutableLong> window;
 
     /**
      * Creates a counter with the given window of time.
@@ -51,27 +52,41 @@ class SlidingTimeWindowCounter extends Counter {
      * @param windowUnit the unit of {@code window}
      */
     SlidingTimeWindowCounter(long window, TimeUnit windowUnit) {
-        reservoir = new SlidingTimeWindowReservoir(window, windowUnit);
+        this(window, windowUnit, Clock.defaultClock());
     }
 
     /**
-     * @return the snapshot size of the sliding time window reservoir.
+     * Creates a counter with the given window of time and clock.
+     *
+     * @param window     the window of time
+     * @param windowUnit the unit of {@code window}
+     * @param clock      the clock that provides the current time
+     */
+    SlidingTimeWindowCounter(long window, TimeUnit windowUnit, Clock clock) {
+        this.window = new SlidingTimeWindow<>(window, windowUnit, clock,
+                MutableLong::new);
+    }
+
+    /**
+     * @return the number of increments made during the window of time.
      */
     @Override
-    public long getCount() {
-        return reservoir.getSnapshot().size();
+    public synchronized long getCount() {
+        MutableLong count = new MutableLong();
+
+        window.forEachBucket(bucket -> count.add(bucket.longValue()));
+
+        return count.longValue();
     }
 
     @Override
     public void inc() {
-        reservoir.update(1L);
+        inc(1L);
     }
 
     @Override
-    public void inc(long n) {
-        for (int i = 0; i < n; ++i) {
-            inc();
-        }
+    public synchronized void inc(long n) {
+        window.getCurrentBucket().add(n);
     }
 
     @Override
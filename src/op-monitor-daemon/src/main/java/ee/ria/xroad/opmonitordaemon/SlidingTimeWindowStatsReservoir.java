@@ -0,0 +1,298 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Reservoir;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.UniformSnapshot;
+import org.apache.commons.lang3.mutable.MutableLong;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reservoir that keeps the statistics of the values measured during a
+ * sliding window of time. The count, minimum, maximum, mean and standard
+ * deviation of the values are computed exactly from per-bucket aggregates
+ * of a {@link SlidingTimeWindow}, so updating and reading them take constant
+ * time. For quantiles, each bucket keeps a uniform random sample of at most
+ * {@value #SAMPLES_PER_BUCKET} of its values.
+ */
+class SlidingTimeWindowStatsReservoir implements Reservoir {
+
+    static final int SAMPLES_PER_BUCKET = 64;
+
+    private final SlidingTimeWindow<Bucket> window;
+
+    /**
+     * Creates a reservoir with the given window of time.
+     *
+     * @param window     the window of time
+     * @param windowUnit the unit of {@code window}
+     */
+    SlidingTimeWindowStatsReservoir(long window, TimeUnit windowUnit) {
+        this(window, windowUnit, Clock.defaultClock());
+    }
+
+    /**
+     * Creates a reservoir with the given window of time and clock.
+     *
+     * @param window     the window of time
+     * @param windowUnit the unit of {@code window}
+     * @param clock      the clock that provides the current time
+     */
+    SlidingTimeWindowStatsReservoir(long window, TimeUnit windowUnit,
+            Clock clock) {
+        this.window = new SlidingTimeWindow<>(window, windowUnit, clock,
+                Bucket::new);
+    }
+
+    @Override
+    public synchronized int size() {
+        MutableLong count = new MutableLong();
+
+        window.forEachBucket(bucket -> count.add(bucket.count));
+
+        return (int) Math.min(count.longValue(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized void update(long value) {
+        window.getCurrentBucket().add(value);
+    }
+
+    /**
+     * Adds values that have been collected into a bucket elsewhere, as if each of them had been updated
+     * separately at this moment.
+     *
+     * @param values the values to add
+     */
+    synchronized void update(Bucket values) {
+        window.getCurrentBucket().addAll(values);
+    }
+
+    @Override
+    public synchronized Snapshot getSnapshot() {
+        Bucket total = new Bucket();
+
+        window.forEachBucket(total::merge);
+
+        return new StatsSnapshot(total);
+    }
+
+    /**
+     * Aggregates and a uniform random sample of a set of values.
+     */
+    static final class Bucket {
+        private long count;
+        private long sum;
+        private double sumOfSquares;
+        private long min = Long.MAX_VALUE;
+        private long max = Long.MIN_VALUE;
+
+        // Allocated on the first value, so that idle buckets stay small
+        private long[] samples;
+        private int sampleCount;
+
+        void add(long value) {
+            if (samples == null) {
+                samples = new long[SAMPLES_PER_BUCKET];
+            }
+
+            count++;
+            sum += value;
+            sumOfSquares += (double) value * value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+
+            if (sampleCount < samples.length) {
+                samples[sampleCount++] = value;
+            } else {
+                // Replace a random sample so that every value measured
+                // during the bucket has an equal chance to be kept.
+                long index = ThreadLocalRandom.current().nextLong(count);
+
+                if (index < samples.length) {
+                    samples[(int) index] = value;
+                }
+            }
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * Adds the values of the other bucket. Each sample of the other bucket stands for an equal share of its
+         * values, so that the sample of this bucket stays uniform and bounded.
+         */
+        void addAll(Bucket other) {
+            if (other.sampleCount == 0) {
+                return;
+            }
+
+            if (samples == null) {
+                samples = new long[SAMPLES_PER_BUCKET];
+            }
+
+            long previousCount = count;
+
+            count += other.count;
+            sum += other.sum;
+            sumOfSquares += other.sumOfSquares;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+
+            double valuesPerSample = (double) other.count / other.sampleCount;
+
+            for (int i = 0; i < other.sampleCount; i++) {
+                if (sampleCount < samples.length) {
+                    samples[sampleCount++] = other.samples[i];
+                } else {
+                    long seen = previousCount + (long) Math.ceil((i + 1) * valuesPerSample);
+                    long index = ThreadLocalRandom.current().nextLong(seen);
+
+                    if (index < samples.length) {
+                        samples[(int) index] = other.samples[i];
+                    }
+                }
+            }
+        }
+
+        void merge(Bucket other) {
+            count += other.count;
+            sum += other.sum;
+            sumOfSquares += other.sumOfSquares;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+
+            if (other.sampleCount == 0) {
+                return;
+            }
+
+            if (samples == null) {
+                samples = new long[Math.max(SAMPLES_PER_BUCKET, other.sampleCount)];
+            } else if (sampleCount + other.sampleCount > samples.length) {
+                samples = Arrays.copyOf(samples,
+                        Math.max(samples.length * 2,
+                                sampleCount + other.sampleCount));
+            }
+
+            System.arraycopy(other.samples, 0, samples, sampleCount,
+                    other.sampleCount);
+            sampleCount += other.sampleCount;
+        }
+    }
+
+    /**
+     * Snapshot with exact aggregate statistics and quantiles computed from
+     * the sampled values.
+     */
+    private static final class StatsSnapshot extends Snapshot {
+
+        private final long count;
+        private final long min;
+        private final long max;
+        private final double mean;
+        private final double stdDev;
+
+        private final long[] samples;
+
+        private Snapshot sampleSnapshot;
+
+        StatsSnapshot(Bucket total) {
+            count = total.count;
+            samples = total.samples != null
+                    ? Arrays.copyOf(total.samples, total.sampleCount) : new long[0];
+
+            if (count == 0) {
+                min = 0;
+                max = 0;
+                mean = 0;
+                stdDev = 0;
+            } else {
+                min = total.min;
+                max = total.max;
+                mean = (double) total.sum / count;
+                // Sample standard deviation, as in UniformSnapshot.
+                stdDev = count > 1 ? Math.sqrt(Math.max(0.0,
+                        (total.sumOfSquares - mean * total.sum)
+                                / (count - 1))) : 0;
+            }
+        }
+
+        private synchronized Snapshot getSampleSnapshot() {
+            if (sampleSnapshot == null) {
+                sampleSnapshot = new UniformSnapshot(samples);
+            }
+
+            return sampleSnapshot;
+        }
+
+        @Override
+        public double getValue(double quantile) {
+            return getSampleSnapshot().getValue(quantile);
+        }
+
+        @Override
+        public long[] getValues() {
+            return getSampleSnapshot().getValues();
+        }
+
+        @Override
+        public int size() {
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        }
+
+        @Override
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public double getMean() {
+            return mean;
+        }
+
+        @Override
+        public long getMin() {
+            return min;
+        }
+
+        @Override
+        public double getStdDev() {
+            return stdDev;
+        }
+
+        @Override
+        public void dump(OutputStream output) {
+            getSampleSnapshot().dump(output);
+        }
+    }
+}
@@ -25,18 +25,16 @@
  */
 package ee.ria.xroad.opmonitordaemon;
 
-import ee.ria.xroad.common.util.JsonUtils;
+import ee.ria.xroad.common.util.HttpHeaders;
 
 import com.codahale.metrics.MetricRegistry;
-import com.google.gson.Gson;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.StringUtils;
 
 import javax.servlet.http.HttpServletRequest;
 
-import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
 
 import static ee.ria.xroad.common.util.TimeUtils.getEpochSecond;
 
@@ -46,8 +44,6 @@ import static ee.ria.xroad.common.util.TimeUtils.getEpochSecond;
 @Slf4j
 class StoreRequestProcessor {
 
-    private static final Gson GSON = JsonUtils.getSerializer();
-
     /** The servlet request. */
     private HttpServletRequest servletRequest;
 
@@ -66,39 +62,31 @@ class StoreRequestProcessor {
      * @throws Exception in case of any errors
      */
     void process() throws Exception {
-        String rawJson = IOUtils.toString(servletRequest.getInputStream(),
-                StandardCharsets.UTF_8);
-
-        log.trace("Incoming JSON: {}", rawJson);
+        OperationalDataRecordsReader reader = new OperationalDataRecordsReader(
+                getRequestContent());
 
-        List<OperationalDataRecord> records = prepareRawStoreData(rawJson);
+        // The records are decoded and stored in batches as they arrive.
+        // Only per-service aggregates of health data are kept, and health
+        // data is updated after all the records have been committed.
+        HealthDataMetrics.HealthData healthData =
+                new HealthDataMetrics.HealthData();
 
-        log.debug("Process {} record{}", records.size(),
-                records.size() == 1 ? "" : "s");
+        int count = OperationalDataRecordManager.storeRecords(reader,
+                getEpochSecond(), records -> records.forEach(healthData::add));
 
-        OperationalDataRecordManager.storeRecords(records, getEpochSecond());
+        HealthDataMetrics.processHealthData(healthMetricRegistry, healthData);
 
-        HealthDataMetrics.processRecords(healthMetricRegistry, records);
+        log.debug("Processed {} record{}", count, count == 1 ? "" : "s");
     }
 
-    // Get usable operational data to be stored. If no such data is found,
-    // send an error message right away.
-    private static List<OperationalDataRecord> prepareRawStoreData(
-            String rawJsonData) throws Exception {
-        if (StringUtils.isBlank(rawJsonData)) {
-            throw new Exception(
-                    "No data was found in the request to store data");
-        }
-
-        OperationalDataRecords records;
-
-        try {
-            records = GSON.fromJson(rawJsonData, OperationalDataRecords.class);
-        } catch (Exception e) {
-            throw new Exception("Received invalid request", e);
+    private InputStream getRequestContent() throws IOException {
+        // The operational monitoring buffer may compress the messages
+        if ("gzip".equalsIgnoreCase(servletRequest.getHeader(
+                HttpHeaders.CONTENT_ENCODING))) {
+            return new GZIPInputStream(servletRequest.getInputStream());
         }
 
-        return records.getRecords();
+        return servletRequest.getInputStream();
     }
 
 }
@@ -25,21 +25,26 @@
  */
 package ee.ria.xroad.opmonitordaemon;
 
+import ee.ria.xroad.common.db.TablePartitions;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringSystemProperties;
 
 import com.google.common.collect.Sets;
 import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 
+import java.io.ByteArrayInputStream;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
 import static ee.ria.xroad.opmonitordaemon.OperationalDataRecordManager.queryAllRecords;
@@ -50,6 +55,7 @@ import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.formatFullOpe
 import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.storeFullOperationalDataRecord;
 import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.storeFullOperationalDataRecords;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -105,6 +111,41 @@ public class OperationalDataRecordManagerTest extends BaseTestUsingDB {
         assertEquals(record, resultRecord);
     }
 
+    @Test
+    public void storeOperationalDataFromStream() throws Exception {
+        StringBuilder json = new StringBuilder("{\"other\":[1,2],\"records\":[");
+
+        for (int i = 0; i < 120; i++) {
+            json.append(i == 0 ? "" : ",").append(formatFullOperationalDataAsJson());
+        }
+
+        json.append("]}");
+
+        OperationalDataRecordsReader reader = new OperationalDataRecordsReader(
+                new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)));
+        AtomicInteger handled = new AtomicInteger();
+
+        int stored = storeRecords(reader, 1474968979L, records -> handled.addAndGet(records.size()));
+
+        assertEquals(120, stored);
+        assertEquals(120, handled.get());
+
+        OperationalDataRecords result = queryAllRecords();
+
+        assertEquals(120, result.size());
+        assertEquals(1474968979L, result.getRecords().get(119).getMonitoringDataTs().longValue());
+    }
+
+    @Test
+    public void storeEmptyStream() throws Exception {
+        OperationalDataRecordsReader reader = new OperationalDataRecordsReader(
+                new ByteArrayInputStream(new byte[0]));
+
+        expectedException.expectMessage("No data was found in the request to store data");
+
+        storeRecords(reader, 1474968979L, records -> { });
+    }
+
     @Test
     public void storeAndQueryDataFromPeriods() throws Exception {
         storeFullOperationalDataRecords(1, 1474968960L);
@@ -395,6 +436,34 @@ public class OperationalDataRecordManagerTest extends BaseTestUsingDB {
         assertEquals(1, result.size());
     }
 
+    @Test
+    public void cleanupDeletesRecordsOfUnpartitionedTable() throws Exception {
+        storeFullOperationalDataRecords(2, 1474968970L);
+        storeFullOperationalDataRecords(1, 1474968980L);
+
+        int removed = OperationalDataRecordCleaner.cleanRecords(Instant.ofEpochMilli(1474968975000L));
+
+        assertEquals(2, removed);
+        assertFalse(doInTransaction(OperationalDataRecordCleaner.PARTITIONS::isPartitioned));
+        assertEquals(1, queryRecords(1474968960L, 1474968980L).size());
+    }
+
+    @Test
+    public void cleanupDropsOutdatedPartitionsAndCreatesNewOnes() throws Exception {
+        storeFullOperationalDataRecords(2, 1474968970L);
+        storeFullOperationalDataRecords(1, 1474968980L);
+
+        PartitionsMock partitions = new PartitionsMock();
+
+        int removed = OperationalDataRecordCleaner.cleanRecords(Instant.ofEpochMilli(1474968975000L), partitions);
+
+        // The outdated records went with the dropped partition, none are left to delete
+        assertEquals(0, removed);
+        assertEquals(Long.valueOf(1474968975L), partitions.droppedBefore);
+        assertEquals(1, partitions.created);
+        assertEquals(1, queryRecords(1474968960L, 1474968980L).size());
+    }
+
     @Test
     public void stringTruncation() throws Exception {
         OperationalDataRecord record = GSON.fromJson(
@@ -430,4 +499,39 @@ public class OperationalDataRecordManagerTest extends BaseTestUsingDB {
         assertEquals(("2" + LONG_STRING).substring(0, 255),
                 updatedResultRecord.getMessageIssue());
     }
+
+    /**
+     * Simulates a partitioned table by deleting the records of the dropped
+     * partition.
+     */
+    private static final class PartitionsMock extends TablePartitions {
+
+        private Long droppedBefore;
+        private int created;
+
+        PartitionsMock() {
+            super("operational_data", "create_operational_data_partitions", "drop_operational_data_partitions");
+        }
+
+        @Override
+        public boolean isPartitioned(Session session) {
+            return true;
+        }
+
+        @Override
+        public int dropPartitionsBefore(Session session, long before) {
+            droppedBefore = before;
+
+            session.createQuery("delete OperationalDataRecord r where r.monitoringDataTs < :before")
+                    .setParameter("before", before)
+                    .executeUpdate();
+
+            return 1;
+        }
+
+        @Override
+        public int createPartitions(Session session) {
+            return ++created;
+        }
+    }
 }
@@ -30,6 +30,8 @@ import ee.ria.xroad.common.util.JsonUtils;
 import com.google.gson.Gson;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -56,4 +58,31 @@ public class OperationalDataRecordsTest {
 
         assertEquals("{\"records\":[{},{}]}", records.getPayload(GSON));
     }
+
+    /**
+     * Test that the streamed payload equals the payload of the records.
+     * @throws Exception if an error occurs.
+     */
+    @Test
+    public void streamedRecordsPayload() throws Exception {
+        List<OperationalDataRecord> recordList = new ArrayList<>();
+        OperationalDataRecord record = new OperationalDataRecord();
+        record.setMonitoringDataTs(1474968960L);
+        record.setServiceCode("xroadGetRandom");
+
+        recordList.add(record);
+        recordList.add(new OperationalDataRecord());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (OperationalDataRecordsWriter writer =
+                new OperationalDataRecordsWriter(out)) {
+            recordList.forEach(writer::write);
+
+            assertEquals(2, writer.getCount());
+        }
+
+        assertEquals(new OperationalDataRecords(recordList).getPayload(GSON),
+                out.toString(StandardCharsets.UTF_8.name()));
+    }
 }
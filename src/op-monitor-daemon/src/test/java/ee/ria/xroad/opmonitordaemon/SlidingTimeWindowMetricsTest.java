@@ -0,0 +1,147 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Snapshot;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the sliding time window counter and reservoir.
+ */
+public class SlidingTimeWindowMetricsTest {
+
+    private static final long WINDOW_SECONDS = 600;
+
+    private final TestClock clock = new TestClock();
+
+    @Test
+    public void counterForgetsIncrementsOutsideWindow() {
+        SlidingTimeWindowCounter counter = new SlidingTimeWindowCounter(
+                WINDOW_SECONDS, TimeUnit.SECONDS, clock);
+
+        counter.inc();
+        counter.inc(5);
+        assertEquals(6, counter.getCount());
+
+        clock.advanceSeconds(WINDOW_SECONDS / 2);
+        counter.inc();
+        assertEquals(7, counter.getCount());
+
+        clock.advanceSeconds(WINDOW_SECONDS / 2 + 10);
+        assertEquals(1, counter.getCount());
+
+        clock.advanceSeconds(WINDOW_SECONDS);
+        assertEquals(0, counter.getCount());
+    }
+
+    @Test
+    public void reservoirComputesStatisticsOfWindow() {
+        SlidingTimeWindowStatsReservoir reservoir =
+                new SlidingTimeWindowStatsReservoir(WINDOW_SECONDS,
+                        TimeUnit.SECONDS, clock);
+
+        reservoir.update(10);
+        reservoir.update(20);
+        reservoir.update(30);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(3, snapshot.size());
+        assertEquals(10, snapshot.getMin());
+        assertEquals(30, snapshot.getMax());
+        assertEquals(20.0, snapshot.getMean(), 0.0001);
+        assertEquals(10.0, snapshot.getStdDev(), 0.0001);
+        assertEquals(20.0, snapshot.getMedian(), 0.0001);
+
+        clock.advanceSeconds(WINDOW_SECONDS - 60);
+        reservoir.update(100);
+
+        clock.advanceSeconds(120);
+        snapshot = reservoir.getSnapshot();
+
+        assertEquals(1, reservoir.size());
+        assertEquals(100, snapshot.getMin());
+        assertEquals(100, snapshot.getMax());
+        assertEquals(0.0, snapshot.getStdDev(), 0.0001);
+    }
+
+    @Test
+    public void reservoirAddsAggregatedValues() {
+        SlidingTimeWindowStatsReservoir reservoir =
+                new SlidingTimeWindowStatsReservoir(WINDOW_SECONDS,
+                        TimeUnit.SECONDS, clock);
+
+        reservoir.update(5);
+
+        SlidingTimeWindowStatsReservoir.Bucket values =
+                new SlidingTimeWindowStatsReservoir.Bucket();
+
+        for (int i = 1; i <= 1000; i++) {
+            values.add(i);
+        }
+
+        reservoir.update(values);
+
+        Snapshot snapshot = reservoir.getSnapshot();
+
+        assertEquals(1001, snapshot.size());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(500505.0 / 1001, snapshot.getMean(), 0.0001);
+        assertTrue(snapshot.getValues().length
+                <= SlidingTimeWindowStatsReservoir.SAMPLES_PER_BUCKET);
+    }
+
+    @Test
+    public void emptyReservoirReturnsZeros() {
+        Snapshot snapshot = new SlidingTimeWindowStatsReservoir(
+                WINDOW_SECONDS, TimeUnit.SECONDS, clock).getSnapshot();
+
+        assertEquals(0, snapshot.size());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0.0, snapshot.getMean(), 0.0001);
+    }
+
+    private static final class TestClock extends Clock {
+        private long tick = System.nanoTime();
+
+        void advanceSeconds(long seconds) {
+            tick += TimeUnit.SECONDS.toNanos(seconds);
+        }
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+    }
+}
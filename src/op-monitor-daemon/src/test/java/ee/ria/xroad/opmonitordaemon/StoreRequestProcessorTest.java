@@ -0,0 +1,136 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.opmonitordaemon;
+
+import ee.ria.xroad.common.util.HttpHeaders;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static ee.ria.xroad.opmonitordaemon.OpMonitorDaemonDatabaseCtx.doInTransaction;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataRecordManager.queryAllRecords;
+import static ee.ria.xroad.opmonitordaemon.OperationalDataTestUtil.formatFullOperationalDataAsJson;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests storing the records of plain and gzip-compressed store requests.
+ * The message format is the one written by the operational monitoring
+ * buffer of the proxy.
+ */
+public class StoreRequestProcessorTest extends BaseTestUsingDB {
+
+    private static final String MESSAGE = "{\"records\":[" + formatFullOperationalDataAsJson() + ","
+            + formatFullOperationalDataAsJson() + "]}";
+
+    /**
+     * Cleanup the stored records before each test.
+     * @throws Exception if an error occurs.
+     */
+    @Before
+    public void beforeTest() throws Exception {
+        doInTransaction(session -> session.createQuery("delete OperationalDataRecord").executeUpdate());
+    }
+
+    @Test
+    public void storeUncompressedRecords() throws Exception {
+        process(null, MESSAGE.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(2, queryAllRecords().size());
+    }
+
+    @Test
+    public void storeGzipCompressedRecords() throws Exception {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzip = new GZIPOutputStream(body)) {
+            gzip.write(MESSAGE.getBytes(StandardCharsets.UTF_8));
+        }
+
+        process("gzip", body.toByteArray());
+
+        assertEquals(2, queryAllRecords().size());
+    }
+
+    private static void process(String contentEncoding, byte[] body) throws Exception {
+        new StoreRequestProcessor(createRequest(contentEncoding, body), new MetricRegistry()).process();
+    }
+
+    private static HttpServletRequest createRequest(String contentEncoding, byte[] body) {
+        ServletInputStream in = new ServletInputStream() {
+            private final ByteArrayInputStream content = new ByteArrayInputStream(body);
+
+            @Override
+            public int read() throws IOException {
+                return content.read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return content.read(b, off, len);
+            }
+
+            @Override
+            public boolean isFinished() {
+                return content.available() == 0;
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        return (HttpServletRequest) Proxy.newProxyInstance(StoreRequestProcessorTest.class.getClassLoader(),
+                new Class<?>[] {HttpServletRequest.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getHeader":
+                            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase((String) args[0])
+                                    ? contentEncoding : null;
+                        case "getInputStream":
+                            return in;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
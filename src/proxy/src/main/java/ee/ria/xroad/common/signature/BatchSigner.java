@@ -32,28 +32,30 @@ import ee.ria.xroad.signer.protocol.message.GetTokenBatchSigningEnabled;
 import ee.ria.xroad.signer.protocol.message.Sign;
 import ee.ria.xroad.signer.protocol.message.SignResponse;
 
-import akka.actor.AbstractActorWithStash;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
 import akka.actor.UntypedAbstractActor;
 import akka.pattern.Patterns;
-import akka.util.Timeout;
 import lombok.Data;
 import lombok.Getter;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import org.bouncycastle.operator.OperatorCreationException;
-import scala.concurrent.Await;
 
-import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.SIGNER_X;
-import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.common.ErrorCodes.translateException;
 import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
 import static ee.ria.xroad.common.util.CryptoUtils.calculateDigest;
@@ -76,7 +78,6 @@ import static ee.ria.xroad.common.util.CryptoUtils.getDigestAlgorithmId;
 public class BatchSigner extends UntypedAbstractActor {
 
     private static final int TIMEOUT_MILLIS = SystemProperties.getSignerClientTimeout();
-    private static final Timeout DEFAULT_TIMEOUT = new Timeout(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
 
     // Holds the actor instance, which sends and receives messages.
     private static ActorRef instance;
@@ -93,7 +94,22 @@ public class BatchSigner extends UntypedAbstractActor {
     }
 
     /**
-     * Submits the given signing request for batch signing.
+     * Replaces the actor instance, used in tests.
+     *
+     * @param batchSigner the new actor instance
+     * @return the previous actor instance
+     */
+    static ActorRef setInstance(ActorRef batchSigner) {
+        ActorRef previous = instance;
+        instance = batchSigner;
+
+        return previous;
+    }
+
+    /**
+     * Submits the given signing request for batch signing and waits for the signature.
+     * The calling thread is blocked until the signature is ready, use {@link #signAsync} where
+     * the caller can continue without it.
      *
      * @param keyId the signing key
      * @param signatureAlgorithmId ID of the signature algorithm to use
@@ -103,14 +119,43 @@ public class BatchSigner extends UntypedAbstractActor {
      */
     public static SignatureData sign(String keyId, String signatureAlgorithmId, SigningRequest request)
             throws Exception {
+        try {
+            return signAsync(keyId, signatureAlgorithmId, request).toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Submits the given signing request for batch signing without waiting for the signature.
+     * The calling thread is not blocked, the stage is completed by the actor that receives the answer of Signer.
+     *
+     * @param keyId the signing key
+     * @param signatureAlgorithmId ID of the signature algorithm to use
+     * @param request the signing request
+     * @return the stage that is completed with the signature data, or exceptionally in case of any errors
+     */
+    public static CompletionStage<SignatureData> signAsync(String keyId, String signatureAlgorithmId,
+            SigningRequest request) {
         if (instance == null) {
             throw new IllegalStateException("BatchSigner is not initialized");
         }
 
         // Send the signing request to the actor instance (itself)
-        return SignerClient.result(Await.result(Patterns.ask(instance, new SigningRequestWrapper(
-                keyId, signatureAlgorithmId, request), DEFAULT_TIMEOUT.duration().length()),
-                DEFAULT_TIMEOUT.duration()));
+        return Patterns.ask(instance, new SigningRequestWrapper(keyId, signatureAlgorithmId, request),
+                Duration.ofMillis(TIMEOUT_MILLIS)).thenCompose(BatchSigner::toSignatureData);
+    }
+
+    private static CompletionStage<SignatureData> toSignatureData(Object result) {
+        CompletableFuture<SignatureData> signatureData = new CompletableFuture<>();
+
+        if (result instanceof Throwable) {
+            signatureData.completeExceptionally((Throwable) result);
+        } else {
+            signatureData.complete((SignatureData) result);
+        }
+
+        return signatureData;
     }
 
     @Override
@@ -149,183 +194,211 @@ public class BatchSigner extends UntypedAbstractActor {
         if (worker == null) {
             log.trace("Creating new worker for cert '{}'", name);
 
-            worker = getContext().actorOf(Props.create(WorkerImpl.class), name);
+            worker = getContext().actorOf(getWorkerProps(), name);
         }
 
         return worker;
     }
 
+    /**
+     * Returns the props of the worker that is created per signing certificate.
+     */
+    protected Props getWorkerProps() {
+        return Props.create(WorkerImpl.class);
+    }
+
     /**
      * This is the worker that does the heavy lifting.
+     *
+     * Signing requests are collected into batches, which are signed when they are full, when the linger time
+     * of the batch has passed or, without linger time, as soon as fewer than the maximum
+     * number of batches are in progress. Requests arriving while the maximum number of batches are in progress
+     * are collected into the next batches. If batch signing is not enabled for the token, every batch contains
+     * a single request.
      */
-    private static class WorkerImpl extends AbstractActorWithStash {
+    static class WorkerImpl extends UntypedAbstractActor {
+
+        private final int lingerTime = SystemProperties.getBatchSignerLingerTime();
+        private final int maxConcurrentBatches = Math.max(1, SystemProperties.getBatchSignerMaxConcurrentBatches());
 
-        // The currently active signing ctx.
-        private BatchSignatureCtx workingSigningCtx;
+        // Batches waiting to be signed, in the order of their first request.
+        private final Deque<BatchSignatureCtx> pendingBatches = new ArrayDeque<>();
 
-        // The next signing ctx, if batch signing.
-        private BatchSignatureCtx nextSigningCtx;
+        // Batches being signed, by batch number.
+        private final Map<Long, BatchSignatureCtx> batchesInProgress = new HashMap<>();
 
-        private long signStartTime;
-        private boolean workerBusy;
+        private long batchCounter;
 
         private Boolean batchSigningEnabled;
+        private boolean batchSigningEnabledQueried;
 
         @Override
-        public Receive createReceive() {
-            return receiveBuilder()
-                    .match(SigningRequestWrapper.class, this::handleSignRequest)
-                    .match(SignResponse.class, this::handleSignResponse)
-                    .match(Exception.class, this::handleException)
-                    .matchAny(this::unhandled)
-                    .build();
+        public void onReceive(Object message) {
+            if (message instanceof SigningRequestWrapper) {
+                handleSignRequest((SigningRequestWrapper) message);
+            } else if (message instanceof SignResult) {
+                handleSignResult((SignResult) message);
+            } else if (message instanceof BatchSigningEnabled) {
+                handleBatchSigningEnabled((BatchSigningEnabled) message);
+            } else if (message instanceof LingerExpired) {
+                handleLingerExpired((LingerExpired) message);
+            } else {
+                unhandled(message);
+            }
         }
 
-        private void handleSignRequest(SigningRequestWrapper signRequest) throws Exception {
+        private void handleSignRequest(SigningRequestWrapper signRequest) {
             log.trace("handleSignRequest()");
 
             // If we do not know whether batch signing is enabled for the token,
-            // we ask from Signer. This call will block until response is
-            // received or error occurs.
-            if (batchSigningEnabled == null) {
+            // we ask from Signer. Until the answer is received, every batch
+            // contains a single request.
+            if (batchSigningEnabled == null && !batchSigningEnabledQueried) {
                 queryBatchSigningEnabled(signRequest.getKeyId());
             }
 
-            // Handle incoming sign request. If the token worker is currently
-            // busy (signing, generating key, etc...) and batch signing is
-            // enabled then create signing context and collect all following
-            // sign requests to be signed in batch. Otherwise just sign the
-            // data straight away.
-            if (isWorkerBusy()) {
-                if (batchSigningEnabled) {
-                    doBatchSign(signRequest);
-                } else {
-                    log.trace("Batch signing not enabled, stashing request");
-                    // Batch signing not enabled, but currently busy,
-                    // so stash this message for future.
-                    stash();
+            BatchSignatureCtx ctx = pendingBatches.peekLast();
+
+            if (ctx == null || ctx.size() >= getMaxBatchSize()
+                    || !ctx.getSignatureAlgorithmId().equals(signRequest.getSignatureAlgorithmId())) {
+                ctx = new BatchSignatureCtx(batchCounter++, signRequest.getKeyId(),
+                        signRequest.getSignatureAlgorithmId());
+                pendingBatches.addLast(ctx);
+
+                if (lingerTime > 0) {
+                    getContext().getSystem().scheduler().scheduleOnce(Duration.ofMillis(lingerTime), getSelf(),
+                            new LingerExpired(ctx.getBatchNumber()), getContext().getDispatcher(),
+                            ActorRef.noSender());
                 }
-            } else {
-                doSign(signRequest);
             }
+
+            ctx.add(getSender(), signRequest.getRequest());
+
+            startBatches();
         }
 
         private void queryBatchSigningEnabled(String keyId) {
-            try {
-                batchSigningEnabled = SignerClient.execute(new GetTokenBatchSigningEnabled(keyId));
-            } catch (Exception e) {
-                log.error("Failed to query if batch signing is enabled for token with key {}", keyId, e);
-            }
-        }
+            batchSigningEnabledQueried = true;
 
-        private void doBatchSign(SigningRequestWrapper wrapper) {
-            log.trace("doBatchSign()");
+            CompletionStage<BatchSigningEnabled> result = this
+                    .<Boolean>executeAsync(new GetTokenBatchSigningEnabled(keyId))
+                    .handle((enabled, error) -> {
+                        if (error != null) {
+                            log.error("Failed to query if batch signing is enabled for token with key {}", keyId,
+                                    error);
+                        }
 
-            if (nextSigningCtx == null) {
-                nextSigningCtx = new BatchSignatureCtx(wrapper.getKeyId(), wrapper.getSignatureAlgorithmId());
-            }
+                        return new BatchSigningEnabled(enabled);
+                    });
 
-            nextSigningCtx.add(getSender(), wrapper.getRequest());
+            Patterns.pipe(result, getContext().getDispatcher()).to(getSelf());
         }
 
-        private void doSign(SigningRequestWrapper wrapper) throws Exception {
-            log.trace("doSign()");
-
-            BatchSignatureCtx ctx = new BatchSignatureCtx(wrapper.getKeyId(), wrapper.getSignatureAlgorithmId());
-            ctx.add(getSender(), wrapper.getRequest());
-
-            workingSigningCtx = ctx;
+        /**
+         * Sends the message to Signer without waiting for the response.
+         */
+        protected <T> CompletionStage<T> executeAsync(Object message) {
+            return SignerClient.executeAsync(message);
+        }
 
-            doCalculateSignature(ctx.getKeyId(), ctx.getSignatureAlgorithmId(), ctx.getDataToBeSigned());
+        private void handleBatchSigningEnabled(BatchSigningEnabled message) {
+            // In case of an error, the query is repeated with the next request
+            batchSigningEnabled = message.getEnabled();
+            batchSigningEnabledQueried = false;
         }
 
-        private void handleSignResponse(SignResponse signResponse) {
-            log.trace("handleSignResponse()");
+        private int getMaxBatchSize() {
+            if (!Boolean.TRUE.equals(batchSigningEnabled)) {
+                return 1;
+            }
 
-            workerBusy = false;
+            int maxBatchSize = SystemProperties.getBatchSignerMaxBatchSize();
+            int maxHashChainDepth = SystemProperties.getBatchSignerMaxHashChainDepth();
 
-            // Handle the (successful) signature calculation result that came
-            // from Signer -- send the signature to the clients.
-            sendResponse(signResponse);
+            if (maxBatchSize <= 0) {
+                maxBatchSize = Integer.MAX_VALUE;
+            }
 
-            // If batch signing is not enabled, then start signing the next
-            // stashed messages.
-            if (!batchSigningEnabled) {
-                unstashAll();
-            } else if (nextSigningCtx != null) {
-                // Start the next batch signing (if any).
-                startNextBatchSigning();
+            if (maxHashChainDepth > 0 && maxHashChainDepth < Integer.SIZE - 1) {
+                // Every request adds one input to the hash chain
+                maxBatchSize = Math.min(maxBatchSize, 1 << maxHashChainDepth);
             }
+
+            return maxBatchSize;
         }
 
-        private void handleException(Exception exception) {
-            log.trace("handleException()");
+        private void handleLingerExpired(LingerExpired message) {
+            // The batch may have been started already, when it became full or by an earlier timer
+            for (BatchSignatureCtx ctx : pendingBatches) {
+                if (ctx.getBatchNumber() == message.getBatchNumber()) {
+                    ctx.setLingerExpired(true);
 
-            workerBusy = false;
+                    break;
+                }
+            }
 
-            sendResponse(exception);
+            startBatches();
         }
 
-        private void startNextBatchSigning() {
-            log.trace("startNextBatchSigning()");
+        private void startBatches() {
+            while (batchesInProgress.size() < maxConcurrentBatches && !pendingBatches.isEmpty()) {
+                BatchSignatureCtx ctx = pendingBatches.peekFirst();
 
-            workingSigningCtx = nextSigningCtx;
-            nextSigningCtx = null;
-
-            try {
-                doCalculateSignature(workingSigningCtx.getKeyId(), workingSigningCtx.getSignatureAlgorithmId(),
-                        workingSigningCtx.getDataToBeSigned());
-            } catch (Exception e) {
-                sendResponse(workingSigningCtx, translateException(e));
+                if (lingerTime > 0 && !ctx.isLingerExpired() && ctx.size() < getMaxBatchSize()) {
+                    // Waiting for more requests, LingerExpired starts the batch later
+                    return;
+                }
 
-                workerBusy = true;
-                workingSigningCtx = null;
+                pendingBatches.removeFirst();
+                startBatch(ctx);
             }
         }
 
-        private boolean isWorkerBusy() {
-            if (isSignatureCreationTimedOut()) {
-                workerBusy = false;
-
-                throw new CodedException(X_INTERNAL_ERROR, "Signature creation timed out");
+        private void startBatch(BatchSignatureCtx ctx) {
+            if (log.isTraceEnabled()) {
+                log.trace("startBatch({}) after {} ms", ctx.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ctx.getCreatedNanos()));
             }
 
-            return workerBusy;
-        }
+            long batchNumber = ctx.getBatchNumber();
 
-        private boolean isSignatureCreationTimedOut() {
-            return workerBusy && System.currentTimeMillis() - signStartTime >= DEFAULT_TIMEOUT.duration().length();
-        }
+            try {
+                byte[] digest = calculateDigest(getDigestAlgorithmId(ctx.getSignatureAlgorithmId()),
+                        ctx.getDataToBeSigned());
 
-        private void doCalculateSignature(String keyId, String signatureAlgorithmId, byte[] data)
-                throws NoSuchAlgorithmException, IOException, OperatorCreationException {
-            workerBusy = true;
-            signStartTime = System.currentTimeMillis();
+                // Proxy this request to the Signer, the result or the error is passed back to this worker.
+                CompletionStage<SignResult> result = this
+                        .executeAsync(new Sign(ctx.getKeyId(), ctx.getSignatureAlgorithmId(), digest))
+                        .handle((response, error) -> new SignResult(batchNumber, error != null ? error : response));
 
-            byte[] digest = calculateDigest(getDigestAlgorithmId(signatureAlgorithmId), data);
+                batchesInProgress.put(batchNumber, ctx);
 
-            // Proxy this request to the Signer.
-            SignerClient.execute(new Sign(keyId, signatureAlgorithmId, digest), getSelf());
+                Patterns.pipe(result, getContext().getDispatcher()).to(getSelf());
+            } catch (Exception e) {
+                sendResponse(ctx, translateException(e));
+            }
         }
 
-        private void sendResponse(Object message) {
-            log.trace("sendResponse({})", message);
+        private void handleSignResult(SignResult signResult) {
+            log.trace("handleSignResult()");
+
+            BatchSignatureCtx ctx = batchesInProgress.remove(signResult.getBatchNumber());
+
+            if (ctx != null) {
+                Object result = signResult.getResult();
 
-            if (workingSigningCtx != null) {
                 try {
-                    if (message instanceof SignResponse) {
-                        sendSignatureResponse(workingSigningCtx, ((SignResponse) message).getSignature());
+                    if (result instanceof SignResponse) {
+                        sendSignatureResponse(ctx, ((SignResponse) result).getSignature());
                     } else {
-                        sendResponse(workingSigningCtx, message);
+                        sendResponse(ctx, result);
                     }
                 } catch (Exception e) {
-                    sendResponse(workingSigningCtx, e);
+                    sendResponse(ctx, e);
                 }
-
-                workingSigningCtx = null;
-            } else {
-                throw new RuntimeException("No signing context");
             }
+
+            startBatches();
         }
 
         private void sendSignatureResponse(BatchSignatureCtx ctx, byte[] signatureValue) throws Exception {
@@ -357,12 +430,37 @@ public class BatchSigner extends UntypedAbstractActor {
 
     }
 
+    /**
+     * Answer of Signer whether batch signing is enabled for the token, null if the query failed.
+     */
+    @Data
+    static class BatchSigningEnabled {
+        private final Boolean enabled;
+    }
+
+    /**
+     * Linger time of a batch has passed.
+     */
+    @Data
+    private static class LingerExpired {
+        private final long batchNumber;
+    }
+
+    /**
+     * Result of a batch signature, either the signature or an error.
+     */
+    @Data
+    private static class SignResult {
+        private final long batchNumber;
+        private final Object result;
+    }
+
     /**
      * Convenience class that wraps the request along with the keyId
      * and algorithm id.
      */
     @Data
-    private static class SigningRequestWrapper {
+    static class SigningRequestWrapper {
         private final String keyId;
         private final String signatureAlgorithmId;
         private final SigningRequest request;
@@ -381,15 +479,30 @@ public class BatchSigner extends UntypedAbstractActor {
         @Getter
         private final List<ActorRef> clients = new ArrayList<>();
 
+        @Getter
+        private final long batchNumber;
+
         @Getter
         private final String keyId;
 
-        BatchSignatureCtx(String keyId, String signatureAlgorithmId) {
+        @Getter
+        private final long createdNanos = System.nanoTime();
+
+        @Getter
+        @Setter
+        private boolean lingerExpired;
+
+        BatchSignatureCtx(long batchNumber, String keyId, String signatureAlgorithmId) {
             super(signatureAlgorithmId);
 
+            this.batchNumber = batchNumber;
             this.keyId = keyId;
         }
 
+        int size() {
+            return clients.size();
+        }
+
         void add(ActorRef client, SigningRequest request) {
             clients.add(client);
             add(request);
@@ -36,6 +36,7 @@ import ee.ria.xroad.common.Version;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.CachingServerConfImpl;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
+import ee.ria.xroad.common.messagelog.MessageLogProperties;
 import ee.ria.xroad.common.monitoring.MonitorAgent;
 import ee.ria.xroad.common.signature.BatchSigner;
 import ee.ria.xroad.common.util.AdminPort;
@@ -45,6 +46,7 @@ import ee.ria.xroad.common.util.StartStop;
 import ee.ria.xroad.common.util.healthcheck.HealthCheckPort;
 import ee.ria.xroad.proxy.addon.AddOn;
 import ee.ria.xroad.proxy.clientproxy.ClientProxy;
+import ee.ria.xroad.proxy.conf.OcspResponseCache;
 import ee.ria.xroad.proxy.messagelog.MessageLog;
 import ee.ria.xroad.proxy.opmonitoring.OpMonitoring;
 import ee.ria.xroad.proxy.serverproxy.ServerProxy;
@@ -168,7 +170,9 @@ public final class ProxyMain {
         actorSystem = ActorSystem.create("Proxy", ConfigFactory.load().getConfig("proxy")
                 .withFallback(ConfigFactory.load())
                 .withValue("akka.remote.artery.canonical.port",
-                        ConfigValueFactory.fromAnyRef(PortNumbers.PROXY_ACTORSYSTEM_PORT)));
+                        ConfigValueFactory.fromAnyRef(PortNumbers.PROXY_ACTORSYSTEM_PORT))
+                .withValue("akka.message-log-shard-dispatcher.thread-pool-executor.fixed-pool-size",
+                        ConfigValueFactory.fromAnyRef(Math.max(1, MessageLogProperties.getShardCount()))));
         log.info("Starting proxy ({})...", readProxyVersion());
     }
 
@@ -184,6 +188,7 @@ public final class ProxyMain {
         MonitorAgent.init(actorSystem);
         SignerClient.init(actorSystem);
         BatchSigner.init(actorSystem);
+        OcspResponseCache.init(actorSystem);
         MessageLog.init(actorSystem, jobManager);
         OpMonitoring.init(actorSystem);
 
@@ -26,6 +26,7 @@
 package ee.ria.xroad.proxy.clientproxy;
 
 import ee.ria.xroad.common.CodedException;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.serverconf.IsAuthenticationData;
@@ -46,6 +47,7 @@ import ee.ria.xroad.common.monitoring.MonitorAgent;
 import ee.ria.xroad.common.opmonitoring.OpMonitoringData;
 import ee.ria.xroad.common.util.HttpSender;
 import ee.ria.xroad.common.util.MimeUtils;
+import ee.ria.xroad.common.util.RingBufferPipe;
 import ee.ria.xroad.proxy.conf.KeyConf;
 import ee.ria.xroad.proxy.messagelog.MessageLog;
 import ee.ria.xroad.proxy.protocol.ProxyMessage;
@@ -66,8 +68,7 @@ import javax.servlet.http.HttpServletResponse;
 import javax.xml.namespace.QName;
 
 import java.io.InputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.io.OutputStream;
 import java.io.Writer;
 import java.net.URI;
 import java.util.List;
@@ -75,9 +76,10 @@ import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.ErrorCodes.X_INCONSISTENT_RESPONSE;
@@ -103,6 +105,8 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
      */
     private static final int WAIT_FOR_SOAP_TIMEOUT = 30; // seconds
 
+    private static final long SOAP_HANDLER_KEEP_ALIVE = 60; // seconds
+
     /**
      * By using a count down latch we can make the main thread wait for the
      * request handler thread to read the SOAP request, since we cannot open
@@ -128,8 +132,8 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
     private volatile CodedException executionException;
 
     /** Holds the proxy message output stream and associated info. */
-    private PipedInputStream reqIns;
-    private volatile PipedOutputStream reqOuts;
+    private InputStream reqIns;
+    private volatile OutputStream reqOuts;
     private volatile String outputContentType;
 
     /** Holds the request to the server proxy. */
@@ -143,23 +147,31 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
             createSoapHandlerExecutor();
 
     private static ExecutorService createSoapHandlerExecutor() {
-        return Executors.newCachedThreadPool(new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread handlerThread = new Thread(r);
-                handlerThread.setName(Thread.currentThread().getName() + "-soap");
+        int maxThreads = SystemProperties.getClientProxySoapHandlerThreads();
 
-                return handlerThread;
-            }
-        });
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+                SOAP_HANDLER_KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread handlerThread = new Thread(r);
+                        handlerThread.setName(Thread.currentThread().getName() + "-soap");
+
+                        return handlerThread;
+                    }
+                });
+        // Idle handler threads are released, the pool only bounds the number of concurrent handlers.
+        executor.allowCoreThreadTimeOut(true);
+
+        return executor;
     }
 
     ClientMessageProcessor(HttpServletRequest servletRequest, HttpServletResponse servletResponse,
             HttpClient httpClient, IsAuthenticationData clientCert, OpMonitoringData opMonitoringData)
             throws Exception {
         super(servletRequest, servletResponse, httpClient, clientCert, opMonitoringData);
-        this.reqIns = new PipedInputStream();
-        this.reqOuts = new PipedOutputStream(reqIns);
+        RingBufferPipe pipe = new RingBufferPipe(SystemProperties.getClientProxyRequestPipeSize());
+        this.reqIns = pipe.getInputStream();
+        this.reqOuts = pipe.getOutputStream();
         this.xRequestId = UUID.randomUUID().toString();
     }
 
@@ -463,6 +475,9 @@ class ClientMessageProcessor extends AbstractClientMessageProcessor {
         } catch (Throwable ex) {
             setError(ex);
         } finally {
+            // signal the end of the request to the sender, also if the encoder was never created
+            IOUtils.closeQuietly(reqOuts);
+
             continueProcessing();
             continueReadingResponse();
         }
@@ -32,7 +32,7 @@ import ee.ria.xroad.common.conf.globalconf.AuthKey;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
-import ee.ria.xroad.common.util.FileContentChangeChecker;
+import ee.ria.xroad.common.util.filewatcher.FileWatcherRunner;
 import ee.ria.xroad.signer.protocol.SignerClient;
 import ee.ria.xroad.signer.protocol.dto.MemberSigningInfo;
 import ee.ria.xroad.signer.protocol.message.GetAuthKey;
@@ -43,6 +43,7 @@ import com.google.common.cache.CacheBuilder;
 import lombok.extern.slf4j.Slf4j;
 import org.bouncycastle.cert.ocsp.OCSPResp;
 
+import java.nio.file.Paths;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.util.Date;
@@ -62,7 +63,10 @@ class CachingKeyConfImpl extends KeyConfImpl {
     // Specifies how long data is cached
     private static final int CACHE_PERIOD_SECONDS = 300;
 
-    private final FileContentChangeChecker keyConfChangeChecker;
+    // Set by the key conf file watcher, so that the request path does not need to read the file
+    private volatile boolean keyConfChanged;
+
+    private volatile FileWatcherRunner keyConfWatcher;
 
     private static final Cache<ClientId, SigningInfo> SIGNING_INFO_CACHE;
 
@@ -82,11 +86,31 @@ class CachingKeyConfImpl extends KeyConfImpl {
     }
 
     CachingKeyConfImpl() throws Exception {
-        keyConfChangeChecker = getKeyConfChangeChecker();
+        startKeyConfWatcher();
+    }
+
+    /**
+     * Starts watching the key conf file for changes. Cached data also expires after
+     * {@link #CACHE_PERIOD_SECONDS}, which covers any change the watcher might miss.
+     */
+    protected void startKeyConfWatcher() {
+        keyConfWatcher = FileWatcherRunner.create()
+                .watchForChangesIn(Paths.get(SystemProperties.getKeyConfFile()))
+                .listenToCreate().listenToModify().listenToDelete()
+                .andOnChangeNotify(() -> keyConfChanged = true)
+                .buildAndStartWatcher();
     }
 
-    protected FileContentChangeChecker getKeyConfChangeChecker() throws Exception {
-        return new FileContentChangeChecker(SystemProperties.getKeyConfFile());
+    /**
+     * Stops watching the key conf file. Called when this instance is replaced by a reloaded one.
+     */
+    void destroy() {
+        FileWatcherRunner watcher = keyConfWatcher;
+
+        if (watcher != null) {
+            keyConfWatcher = null;
+            watcher.stop();
+        }
     }
 
     @Override
@@ -145,12 +169,12 @@ class CachingKeyConfImpl extends KeyConfImpl {
     }
 
     boolean keyConfHasChanged() {
-        try {
-            return keyConfChangeChecker.hasChanged();
-        } catch (Exception e) {
-            log.error("Failed to check if key conf has changed", e);
+        if (keyConfChanged) {
+            keyConfChanged = false;
             return true;
         }
+
+        return false;
     }
 
     protected AuthKeyInfo getAuthKeyInfo(SecurityServerId serverId) throws Exception {
@@ -95,7 +95,9 @@ public final class KeyConf {
     public static void reload(KeyConfProvider conf) {
         LOG.trace("reload({})", conf.getClass());
 
+        KeyConfProvider previous = instance;
         instance = conf;
+        destroy(previous);
     }
 
     /**
@@ -185,7 +187,8 @@ public final class KeyConf {
 
     /**
      * Updates the existing OCSP response or stores the OCSP response,
-     * if it does not exist for the given certificate.
+     * if it does not exist for the given certificate. May return before
+     * the responses are stored.
      *
      * @param certs     list of certificates
      * @param responses list of OCSP responses
@@ -201,7 +204,9 @@ public final class KeyConf {
     // ------------------------------------------------------------------------
 
     private static void initInstance() {
+        KeyConfProvider previous = instance;
         instance = null;
+        destroy(previous);
         try {
             instance = new CachingKeyConfImpl();
             initializationError = null;
@@ -210,4 +215,11 @@ public final class KeyConf {
             throw initializationError;
         }
     }
+
+    private static void destroy(KeyConfProvider conf) {
+        // stop the key conf file watcher of the replaced instance
+        if (conf instanceof CachingKeyConfImpl && conf != instance) {
+            ((CachingKeyConfImpl) conf).destroy();
+        }
+    }
 }
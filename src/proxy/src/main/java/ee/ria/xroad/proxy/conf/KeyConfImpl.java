@@ -120,49 +120,82 @@ class KeyConfImpl implements KeyConfProvider {
 
     @Override
     public OCSPResp getOcspResponse(String certHash) throws Exception {
-        GetOcspResponsesResponse response =
-                SignerClient.execute(
-                        new GetOcspResponses(new String[] {certHash}));
-
-        for (String base64Encoded : response.getBase64EncodedResponses()) {
-            return base64Encoded != null
-                    ? new OCSPResp(decodeBase64(base64Encoded)) : null;
-        }
-
-        return null;
+        return getOcspResponses(new String[] {certHash}).get(0);
     }
 
     @Override
     public List<OCSPResp> getOcspResponses(List<X509Certificate> certs)
             throws Exception {
-        GetOcspResponsesResponse response =
-                SignerClient.execute(
-                        new GetOcspResponses(getCertHashes(certs)));
-
-        List<OCSPResp> ocspResponses = new ArrayList<>();
-        for (String base64Encoded : response.getBase64EncodedResponses()) {
-            if (base64Encoded != null) {
-                ocspResponses.add(new OCSPResp(decodeBase64(base64Encoded)));
-            } else {
-                ocspResponses.add(null);
+        return getOcspResponses(getCertHashes(certs));
+    }
+
+    /**
+     * Returns the OCSP responses from the local cache. Only the responses
+     * missing from the cache are queried from the signer.
+     */
+    List<OCSPResp> getOcspResponses(String[] certHashes) throws Exception {
+        List<OCSPResp> ocspResponses = new ArrayList<>(certHashes.length);
+        List<Integer> missing = new ArrayList<>();
+
+        for (int i = 0; i < certHashes.length; i++) {
+            OCSPResp cached = OcspResponseCache.get(certHashes[i]);
+            ocspResponses.add(cached);
+
+            if (cached == null) {
+                missing.add(i);
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return ocspResponses;
+        }
+
+        String[] missingHashes = missing.stream().map(i -> certHashes[i])
+                .toArray(String[]::new);
+
+        GetOcspResponsesResponse response = fetchOcspResponses(missingHashes);
+
+        String[] base64EncodedResponses = response.getBase64EncodedResponses();
+        for (int i = 0; i < missingHashes.length
+                && i < base64EncodedResponses.length; i++) {
+            if (base64EncodedResponses[i] != null) {
+                OCSPResp ocspResponse =
+                        new OCSPResp(decodeBase64(base64EncodedResponses[i]));
+                OcspResponseCache.put(missingHashes[i], ocspResponse);
+                ocspResponses.set(missing.get(i), ocspResponse);
             }
         }
 
         return ocspResponses;
     }
 
+    /**
+     * Queries the OCSP responses from the signer.
+     */
+    GetOcspResponsesResponse fetchOcspResponses(String[] certHashes)
+            throws Exception {
+        return SignerClient.execute(new GetOcspResponses(certHashes));
+    }
+
     @Override
     public void setOcspResponses(List<X509Certificate> certs,
             List<OCSPResp> responses) throws Exception {
+        String[] certHashes = getCertHashes(certs);
         String[] base64EncodedResponses = new String[responses.size()];
 
         for (int i = 0; i < responses.size(); i++) {
+            OcspResponseCache.put(certHashes[i], responses.get(i));
             base64EncodedResponses[i] =
                     encodeBase64(responses.get(i).getEncoded());
         }
 
-        SignerClient.execute(new SetOcspResponses(getCertHashes(certs),
-                base64EncodedResponses));
+        // The responses are only cached by the signer, hence there is no need to wait for it
+        SignerClient.executeAsync(new SetOcspResponses(certHashes, base64EncodedResponses))
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        log.warn("Failed to cache OCSP responses in signer", error);
+                    }
+                });
     }
 
     static SigningCtx createSigningCtx(ClientId subject, String keyId,
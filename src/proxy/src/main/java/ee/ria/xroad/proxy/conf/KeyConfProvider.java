@@ -75,7 +75,8 @@ public interface KeyConfProvider {
 
     /**
      * Updates the existing OCSP response or stores the OCSP response,
-     * if it does not exist for the given certificate.
+     * if it does not exist for the given certificate. May return before
+     * the responses are stored.
      * @param certs list of certificates
      * @param responses list of OCSP responses
      * @throws Exception in case of any errors
@@ -0,0 +1,179 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.ocsp.OcspCache;
+import ee.ria.xroad.signer.protocol.SignerClient;
+import ee.ria.xroad.signer.protocol.message.SetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.SubscribeOcspResponses;
+
+import akka.actor.ActorPath;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedAbstractActor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+
+import static ee.ria.xroad.common.util.CryptoUtils.decodeBase64;
+import static ee.ria.xroad.signer.protocol.ComponentNames.OCSP_RESPONSE_MANAGER;
+
+/**
+ * In-process cache of the OCSP responses, keyed by certificate hash. The cache subscribes to the signer, which
+ * sends it the responses it has and every response it gets later. A response is returned only as long as it
+ * is fresh according to the global configuration, after that it is queried from the signer again.
+ */
+@Slf4j
+public final class OcspResponseCache {
+
+    static final int SUBSCRIPTION_RENEWAL_SECONDS = 60;
+    static final int SUBSCRIPTION_VALIDITY_SECONDS = 3 * SUBSCRIPTION_RENEWAL_SECONDS;
+
+    private static final OcspCache CACHE = new OcspCache();
+
+    // Holds the actor instance, which receives the responses from the signer.
+    private static ActorRef subscriber;
+
+    private OcspResponseCache() {
+    }
+
+    /**
+     * Subscribes the cache to the OCSP responses of the signer.
+     *
+     * @param actorSystem actor system the subscriber should use
+     */
+    public static void init(ActorSystem actorSystem) {
+        if (subscriber == null) {
+            subscriber = actorSystem.actorOf(Props.create(Subscriber.class));
+        }
+    }
+
+    /**
+     * @param certHash the certificate hash
+     * @return the cached OCSP response or null, if the response is not cached or is not fresh
+     */
+    static OCSPResp get(String certHash) {
+        return CACHE.get(certHash);
+    }
+
+    /**
+     * Caches the OCSP response of a certificate.
+     *
+     * @param certHash the certificate hash
+     * @param response the OCSP response
+     */
+    static void put(String certHash, OCSPResp response) {
+        CACHE.put(certHash, response);
+    }
+
+    /**
+     * Renews the subscription periodically, so that it is restored after a signer restart, and caches the
+     * responses sent by the signer. Responses are accepted only from the signer actor the subscription was sent to.
+     */
+    static class Subscriber extends UntypedAbstractActor {
+
+        static final Object RENEW = "Renew";
+
+        private ActorPath publisher;
+
+        @Override
+        public void preStart() {
+            getSelf().tell(RENEW, getSelf());
+        }
+
+        @Override
+        public void onReceive(Object message) {
+            if (message == RENEW) {
+                handleRenew();
+            } else if (message instanceof Publisher) {
+                handlePublisher((Publisher) message);
+            } else if (message instanceof SetOcspResponses) {
+                handleSetOcspResponses((SetOcspResponses) message);
+            } else {
+                unhandled(message);
+            }
+        }
+
+        /**
+         * Returns the path of the signer actor that publishes the OCSP responses.
+         */
+        protected CompletionStage<ActorPath> getPublisherPathAsync() {
+            return SignerClient.getActorPathAsync(OCSP_RESPONSE_MANAGER);
+        }
+
+        private void handleRenew() {
+            ActorRef self = getSelf();
+
+            getPublisherPathAsync().whenComplete((path, error) -> {
+                if (error != null) {
+                    log.debug("Could not subscribe to OCSP responses: {}", error.getMessage());
+                } else {
+                    self.tell(new Publisher(path), ActorRef.noSender());
+                }
+            });
+
+            getContext().getSystem().scheduler().scheduleOnce(Duration.ofSeconds(SUBSCRIPTION_RENEWAL_SECONDS),
+                    getSelf(), RENEW, getContext().getDispatcher(), ActorRef.noSender());
+        }
+
+        private void handlePublisher(Publisher message) {
+            publisher = message.getPath();
+
+            getContext().actorSelection(publisher).tell(new SubscribeOcspResponses(SUBSCRIPTION_VALIDITY_SECONDS),
+                    getSelf());
+        }
+
+        private void handleSetOcspResponses(SetOcspResponses message) {
+            if (publisher == null || !publisher.equals(getSender().path())) {
+                log.warn("Ignoring OCSP responses from {}", getSender());
+
+                return;
+            }
+
+            log.trace("handleSetOcspResponses({})", message.getCertHashes().length);
+
+            for (int i = 0; i < message.getCertHashes().length; i++) {
+                try {
+                    put(message.getCertHashes()[i], new OCSPResp(decodeBase64(message.getBase64EncodedResponses()[i])));
+                } catch (Exception e) {
+                    log.error("Failed to cache OCSP response for cert {}", message.getCertHashes()[i], e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Path of the signer actor that publishes the OCSP responses.
+     */
+    @Data
+    private static class Publisher {
+        private final ActorPath path;
+    }
+}
@@ -76,6 +76,7 @@ public class SignerSigningKey implements SigningKey {
         }
 
         try {
+            // Message processing is synchronous, the request thread waits here for the batch signature
             return BatchSigner.sign(keyId, signAlgoId, request);
         } catch (Exception e) {
             throw translateWithPrefix(X_CANNOT_CREATE_SIGNATURE, e);
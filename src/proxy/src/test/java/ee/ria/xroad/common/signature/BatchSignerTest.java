@@ -0,0 +1,285 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.common.signature;
+
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.TestSecurityUtil;
+import ee.ria.xroad.common.util.CryptoUtils;
+import ee.ria.xroad.common.util.MessageFileNames;
+import ee.ria.xroad.signer.protocol.message.SignResponse;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.TestActorRef;
+import akka.testkit.javadsl.TestKit;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests how the batch signer groups signing requests into batches.
+ */
+public class BatchSignerTest {
+
+    private static final String LINGER_TIME = "xroad.proxy.batch-signer-linger-time";
+    private static final String MAX_BATCH_SIZE = "xroad.proxy.batch-signer-max-batch-size";
+    private static final String MAX_HASH_CHAIN_DEPTH = "xroad.proxy.batch-signer-max-hash-chain-depth";
+    private static final String MAX_CONCURRENT_BATCHES = "xroad.proxy.batch-signer-max-concurrent-batches";
+
+    private static final String KEY_ID = "consumer";
+
+    private static final long NO_SIGNATURE_MILLIS = 100;
+    private static final long SIGNATURE_MILLIS = 5000;
+
+    // Signatures requested from Signer, completed by the tests
+    private static final BlockingQueue<CompletableFuture<Object>> SIGNATURES = new LinkedBlockingQueue<>();
+
+    private static ActorSystem actorSystem;
+    private static X509Certificate signingCert;
+
+    static {
+        TestSecurityUtil.initSecurity();
+    }
+
+    /**
+     * Worker that keeps the signatures to be completed by the tests instead
+     * of asking Signer.
+     */
+    static final class TestWorker extends BatchSigner.WorkerImpl {
+        @Override
+        @SuppressWarnings("unchecked")
+        protected <T> CompletionStage<T> executeAsync(Object message) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            SIGNATURES.add((CompletableFuture<Object>) result);
+
+            return result;
+        }
+    }
+
+    /**
+     * Batch signer that creates test workers.
+     */
+    static final class TestBatchSigner extends BatchSigner {
+        @Override
+        protected Props getWorkerProps() {
+            return Props.create(TestWorker.class);
+        }
+    }
+
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        actorSystem = ActorSystem.create("BatchSignerTest");
+        signingCert = TestCertUtil.getConsumer().certChain[0];
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        TestKit.shutdownActorSystem(actorSystem);
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(LINGER_TIME);
+        System.clearProperty(MAX_BATCH_SIZE);
+        System.clearProperty(MAX_HASH_CHAIN_DEPTH);
+        System.clearProperty(MAX_CONCURRENT_BATCHES);
+
+        SIGNATURES.clear();
+    }
+
+    @Test
+    public void maxBatchSize() throws Exception {
+        System.setProperty(MAX_BATCH_SIZE, "2");
+
+        assertBatchesOfTwo(createWorker());
+    }
+
+    @Test
+    public void maxHashChainDepth() throws Exception {
+        // A hash chain of depth 1 has room for two requests
+        System.setProperty(MAX_HASH_CHAIN_DEPTH, "1");
+
+        assertBatchesOfTwo(createWorker());
+    }
+
+    @Test
+    public void lingerTime() throws Exception {
+        System.setProperty(LINGER_TIME, "300");
+        System.setProperty(MAX_BATCH_SIZE, "2");
+        System.setProperty(MAX_CONCURRENT_BATCHES, "2");
+
+        ActorRef worker = createWorker();
+
+        // A full batch does not wait
+        sign(worker, 2);
+
+        assertNotNull(SIGNATURES.poll(NO_SIGNATURE_MILLIS, TimeUnit.MILLISECONDS));
+
+        // A batch that is not full waits for the linger time
+        List<TestKit> lingering = sign(worker, 1);
+
+        assertNull(SIGNATURES.poll(NO_SIGNATURE_MILLIS, TimeUnit.MILLISECONDS));
+
+        completeNextSignature("lingering");
+
+        expectError(lingering.get(0), "lingering");
+    }
+
+    @Test
+    public void signAsyncDoesNotWaitForSignature() throws Exception {
+        ActorRef previous = BatchSigner.setInstance(actorSystem.actorOf(Props.create(TestBatchSigner.class)));
+
+        try {
+            // Returns while Signer has not answered yet
+            CompletableFuture<SignatureData> signature = BatchSigner.signAsync(KEY_ID,
+                    CryptoUtils.SHA512WITHRSA_ID, createRequest("async")).toCompletableFuture();
+
+            // The worker first asks whether batch signing is enabled for the token
+            CompletableFuture<Object> batchSigningEnabled = SIGNATURES.poll(SIGNATURE_MILLIS, TimeUnit.MILLISECONDS);
+
+            assertNotNull("Batch signing not queried", batchSigningEnabled);
+            batchSigningEnabled.complete(Boolean.FALSE);
+
+            CompletableFuture<Object> signResponse = SIGNATURES.poll(SIGNATURE_MILLIS, TimeUnit.MILLISECONDS);
+
+            assertNotNull("No signature requested", signResponse);
+            assertFalse(signature.isDone());
+
+            signResponse.complete(new SignResponse(new byte[] {1, 2, 3}));
+
+            assertNotNull(signature.get(SIGNATURE_MILLIS, TimeUnit.MILLISECONDS).getSignatureXml());
+        } finally {
+            BatchSigner.setInstance(previous);
+        }
+    }
+
+    @Test
+    public void signAsyncCompletesExceptionally() throws Exception {
+        ActorRef previous = BatchSigner.setInstance(actorSystem.actorOf(Props.create(TestBatchSigner.class)));
+
+        try {
+            CompletableFuture<SignatureData> signature = BatchSigner.signAsync(KEY_ID,
+                    CryptoUtils.SHA512WITHRSA_ID, createRequest("async")).toCompletableFuture();
+
+            SIGNATURES.poll(SIGNATURE_MILLIS, TimeUnit.MILLISECONDS).complete(Boolean.FALSE);
+            completeNextSignature("failed");
+
+            try {
+                signature.get(SIGNATURE_MILLIS, TimeUnit.MILLISECONDS);
+                fail("Signature should have failed");
+            } catch (ExecutionException e) {
+                assertEquals("failed", e.getCause().getMessage());
+            }
+        } finally {
+            BatchSigner.setInstance(previous);
+        }
+    }
+
+    /**
+     * Sends five requests, one at a time is signed. While the first request
+     * is signed alone, the rest are collected into batches of two.
+     */
+    private static void assertBatchesOfTwo(ActorRef worker) throws Exception {
+        List<TestKit> clients = sign(worker, 5);
+
+        completeNextSignature("batch 0");
+        completeNextSignature("batch 1");
+        completeNextSignature("batch 2");
+
+        assertNull(SIGNATURES.poll(NO_SIGNATURE_MILLIS, TimeUnit.MILLISECONDS));
+
+        expectError(clients.get(0), "batch 0");
+        expectError(clients.get(1), "batch 1");
+        expectError(clients.get(2), "batch 1");
+        expectError(clients.get(3), "batch 2");
+        expectError(clients.get(4), "batch 2");
+    }
+
+    private static ActorRef createWorker() {
+        ActorRef worker = TestActorRef.create(actorSystem, Props.create(TestWorker.class));
+        worker.tell(new BatchSigner.BatchSigningEnabled(true), ActorRef.noSender());
+
+        return worker;
+    }
+
+    private static List<TestKit> sign(ActorRef worker, int count) {
+        List<TestKit> clients = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            TestKit client = new TestKit(actorSystem);
+            clients.add(client);
+
+            worker.tell(new BatchSigner.SigningRequestWrapper(KEY_ID, CryptoUtils.SHA512WITHRSA_ID,
+                    createRequest("message " + i)), client.getRef());
+        }
+
+        return clients;
+    }
+
+    private static SigningRequest createRequest(String message) {
+        byte[] messageBytes = message.getBytes(StandardCharsets.UTF_8);
+
+        try {
+            return new SigningRequest(signingCert, Collections.singletonList(new MessagePart(
+                    MessageFileNames.MESSAGE, CryptoUtils.SHA512_ID,
+                    CryptoUtils.calculateDigest(CryptoUtils.SHA512_ID, messageBytes), messageBytes)));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void completeNextSignature(String error) throws Exception {
+        CompletableFuture<Object> signature = SIGNATURES.poll(SIGNATURE_MILLIS, TimeUnit.MILLISECONDS);
+
+        assertNotNull("No signature requested", signature);
+
+        signature.completeExceptionally(new Exception(error));
+    }
+
+    private static void expectError(TestKit client, String error) {
+        assertEquals(error, client.expectMsgClass(Exception.class).getMessage());
+    }
+}
@@ -25,14 +25,12 @@ package ee.ria.xroad.proxy.conf;
 import ee.ria.xroad.common.conf.serverconf.ServerConf;
 import ee.ria.xroad.common.identifier.ClientId;
 import ee.ria.xroad.common.identifier.SecurityServerId;
-import ee.ria.xroad.common.util.FileContentChangeChecker;
 import ee.ria.xroad.proxy.testsuite.EmptyServerConf;
 
 import lombok.extern.slf4j.Slf4j;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
@@ -374,19 +372,14 @@ public class CachingKeyConfImplTest {
         }
 
         @Override
-        protected FileContentChangeChecker getKeyConfChangeChecker() throws Exception {
-            return new FileContentChangeChecker("dummyFileName") {
-                @Override
-                protected String calculateConfFileChecksum(File file) throws Exception {
-                    return "dummyChecksum";
-                }
+        protected void startKeyConfWatcher() {
+            // key conf changes are simulated with keyConfHasChanged
+        }
 
-                @Override
-                public boolean hasChanged() throws Exception {
-                    log.debug("asking if key conf has changed, answer: " + keyConfHasChanged.getAsBoolean());
-                    return keyConfHasChanged.getAsBoolean();
-                }
-            };
+        @Override
+        boolean keyConfHasChanged() {
+            log.debug("asking if key conf has changed, answer: " + keyConfHasChanged.getAsBoolean());
+            return keyConfHasChanged.getAsBoolean();
         }
 
         private void delay(long delayMs) throws Exception {
@@ -0,0 +1,156 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.OcspTestUtils;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.signer.protocol.message.GetOcspResponsesResponse;
+
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPResp;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how the OCSP responses are looked up from the cache and the signer.
+ */
+public class KeyConfImplTest {
+
+    private static OCSPResp ocspResponse;
+
+    /**
+     * Creates the OCSP response used by the tests.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        GlobalConf.reload(new EmptyGlobalConf());
+
+        X509Certificate issuer = TestCertUtil.getCertChainCert("root_ca.p12");
+        PrivateKey signerKey = TestCertUtil.getCertChainKey("root_ca.p12");
+        X509Certificate subject = TestCertUtil.getCertChainCert("user_0.p12");
+
+        Date thisUpdate = Date.from(Instant.now().plus(1, ChronoUnit.DAYS));
+        ocspResponse = OcspTestUtils.createOCSPResponse(subject, issuer, issuer, signerKey,
+                CertificateStatus.GOOD, thisUpdate, null);
+    }
+
+    /**
+     * Only the responses missing from the cache are fetched from the signer, the
+     * fetched responses are cached.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void fetchMissingResponses() throws Exception {
+        OcspResponseCache.put("merge-cached", ocspResponse);
+
+        TestKeyConf keyConf = new TestKeyConf("merge-fetched");
+
+        List<OCSPResp> responses = keyConf.getOcspResponses(
+                new String[] {"merge-fetched", "merge-cached", "merge-unknown"});
+
+        assertEquals(1, keyConf.fetched.size());
+        assertArrayEquals(new String[] {"merge-fetched", "merge-unknown"}, keyConf.fetched.get(0));
+
+        assertEquals(3, responses.size());
+        assertNotNull(responses.get(0));
+        assertSame(ocspResponse, responses.get(1));
+        assertNull(responses.get(2));
+
+        // The fetched response is now cached, the unknown one is fetched again
+        responses = keyConf.getOcspResponses(new String[] {"merge-fetched", "merge-unknown"});
+
+        assertEquals(2, keyConf.fetched.size());
+        assertArrayEquals(new String[] {"merge-unknown"}, keyConf.fetched.get(1));
+        assertSame(OcspResponseCache.get("merge-fetched"), responses.get(0));
+        assertNull(responses.get(1));
+    }
+
+    /**
+     * The signer is not asked if all the responses are cached.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void allResponsesCached() throws Exception {
+        OcspResponseCache.put("all-cached-1", ocspResponse);
+        OcspResponseCache.put("all-cached-2", ocspResponse);
+
+        TestKeyConf keyConf = new TestKeyConf();
+
+        List<OCSPResp> responses = keyConf.getOcspResponses(new String[] {"all-cached-1", "all-cached-2"});
+
+        assertTrue(keyConf.fetched.isEmpty());
+        assertEquals(Arrays.asList(ocspResponse, ocspResponse), responses);
+    }
+
+    /**
+     * Key configuration that fetches the OCSP responses from a fixed set
+     * instead of the signer.
+     */
+    private static final class TestKeyConf extends KeyConfImpl {
+
+        private final List<String> known;
+        private final List<String[]> fetched = new ArrayList<>();
+
+        TestKeyConf(String... known) {
+            this.known = Arrays.asList(known);
+        }
+
+        @Override
+        GetOcspResponsesResponse fetchOcspResponses(String[] certHashes) throws Exception {
+            fetched.add(certHashes);
+
+            String[] base64EncodedResponses = new String[certHashes.length];
+
+            for (int i = 0; i < certHashes.length; i++) {
+                if (known.contains(certHashes[i])) {
+                    base64EncodedResponses[i] = encodeBase64(ocspResponse.getEncoded());
+                }
+            }
+
+            return new GetOcspResponsesResponse(base64EncodedResponses);
+        }
+    }
+}
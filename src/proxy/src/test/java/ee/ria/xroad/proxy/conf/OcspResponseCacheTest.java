@@ -0,0 +1,156 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.proxy.conf;
+
+import ee.ria.xroad.common.OcspTestUtils;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.common.conf.globalconf.EmptyGlobalConf;
+import ee.ria.xroad.common.conf.globalconf.GlobalConf;
+import ee.ria.xroad.signer.protocol.message.SetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.SubscribeOcspResponses;
+
+import akka.actor.ActorPath;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.javadsl.TestKit;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how the OCSP response cache subscribes to the responses of the signer.
+ */
+public class OcspResponseCacheTest {
+
+    private static ActorSystem actorSystem;
+    private static String base64EncodedResponse;
+
+    // Stands for the OCSP response manager of the signer
+    private static TestKit publisher;
+
+    private ActorRef subscriber;
+
+    /**
+     * Subscriber that subscribes to the test publisher instead of the signer.
+     */
+    static final class TestSubscriber extends OcspResponseCache.Subscriber {
+        @Override
+        protected CompletionStage<ActorPath> getPublisherPathAsync() {
+            return CompletableFuture.completedFuture(publisher.getRef().path());
+        }
+    }
+
+    /**
+     * Creates the OCSP response used by the tests.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        GlobalConf.reload(new EmptyGlobalConf());
+
+        actorSystem = ActorSystem.create("OcspResponseCacheTest");
+        publisher = new TestKit(actorSystem);
+
+        X509Certificate issuer = TestCertUtil.getCertChainCert("root_ca.p12");
+        PrivateKey signerKey = TestCertUtil.getCertChainKey("root_ca.p12");
+        X509Certificate subject = TestCertUtil.getCertChainCert("user_0.p12");
+
+        Date thisUpdate = Date.from(Instant.now().plus(1, ChronoUnit.DAYS));
+        base64EncodedResponse = encodeBase64(OcspTestUtils.createOCSPResponse(subject, issuer, issuer, signerKey,
+                CertificateStatus.GOOD, thisUpdate, null).getEncoded());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        TestKit.shutdownActorSystem(actorSystem);
+    }
+
+    @Before
+    public void setUp() {
+        subscriber = actorSystem.actorOf(Props.create(TestSubscriber.class));
+
+        expectSubscription();
+    }
+
+    @After
+    public void tearDown() {
+        actorSystem.stop(subscriber);
+    }
+
+    @Test
+    public void renewSubscription() {
+        subscriber.tell(OcspResponseCache.Subscriber.RENEW, ActorRef.noSender());
+
+        expectSubscription();
+    }
+
+    @Test
+    public void cacheResponsesFromPublisher() {
+        publisher.reply(setOcspResponses("published"));
+
+        publisher.awaitCond(() -> OcspResponseCache.get("published") != null);
+    }
+
+    @Test
+    public void ignoreResponsesFromOthers() {
+        TestKit other = new TestKit(actorSystem);
+        subscriber.tell(setOcspResponses("spoofed"), other.getRef());
+
+        // Messages are handled in order, the spoofed responses are handled first
+        publisher.reply(setOcspResponses("after-spoofed"));
+
+        publisher.awaitCond(() -> OcspResponseCache.get("after-spoofed") != null);
+        assertNull(OcspResponseCache.get("spoofed"));
+    }
+
+    private void expectSubscription() {
+        SubscribeOcspResponses subscription = publisher.expectMsgClass(SubscribeOcspResponses.class);
+
+        assertEquals(subscriber, publisher.getLastSender());
+        assertTrue(subscription.getValiditySeconds() > OcspResponseCache.SUBSCRIPTION_RENEWAL_SECONDS);
+    }
+
+    private static SetOcspResponses setOcspResponses(String certHash) {
+        return new SetOcspResponses(new String[] {certHash}, new String[] {base64EncodedResponse});
+    }
+}
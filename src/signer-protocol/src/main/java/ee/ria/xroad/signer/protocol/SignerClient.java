@@ -29,9 +29,11 @@ import ee.ria.xroad.common.CodedException;
 import ee.ria.xroad.common.SystemProperties;
 
 import akka.actor.ActorIdentity;
+import akka.actor.ActorPath;
 import akka.actor.ActorRef;
 import akka.actor.ActorSelection;
 import akka.actor.ActorSystem;
+import akka.actor.Cancellable;
 import akka.actor.Identify;
 import akka.actor.Props;
 import akka.actor.UntypedAbstractActor;
@@ -44,6 +46,8 @@ import java.time.Duration;
 import java.util.Objects;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -52,6 +56,7 @@ import static ee.ria.xroad.common.ErrorCodes.X_INTERNAL_ERROR;
 import static ee.ria.xroad.signer.protocol.ComponentNames.REQUEST_PROCESSOR;
 import static ee.ria.xroad.signer.protocol.ComponentNames.SIGNER;
 import static ee.ria.xroad.signer.protocol.SignerClient.SignerWatcher.requestProcessor;
+import static ee.ria.xroad.signer.protocol.SignerClient.SignerWatcher.requestProcessorAsync;
 
 /**
  * Signer client is used to send messages to signer from other components
@@ -99,6 +104,17 @@ public final class SignerClient {
         requestProcessor().tell(message, receiver);
     }
 
+    /**
+     * Returns a stage that is completed with the path of a signer actor, without waiting for the signer to
+     * become available. The stage fails, if the signer is unreachable.
+     *
+     * @param name the name of the actor, see {@link ComponentNames}
+     * @return the stage that is completed with the actor path
+     */
+    public static CompletionStage<ActorPath> getActorPathAsync(String name) {
+        return requestProcessorAsync().thenApply(processor -> processor.path().parent().child(name));
+    }
+
     /**
      * Sends a message and waits for a response, returning it. If the response
      * is an exception, throws it.
@@ -116,6 +132,54 @@ public final class SignerClient {
         }
     }
 
+    /**
+     * Sends a message without waiting for the response. The returned stage is completed with the response, or
+     * exceptionally if the response is an exception, the signer is unreachable or the request times out.
+     *
+     * @param <T>     the type of result
+     * @param message the message
+     * @return the stage that is completed with the response
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletionStage<T> executeAsync(Object message) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        requestProcessorAsync().whenComplete((processor, refError) -> {
+            if (refError != null) {
+                result.completeExceptionally(refError);
+                return;
+            }
+
+            try {
+                Patterns.ask(processor, message, Duration.ofMillis(TIMEOUT.duration().toMillis()))
+                        .whenComplete((response, error) -> {
+                            if (error != null) {
+                                result.completeExceptionally(translateAskError(error));
+                            } else if (response instanceof Throwable) {
+                                result.completeExceptionally((Throwable) response);
+                            } else {
+                                result.complete((T) response);
+                            }
+                        });
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        });
+
+        return result;
+    }
+
+    private static Throwable translateAskError(Throwable error) {
+        final Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause() : error;
+
+        if (cause instanceof TimeoutException) {
+            return new CodedException(X_INTERNAL_ERROR, cause, "Request to Signer timed out");
+        }
+
+        return cause;
+    }
+
     /**
      * Returns the object as the instance or throws exception, if the object
      * is throwable.
@@ -153,6 +217,7 @@ public final class SignerClient {
          * available and make it possible to wait for the actor reference to appear.
          */
         private static volatile CompletableFuture<ActorRef> requestProcessorFuture = null;
+        private static volatile ActorSystem actorSystem = null;
 
         private static final Duration WATCH_DELAY = Duration
                 .ofSeconds(SystemProperties.getSignerClientHeartbeatInterval());
@@ -184,8 +249,43 @@ public final class SignerClient {
             }
         }
 
+        /**
+         * Returns a stage that is completed with an actor reference to the Signer request processor, without
+         * blocking the caller. The stage fails with a {@link CodedException} if the reference does not become
+         * available in {@link #REF_GET_TIMEOUT} seconds, and with an {@link IllegalStateException} if the signer
+         * client has not been initialized (see {@link #init(ActorSystem, String)}).
+         */
+        static CompletionStage<ActorRef> requestProcessorAsync() {
+            final CompletableFuture<ActorRef> processor = requestProcessorFuture;
+            if (processor == null) {
+                final CompletableFuture<ActorRef> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new IllegalStateException("SignerClient is not initialized"));
+                return failed;
+            }
+
+            final CompletableFuture<ActorRef> result = new CompletableFuture<>();
+            processor.whenComplete((ref, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(new CodedException(X_INTERNAL_ERROR, error, "Signer is unreachable"));
+                } else {
+                    result.complete(ref);
+                }
+            });
+
+            if (!result.isDone()) {
+                final Cancellable timeout = actorSystem.scheduler().scheduleOnce(Duration.ofSeconds(REF_GET_TIMEOUT),
+                        () -> result.completeExceptionally(new CodedException(X_INTERNAL_ERROR,
+                                new TimeoutException(), "Signer is unreachable")),
+                        actorSystem.dispatcher());
+                result.whenComplete((ref, error) -> timeout.cancel());
+            }
+
+            return result;
+        }
+
         static synchronized void init(ActorSystem system, String signerIpAddress) {
             if (requestProcessorFuture == null) {
+                actorSystem = system;
                 requestProcessorFuture = new CompletableFuture<>();
                 system.actorOf(Props.create(SignerWatcher.class, signerIpAddress));
             }
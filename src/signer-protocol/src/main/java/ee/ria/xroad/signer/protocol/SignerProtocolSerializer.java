@@ -0,0 +1,392 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.protocol;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
+import ee.ria.xroad.signer.protocol.dto.MemberSigningInfo;
+import ee.ria.xroad.signer.protocol.message.ConnectionPing;
+import ee.ria.xroad.signer.protocol.message.ConnectionPong;
+import ee.ria.xroad.signer.protocol.message.GetMemberSigningInfo;
+import ee.ria.xroad.signer.protocol.message.GetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.GetOcspResponsesResponse;
+import ee.ria.xroad.signer.protocol.message.GetSignMechanism;
+import ee.ria.xroad.signer.protocol.message.GetSignMechanismResponse;
+import ee.ria.xroad.signer.protocol.message.GetTokenBatchSigningEnabled;
+import ee.ria.xroad.signer.protocol.message.SetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.Sign;
+import ee.ria.xroad.signer.protocol.message.SignResponse;
+
+import akka.serialization.SerializerWithStringManifest;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Binary Akka serializer for the Signer protocol messages that are exchanged for every signed message.
+ * The other messages are serialized with Java serialization.
+ *
+ * Every message starts with a format version byte. Base64 encoded OCSP responses are transferred as raw bytes
+ * and encoded again when deserialized.
+ */
+public class SignerProtocolSerializer extends SerializerWithStringManifest {
+
+    static final int IDENTIFIER = 1_052_001;
+
+    private static final byte VERSION = 1;
+
+    private static final int NULL_LENGTH = -1;
+
+    private static final byte BASE64_NULL = 0;
+    private static final byte BASE64_RAW = 1;
+    private static final byte BASE64_STRING = 2;
+
+    private static final String SIGN = "Sign";
+    private static final String SIGN_RESPONSE = "SignResponse";
+    private static final String GET_OCSP_RESPONSES = "GetOcspResponses";
+    private static final String GET_OCSP_RESPONSES_RESPONSE = "GetOcspResponsesResponse";
+    private static final String SET_OCSP_RESPONSES = "SetOcspResponses";
+    private static final String GET_MEMBER_SIGNING_INFO = "GetMemberSigningInfo";
+    private static final String MEMBER_SIGNING_INFO = "MemberSigningInfo";
+    private static final String GET_TOKEN_BATCH_SIGNING_ENABLED = "GetTokenBatchSigningEnabled";
+    private static final String GET_SIGN_MECHANISM = "GetSignMechanism";
+    private static final String GET_SIGN_MECHANISM_RESPONSE = "GetSignMechanismResponse";
+    private static final String CONNECTION_PING = "ConnectionPing";
+    private static final String CONNECTION_PONG = "ConnectionPong";
+
+    @Override
+    public int identifier() {
+        return IDENTIFIER;
+    }
+
+    @Override
+    public String manifest(Object o) {
+        if (o instanceof Sign) {
+            return SIGN;
+        } else if (o instanceof SignResponse) {
+            return SIGN_RESPONSE;
+        } else if (o instanceof GetOcspResponses) {
+            return GET_OCSP_RESPONSES;
+        } else if (o instanceof GetOcspResponsesResponse) {
+            return GET_OCSP_RESPONSES_RESPONSE;
+        } else if (o instanceof SetOcspResponses) {
+            return SET_OCSP_RESPONSES;
+        } else if (o instanceof GetMemberSigningInfo) {
+            return GET_MEMBER_SIGNING_INFO;
+        } else if (o instanceof MemberSigningInfo) {
+            return MEMBER_SIGNING_INFO;
+        } else if (o instanceof GetTokenBatchSigningEnabled) {
+            return GET_TOKEN_BATCH_SIGNING_ENABLED;
+        } else if (o instanceof GetSignMechanism) {
+            return GET_SIGN_MECHANISM;
+        } else if (o instanceof GetSignMechanismResponse) {
+            return GET_SIGN_MECHANISM_RESPONSE;
+        } else if (o instanceof ConnectionPing) {
+            return CONNECTION_PING;
+        } else if (o instanceof ConnectionPong) {
+            return CONNECTION_PONG;
+        }
+
+        throw new IllegalArgumentException("Cannot serialize " + o.getClass().getName());
+    }
+
+    @Override
+    public byte[] toBinary(Object o) {
+        String manifest = manifest(o);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            write(manifest, o, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public Object fromBinary(byte[] bytes, String manifest) throws NotSerializableException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte version = in.readByte();
+
+            if (version != VERSION) {
+                throw new NotSerializableException("Unsupported version " + version + " of " + manifest);
+            }
+
+            return read(manifest, in);
+        } catch (NotSerializableException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void write(String manifest, Object o, DataOutputStream out) throws IOException {
+        switch (manifest) {
+            case SIGN:
+                Sign sign = (Sign) o;
+                writeString(sign.getKeyId(), out);
+                writeString(sign.getSignatureAlgorithmId(), out);
+                writeBytes(sign.getDigest(), out);
+                break;
+            case SIGN_RESPONSE:
+                writeBytes(((SignResponse) o).getSignature(), out);
+                break;
+            case GET_OCSP_RESPONSES:
+                writeStrings(((GetOcspResponses) o).getCertHash(), out);
+                break;
+            case GET_OCSP_RESPONSES_RESPONSE:
+                writeBase64Strings(((GetOcspResponsesResponse) o).getBase64EncodedResponses(), out);
+                break;
+            case SET_OCSP_RESPONSES:
+                SetOcspResponses setOcspResponses = (SetOcspResponses) o;
+                writeStrings(setOcspResponses.getCertHashes(), out);
+                writeBase64Strings(setOcspResponses.getBase64EncodedResponses(), out);
+                break;
+            case GET_MEMBER_SIGNING_INFO:
+                writeClientId(((GetMemberSigningInfo) o).getMemberId(), out);
+                break;
+            case MEMBER_SIGNING_INFO:
+                MemberSigningInfo memberSigningInfo = (MemberSigningInfo) o;
+                writeString(memberSigningInfo.getKeyId(), out);
+                writeCertificateInfo(memberSigningInfo.getCert(), out);
+                writeString(memberSigningInfo.getSignMechanismName(), out);
+                break;
+            case GET_TOKEN_BATCH_SIGNING_ENABLED:
+                writeString(((GetTokenBatchSigningEnabled) o).getKeyId(), out);
+                break;
+            case GET_SIGN_MECHANISM:
+                writeString(((GetSignMechanism) o).getKeyId(), out);
+                break;
+            case GET_SIGN_MECHANISM_RESPONSE:
+                writeString(((GetSignMechanismResponse) o).getSignMechanismName(), out);
+                break;
+            default:
+                // no fields
+                break;
+        }
+    }
+
+    private static Object read(String manifest, DataInputStream in) throws IOException {
+        switch (manifest) {
+            case SIGN:
+                return new Sign(readString(in), readString(in), readBytes(in));
+            case SIGN_RESPONSE:
+                return new SignResponse(readBytes(in));
+            case GET_OCSP_RESPONSES:
+                return new GetOcspResponses(readStrings(in));
+            case GET_OCSP_RESPONSES_RESPONSE:
+                return new GetOcspResponsesResponse(readBase64Strings(in));
+            case SET_OCSP_RESPONSES:
+                return new SetOcspResponses(readStrings(in), readBase64Strings(in));
+            case GET_MEMBER_SIGNING_INFO:
+                return new GetMemberSigningInfo(readClientId(in));
+            case MEMBER_SIGNING_INFO:
+                return new MemberSigningInfo(readString(in), readCertificateInfo(in), readString(in));
+            case GET_TOKEN_BATCH_SIGNING_ENABLED:
+                return new GetTokenBatchSigningEnabled(readString(in));
+            case GET_SIGN_MECHANISM:
+                return new GetSignMechanism(readString(in));
+            case GET_SIGN_MECHANISM_RESPONSE:
+                return new GetSignMechanismResponse(readString(in));
+            case CONNECTION_PING:
+                return new ConnectionPing();
+            case CONNECTION_PONG:
+                return new ConnectionPong();
+            default:
+                throw new NotSerializableException("Unknown manifest " + manifest);
+        }
+    }
+
+    private static void writeCertificateInfo(CertificateInfo cert, DataOutputStream out) throws IOException {
+        out.writeBoolean(cert != null);
+
+        if (cert != null) {
+            writeClientId(cert.getMemberId(), out);
+            out.writeBoolean(cert.isActive());
+            out.writeBoolean(cert.isSavedToConfiguration());
+            writeString(cert.getStatus(), out);
+            writeString(cert.getId(), out);
+            writeBytes(cert.getCertificateBytes(), out);
+            writeBytes(cert.getOcspBytes(), out);
+        }
+    }
+
+    private static CertificateInfo readCertificateInfo(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        return new CertificateInfo(readClientId(in), in.readBoolean(), in.readBoolean(), readString(in),
+                readString(in), readBytes(in), readBytes(in));
+    }
+
+    private static void writeClientId(ClientId clientId, DataOutputStream out) throws IOException {
+        out.writeBoolean(clientId != null);
+
+        if (clientId != null) {
+            writeString(clientId.getXRoadInstance(), out);
+            writeString(clientId.getMemberClass(), out);
+            writeString(clientId.getMemberCode(), out);
+            writeString(clientId.getSubsystemCode(), out);
+        }
+    }
+
+    private static ClientId readClientId(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+
+        return ClientId.create(readString(in), readString(in), readString(in), readString(in));
+    }
+
+    private static void writeBytes(byte[] value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        byte[] value = new byte[length];
+        in.readFully(value);
+
+        return value;
+    }
+
+    private static void writeString(String value, DataOutputStream out) throws IOException {
+        writeBytes(value != null ? value.getBytes(StandardCharsets.UTF_8) : null, out);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] value = readBytes(in);
+
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+
+    private static void writeStrings(String[] values, DataOutputStream out) throws IOException {
+        out.writeInt(values != null ? values.length : NULL_LENGTH);
+
+        if (values != null) {
+            for (String value : values) {
+                writeString(value, out);
+            }
+        }
+    }
+
+    private static String[] readStrings(DataInputStream in) throws IOException {
+        int length = in.readInt();
+
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        String[] values = new String[length];
+
+        for (int i = 0; i < length; i++) {
+            values[i] = readString(in);
+        }
+
+        return values;
+    }
+
+    private static void writeBase64Strings(String[] values, DataOutputStream out) throws IOException {
+        out.writeInt(values != null ? values.length : NULL_LENGTH);
+
+        if (values != null) {
+            for (String value : values) {
+                writeBase64String(value, out);
+            }
+        }
+    }
+
+    private static void writeBase64String(String value, DataOutputStream out) throws IOException {
+        if (value == null) {
+            out.writeByte(BASE64_NULL);
+
+            return;
+        }
+
+        byte[] decoded = decodeBase64(value);
+
+        if (decoded != null) {
+            out.writeByte(BASE64_RAW);
+            writeBytes(decoded, out);
+        } else {
+            out.writeByte(BASE64_STRING);
+            writeString(value, out);
+        }
+    }
+
+    private static byte[] decodeBase64(String value) {
+        try {
+            byte[] decoded = Base64.getDecoder().decode(value);
+
+            // Only canonical encodings can be restored as they were
+            return Base64.getEncoder().encodeToString(decoded).equals(value) ? decoded : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String[] readBase64Strings(DataInputStream in) throws IOException {
+        int length = in.readInt();
+
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+
+        String[] values = new String[length];
+
+        for (int i = 0; i < length; i++) {
+            byte type = in.readByte();
+
+            if (type == BASE64_RAW) {
+                values[i] = Base64.getEncoder().encodeToString(readBytes(in));
+            } else if (type == BASE64_STRING) {
+                values[i] = readString(in);
+            }
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,101 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.protocol;
+
+import ee.ria.xroad.common.identifier.ClientId;
+import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
+import ee.ria.xroad.signer.protocol.dto.MemberSigningInfo;
+import ee.ria.xroad.signer.protocol.message.ConnectionPing;
+import ee.ria.xroad.signer.protocol.message.GetMemberSigningInfo;
+import ee.ria.xroad.signer.protocol.message.GetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.GetOcspResponsesResponse;
+import ee.ria.xroad.signer.protocol.message.SetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.Sign;
+import ee.ria.xroad.signer.protocol.message.SignResponse;
+
+import org.junit.Test;
+
+import java.io.NotSerializableException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the binary serializer of the Signer protocol messages.
+ */
+public class SignerProtocolSerializerTest {
+
+    private static final ClientId MEMBER = ClientId.create("EE", "BUSINESS", "123", "SUB");
+
+    private final SignerProtocolSerializer serializer = new SignerProtocolSerializer();
+
+    @Test
+    public void signMessages() throws Exception {
+        assertRoundTrip(new Sign("keyId", "SHA256withRSA", new byte[] {1, 2, 3}));
+        assertRoundTrip(new Sign("keyId", "SHA256withRSA", null));
+        assertRoundTrip(new SignResponse(new byte[] {4, 5, 6}));
+    }
+
+    @Test
+    public void ocspMessages() throws Exception {
+        // the last response is not canonical base64 and is transferred as a string
+        String[] responses = {"AQID", null, "BAUG\n"};
+
+        assertRoundTrip(new GetOcspResponses(new String[] {"hash1", "hash2"}));
+        assertRoundTrip(new GetOcspResponsesResponse(responses));
+        assertRoundTrip(new SetOcspResponses(new String[] {"hash1", "hash2", "hash3"}, responses));
+    }
+
+    @Test
+    public void memberSigningInfoMessages() throws Exception {
+        CertificateInfo cert = new CertificateInfo(MEMBER, true, false, CertificateInfo.STATUS_REGISTERED, "certId",
+                new byte[] {7, 8}, null);
+
+        assertRoundTrip(new GetMemberSigningInfo(MEMBER));
+        assertRoundTrip(new MemberSigningInfo("keyId", cert, "CKM_RSA_PKCS"));
+        assertRoundTrip(new MemberSigningInfo("keyId", null, null));
+    }
+
+    @Test
+    public void messagesWithoutFields() throws Exception {
+        Object message = serializer.fromBinary(serializer.toBinary(new ConnectionPing()),
+                serializer.manifest(new ConnectionPing()));
+
+        assertTrue(message instanceof ConnectionPing);
+    }
+
+    @Test(expected = NotSerializableException.class)
+    public void unsupportedVersion() throws Exception {
+        byte[] bytes = serializer.toBinary(new SignResponse(new byte[] {1}));
+        bytes[0] = Byte.MAX_VALUE;
+
+        serializer.fromBinary(bytes, serializer.manifest(new SignResponse(null)));
+    }
+
+    private void assertRoundTrip(Object message) throws Exception {
+        assertEquals(message, serializer.fromBinary(serializer.toBinary(message), serializer.manifest(message)));
+    }
+}
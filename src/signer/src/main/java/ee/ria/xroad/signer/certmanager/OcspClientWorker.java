@@ -29,6 +29,7 @@ import ee.ria.xroad.common.CertificationServiceDiagnostics;
 import ee.ria.xroad.common.CertificationServiceStatus;
 import ee.ria.xroad.common.DiagnosticsErrorCodes;
 import ee.ria.xroad.common.OcspResponderStatus;
+import ee.ria.xroad.common.SystemProperties;
 import ee.ria.xroad.common.cert.CertChain;
 import ee.ria.xroad.common.conf.globalconf.GlobalConf;
 import ee.ria.xroad.common.conf.globalconfextension.GlobalConfExtensions;
@@ -55,15 +56,20 @@ import java.net.ConnectException;
 import java.security.PrivateKey;
 import java.security.cert.X509Certificate;
 import java.time.OffsetDateTime;
+import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
 import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
@@ -71,6 +77,7 @@ import static ee.ria.xroad.common.util.CryptoUtils.readCertificate;
 import static ee.ria.xroad.signer.protocol.ComponentNames.OCSP_CLIENT_JOB;
 import static ee.ria.xroad.signer.tokenmanager.ServiceLocator.getOcspResponseManager;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonMap;
 
 
 /**
@@ -78,6 +85,9 @@ import static java.util.Collections.emptyList;
  * server and providing the responses to the message signer.
  *
  * The certificate status is queried from the server at a fixed interval.
+ * The statuses of different certificates are queried concurrently, up to the
+ * configured parallelism, and each response is passed to the OCSP response
+ * manager as soon as it is received.
  */
 @Slf4j
 @RequiredArgsConstructor
@@ -100,11 +110,20 @@ public class OcspClientWorker extends AbstractSignerActor {
 
     private CertificationServiceDiagnostics certServDiagnostics;
 
+    private ExecutorService executor;
+
     @Override
     public void preStart() throws Exception {
         super.preStart();
         changeChecker = new GlobalConfChangeChecker();
         certServDiagnostics = new CertificationServiceDiagnostics();
+        executor = Executors.newFixedThreadPool(Math.max(1, SystemProperties.getOcspFetchParallelism()));
+    }
+
+    @Override
+    public void postStop() throws Exception {
+        executor.shutdownNow();
+        super.postStop();
     }
 
     @Override
@@ -189,7 +208,7 @@ public class OcspClientWorker extends AbstractSignerActor {
         }
     }
 
-    void handleExecute() {
+    void handleExecute() throws InterruptedException {
         log.trace("handleExecute()");
         log.info("OCSP-response refresh cycle started");
 
@@ -211,23 +230,42 @@ public class OcspClientWorker extends AbstractSignerActor {
 
         log.info("Fetching OCSP responses for {} certificates", certs.size());
 
-        Boolean failed = false;
-        Map<String, OCSPResp> statuses = new HashMap<>();
+        OcspVerifierOptions verifierOptions = new OcspVerifierOptions(
+                GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate());
+        CompletionService<Entry<X509Certificate, OCSPResp>> completionService =
+                new ExecutorCompletionService<>(executor);
 
         for (X509Certificate subject : certs) {
+            completionService.submit(() -> new SimpleImmutableEntry<>(subject,
+                    queryCertStatusOrNull(subject, verifierOptions)));
+        }
+
+        boolean failed = false;
+
+        // The statuses are passed on in the order they are received
+        for (int i = 0; i < certs.size(); i++) {
+            Entry<X509Certificate, OCSPResp> result;
+
             try {
-                OCSPResp status = queryCertStatus(subject, new OcspVerifierOptions(
-                        GlobalConfExtensions.getInstance().shouldVerifyOcspNextUpdate()));
-                if (status != null) {
-                    String subjectHash = calculateCertHexHash(subject);
-                    statuses.put(subjectHash, status);
-                } else {
-                    failed = true;
-                }
-            } catch (Exception e) {
+                result = completionService.take().get();
+            } catch (ExecutionException e) {
                 failed = true;
 
-                log.error("Error when querying certificate '{}'", subject.getSerialNumber(), e);
+                log.error("Error when querying certificate status", e.getCause());
+
+                continue;
+            }
+
+            if (result.getValue() == null) {
+                failed = true;
+
+                continue;
+            }
+
+            try {
+                updateCertStatuses(singletonMap(calculateCertHexHash(result.getKey()), result.getValue()));
+            } catch (Exception e) {
+                log.error("Error updating certificate statuses", e);
             }
         }
 
@@ -236,11 +274,15 @@ public class OcspClientWorker extends AbstractSignerActor {
         } else {
             getSender().tell(SUCCESS, getSelf());
         }
+    }
 
+    private OCSPResp queryCertStatusOrNull(X509Certificate subject, OcspVerifierOptions verifierOptions) {
         try {
-            updateCertStatuses(statuses);
+            return queryCertStatus(subject, verifierOptions);
         } catch (Exception e) {
-            log.error("Error updating certificate statuses", e);
+            log.error("Error when querying certificate '{}'", subject.getSerialNumber(), e);
+
+            return null;
         }
     }
 
@@ -349,7 +391,7 @@ public class OcspClientWorker extends AbstractSignerActor {
         }
     }
 
-    private void reportOcspDiagnostics(X509Certificate issuer, String responderURI, int statusCode,
+    private synchronized void reportOcspDiagnostics(X509Certificate issuer, String responderURI, int statusCode,
             OffsetDateTime prevUpdate, OffsetDateTime nextUpdate) {
 
         OcspResponderStatus responderStatus = new OcspResponderStatus(statusCode, responderURI, prevUpdate, nextUpdate);
@@ -28,11 +28,13 @@ package ee.ria.xroad.signer.certmanager;
 import ee.ria.xroad.signer.protocol.message.GetOcspResponses;
 import ee.ria.xroad.signer.protocol.message.GetOcspResponsesResponse;
 import ee.ria.xroad.signer.protocol.message.SetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.SubscribeOcspResponses;
 import ee.ria.xroad.signer.tokenmanager.ServiceLocator;
 import ee.ria.xroad.signer.tokenmanager.TokenManager;
 import ee.ria.xroad.signer.util.AbstractSignerActor;
 import ee.ria.xroad.signer.util.SignerUtil;
 
+import akka.actor.ActorRef;
 import akka.actor.Props;
 import lombok.RequiredArgsConstructor;
 import lombok.Value;
@@ -41,8 +43,14 @@ import org.bouncycastle.cert.ocsp.OCSPResp;
 
 import java.io.Serializable;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static ee.ria.xroad.common.util.CryptoUtils.calculateCertHexHash;
 import static ee.ria.xroad.common.util.CryptoUtils.decodeBase64;
@@ -63,6 +71,11 @@ import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
  * for the response. If the response exists in the memory cache, it is returned.
  * If the response does not exist in the memory cache, the response will be
  * loaded from disk, if it exists and is cached in memory as well.
+ *
+ * Components that keep their own copy of the OCSP responses (e.g. the proxy)
+ * subscribe to the manager. A new subscriber is sent all the responses in
+ * the cache and every subscriber is sent the responses added later, until
+ * the subscription expires.
  */
 @Slf4j
 public class OcspResponseManager extends AbstractSignerActor {
@@ -77,9 +90,15 @@ public class OcspResponseManager extends AbstractSignerActor {
         private final Date atDate;
     }
 
+    /** Size of the responses sent to a subscriber in one message, in characters. */
+    static final int MAX_MESSAGE_CHUNK_SIZE = 64 * 1024;
+
     /** Maps a certificate hash to an OCSP response. */
     private final FileBasedOcspCache responseCache = new FileBasedOcspCache();
 
+    /** Maps a subscriber to the expiry time of its subscription. */
+    private final Map<ActorRef, Long> subscribers = new ConcurrentHashMap<>();
+
     // ------------------------------------------------------------------------
 
     /**
@@ -150,6 +169,8 @@ public class OcspResponseManager extends AbstractSignerActor {
                 handleGetOcspResponses((GetOcspResponses) message);
             } else if (message instanceof SetOcspResponses) {
                 handleSetOcspResponses((SetOcspResponses) message);
+            } else if (message instanceof SubscribeOcspResponses) {
+                handleSubscribeOcspResponses((SubscribeOcspResponses) message);
             } else if (message instanceof IsCachedOcspResponse) {
                 handleIsCachedOcspResponse((IsCachedOcspResponse) message);
             } else {
@@ -171,9 +192,41 @@ public class OcspResponseManager extends AbstractSignerActor {
         log.trace("handleSetOcspResponses()");
 
         for (int i = 0; i < message.getCertHashes().length; i++) {
-            setResponse(message.getCertHashes()[i], new OCSPResp(
+            storeResponse(message.getCertHashes()[i], new OCSPResp(
                     decodeBase64(message.getBase64EncodedResponses()[i])));
         }
+
+        publish(message);
+    }
+
+    void handleSubscribeOcspResponses(SubscribeOcspResponses message) {
+        log.trace("handleSubscribeOcspResponses()");
+
+        ActorRef subscriber = getSender();
+        if (subscriber == ActorRef.noSender()) {
+            return;
+        }
+
+        long expiryTime = System.currentTimeMillis()
+                + TimeUnit.SECONDS.toMillis(message.getValiditySeconds());
+
+        if (subscribers.put(subscriber, expiryTime) == null) {
+            log.debug("Added OCSP response subscriber {}", subscriber);
+
+            List<String> certHashes = new ArrayList<>();
+            List<String> base64EncodedResponses = new ArrayList<>();
+
+            for (Entry<String, OCSPResp> e : responseCache.entrySet()) {
+                try {
+                    base64EncodedResponses.add(encodeBase64(e.getValue().getEncoded()));
+                    certHashes.add(e.getKey());
+                } catch (Exception ex) {
+                    log.error("Failed to encode OCSP response for cert {}", e.getKey(), ex);
+                }
+            }
+
+            tellInChunks(subscriber, certHashes, base64EncodedResponses, getSelf());
+        }
     }
 
     void handleIsCachedOcspResponse(IsCachedOcspResponse message)
@@ -188,6 +241,13 @@ public class OcspResponseManager extends AbstractSignerActor {
     }
 
     void setResponse(String certHash, OCSPResp response) throws Exception {
+        storeResponse(certHash, response);
+
+        publish(new SetOcspResponses(new String[] {certHash},
+                new String[] {encodeBase64(response.getEncoded())}));
+    }
+
+    private void storeResponse(String certHash, OCSPResp response) throws Exception {
         log.debug("Setting a new response to cache for cert: {}", certHash);
         try {
             responseCache.put(certHash, response);
@@ -196,6 +256,55 @@ public class OcspResponseManager extends AbstractSignerActor {
         }
     }
 
+    private void publish(SetOcspResponses message) {
+        long now = System.currentTimeMillis();
+
+        subscribers.entrySet().removeIf(e -> {
+            if (e.getValue() < now) {
+                log.debug("OCSP response subscription of {} has expired", e.getKey());
+                return true;
+            }
+
+            return false;
+        });
+
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        List<String> certHashes = Arrays.asList(message.getCertHashes());
+        List<String> base64EncodedResponses = Arrays.asList(message.getBase64EncodedResponses());
+
+        // Called also from the response handlers, the subscribers accept the responses only from this actor
+        ActorRef self = getSelf();
+
+        subscribers.keySet().forEach(subscriber -> tellInChunks(subscriber, certHashes, base64EncodedResponses,
+                self));
+    }
+
+    /**
+     * Sends the responses as SetOcspResponses messages that stay well below the maximum remote message size.
+     * A message is closed by the response that makes it reach {@link #MAX_MESSAGE_CHUNK_SIZE}.
+     */
+    static void tellInChunks(ActorRef subscriber, List<String> certHashes,
+            List<String> base64EncodedResponses, ActorRef sender) {
+        int start = 0;
+        int chunkSize = 0;
+
+        for (int i = 0; i < certHashes.size(); i++) {
+            chunkSize += base64EncodedResponses.get(i).length();
+
+            if (chunkSize >= MAX_MESSAGE_CHUNK_SIZE || i == certHashes.size() - 1) {
+                subscriber.tell(new SetOcspResponses(
+                        certHashes.subList(start, i + 1).toArray(new String[0]),
+                        base64EncodedResponses.subList(start, i + 1).toArray(new String[0])), sender);
+
+                start = i + 1;
+                chunkSize = 0;
+            }
+        }
+    }
+
     @RequiredArgsConstructor
     private static class GetOcspResponseHandler extends AbstractSignerActor {
 
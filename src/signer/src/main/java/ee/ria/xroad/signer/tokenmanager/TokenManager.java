@@ -38,11 +38,13 @@ import ee.ria.xroad.signer.protocol.dto.KeyUsageInfo;
 import ee.ria.xroad.signer.protocol.dto.TokenInfo;
 import ee.ria.xroad.signer.protocol.dto.TokenInfoAndKeyId;
 import ee.ria.xroad.signer.protocol.dto.TokenStatusInfo;
+import ee.ria.xroad.signer.tokenmanager.TokenSnapshot.CertEntry;
+import ee.ria.xroad.signer.tokenmanager.TokenSnapshot.CertRequestEntry;
+import ee.ria.xroad.signer.tokenmanager.TokenSnapshot.KeyEntry;
 import ee.ria.xroad.signer.tokenmanager.merge.MergeOntoFileTokensStrategy;
 import ee.ria.xroad.signer.tokenmanager.merge.TokenMergeAddedCertificatesListener;
 import ee.ria.xroad.signer.tokenmanager.merge.TokenMergeStrategy;
 import ee.ria.xroad.signer.tokenmanager.merge.TokenMergeStrategy.MergeResult;
-import ee.ria.xroad.signer.tokenmanager.module.SoftwareModuleType;
 import ee.ria.xroad.signer.tokenmanager.token.TokenType;
 import ee.ria.xroad.signer.util.SignerUtil;
 import ee.ria.xroad.signer.util.TokenAndKey;
@@ -54,10 +56,10 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 
 import static ee.ria.xroad.common.ErrorCodes.X_WRONG_CERT_USAGE;
 import static ee.ria.xroad.signer.util.ExceptionHelper.certWithHashNotFound;
@@ -75,6 +77,12 @@ public final class TokenManager {
 
     private static volatile List<Token> currentTokens = new ArrayList<>();
 
+    // Immutable view of currentTokens, republished after every change while holding the class lock.
+    // Readers use it without locking. OCSP response updates only mark it stale (null), it is then
+    // republished once by the next reader, so that a refresh of many responses does not rebuild it
+    // for each response.
+    private static volatile TokenSnapshot snapshot = TokenSnapshot.EMPTY;
+
     private static boolean initialized;
 
     // configure the implementation somewhere else if multiple implementations created
@@ -95,7 +103,10 @@ public final class TokenManager {
             log.error("Failed to load token conf", e);
         }
 
-        currentTokens = new ArrayList<>(TokenConf.getInstance().getTokens());
+        synchronized (TokenManager.class) {
+            currentTokens = new ArrayList<>(TokenConf.getInstance().getTokens());
+            publishSnapshot();
+        }
 
         initialized = true;
     }
@@ -136,6 +147,7 @@ public final class TokenManager {
             synchronized (TokenManager.class) {
                 result = mergeStrategy.merge(fileTokens, currentTokens);
                 currentTokens = result.getResultTokens();
+                publishSnapshot();
             }
             if (listener != null) {
                 listener.mergeDone(result.getAddedCertificates());
@@ -154,11 +166,8 @@ public final class TokenManager {
     /**
      * @return list of tokens
      */
-    public static synchronized List<TokenInfo> listTokens() {
-        return unmodifiableList(
-                currentTokens.stream()
-                        .map(t -> t.toDTO())
-                        .collect(Collectors.toList()));
+    public static List<TokenInfo> listTokens() {
+        return snapshot().getTokens();
     }
 
     /**
@@ -187,6 +196,7 @@ public final class TokenManager {
         token.setAvailable(true);
 
         currentTokens.add(token);
+        publishSnapshot();
 
         return token.toDTO();
     }
@@ -209,13 +219,10 @@ public final class TokenManager {
      * @param tokenId the token id
      * @return the token info DTO for the token id or null of not found
      */
-    public static synchronized TokenInfo getTokenInfo(String tokenId) {
+    public static TokenInfo getTokenInfo(String tokenId) {
         log.trace("getTokenInfo({})", tokenId);
 
-        return currentTokens.stream()
-                .filter(t -> t.getId().equals(tokenId))
-                .map(t -> t.toDTO())
-                .findFirst().orElse(null);
+        return snapshot().getToken(tokenId);
     }
 
     /**
@@ -223,82 +230,77 @@ public final class TokenManager {
      * @return the token info DTO for the token
      * @throws Exception if key was not found
      */
-    public static synchronized TokenInfo findTokenInfoForKeyId(String keyId) {
+    public static TokenInfo findTokenInfoForKeyId(String keyId) {
         log.trace("getTokenInfoForKeyId({})", keyId);
-        String tokenId = findTokenIdForKeyId(keyId);
-        return getTokenInfo(tokenId);
+
+        return findKeyEntry(keyId).getToken();
     }
 
     /**
      * @param keyId the key id
      * @return the token and key or throws exception if not found
      */
-    public static synchronized TokenAndKey findTokenAndKey(String keyId) {
+    public static TokenAndKey findTokenAndKey(String keyId) {
         log.trace("findTokenAndKey({})", keyId);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
-                (t, k) -> new TokenAndKey(t.getId(), k.toDTO()))
-                .orElseThrow(() -> keyNotFound(keyId));
+        KeyEntry entry = findKeyEntry(keyId);
+
+        return new TokenAndKey(entry.getToken().getId(), entry.getKey());
     }
 
     /**
      * @param certHash the certificate hash
      * @return the tokenInfo and key id, or throws exception if not found
      */
-    public static synchronized TokenInfoAndKeyId findTokenAndKeyIdForCertHash(String certHash) {
+    public static TokenInfoAndKeyId findTokenAndKeyIdForCertHash(String certHash) {
         log.trace("findTokenAndKeyIdForCertHash({})", certHash);
 
-        String keyId = forCert((k, c) -> certHash.equals(c.getHash()),
-                (k, c) -> k.getId())
-                .orElseThrow(() -> certWithHashNotFound(certHash));
+        CertEntry entry = snapshot().getCertForHash(certHash);
+        if (entry == null) {
+            throw certWithHashNotFound(certHash);
+        }
 
-        return forKey((t, k) -> k.getId().equals(keyId),
-                (t, k) -> new TokenInfoAndKeyId(t.toDTO(), keyId))
-                .orElseThrow(() -> keyNotFound(keyId));
+        return new TokenInfoAndKeyId(entry.getToken(), entry.getKey().getId());
     }
 
     /**
      * @param certRequestId the certificate request id
      * @return the tokenInfo and key id, or throws exception if not found
      */
-    public static synchronized TokenInfoAndKeyId findTokenAndKeyIdForCertRequestId(String certRequestId) {
+    public static TokenInfoAndKeyId findTokenAndKeyIdForCertRequestId(String certRequestId) {
         log.trace("findTokenAndKeyIdForCertRequestId({})", certRequestId);
 
-        String keyId = forCertRequest((k, c) -> certRequestId.equals(c.getId()),
-                (k, c) -> k.getId())
-                .orElseThrow(() -> csrWithIdNotFound(certRequestId));
+        CertRequestEntry entry = snapshot().getCertRequest(certRequestId);
+        if (entry == null) {
+            throw csrWithIdNotFound(certRequestId);
+        }
 
-        return forKey((t, k) -> k.getId().equals(keyId),
-                (t, k) -> new TokenInfoAndKeyId(t.toDTO(), keyId))
-                .orElseThrow(() -> keyNotFound(keyId));
+        return new TokenInfoAndKeyId(entry.getToken(), entry.getKey().getId());
     }
 
     /**
      * @param keyId the key id
      * @return the token id for the key id or throws exception if not found
      */
-    public static synchronized String findTokenIdForKeyId(String keyId) {
+    public static String findTokenIdForKeyId(String keyId) {
         log.trace("findTokenIdForKeyId({})", keyId);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
-                (t, k) -> t.getId()).orElseThrow(() -> keyNotFound(keyId));
+        return findKeyEntry(keyId).getToken().getId();
     }
 
     /**
      * @return the software token id
      */
-    public static synchronized String getSoftwareTokenId() {
-        return forToken(t -> t.getType().equals(SoftwareModuleType.TYPE),
-                t -> t.getId()).orElse(null);
+    public static String getSoftwareTokenId() {
+        return snapshot().getSoftwareTokenId();
     }
 
     /**
      * @param tokenId the token id
      * @return the module id for the token id or null if not found
      */
-    public static synchronized String getModuleId(String tokenId) {
-        return forToken(t -> t.getId().equals(tokenId),
-                t -> t.getModuleId()).orElse(null);
+    public static String getModuleId(String tokenId) {
+        return snapshot().getModuleId(tokenId);
     }
 
     /**
@@ -318,44 +320,45 @@ public final class TokenManager {
      * @param keyId the key id
      * @return the key info for the key id or null if not found
      */
-    public static synchronized KeyInfo getKeyInfo(String keyId) {
+    public static KeyInfo getKeyInfo(String keyId) {
         log.trace("getKeyInfo({})", keyId);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
-                (t, k) -> k.toDTO()).orElse(null);
+        KeyEntry entry = snapshot().getKey(keyId);
+
+        return entry != null ? entry.getKey() : null;
     }
 
     /**
      * @param clientId the client id
      * @return the list of keys for the given client id
      */
-    public static synchronized List<KeyInfo> getKeyInfo(ClientId clientId) {
+    public static List<KeyInfo> getKeyInfo(ClientId clientId) {
         log.trace("getKeyInfo({})", clientId);
 
         List<KeyInfo> keyInfo = new ArrayList<>();
 
-        for (Token token : currentTokens) {
-            if (token.isInActive()) {
+        for (TokenInfo token : snapshot().getTokens()) {
+            if (!token.isActive() || !token.isAvailable()) {
                 // Ignore inactive (not usable) tokens
                 continue;
             }
 
-            for (Key key : token.getKeys()) {
-                if (!key.isValidForSigning()) {
+            for (KeyInfo key : token.getKeyInfo()) {
+                if (!key.isAvailable() || !key.isForSigning()) {
                     // Ignore authentication keys
                     continue;
                 }
 
-                for (Cert cert : key.getCerts()) {
-                    if (cert.isInvalid()) {
+                for (CertificateInfo cert : key.getCerts()) {
+                    if (!cert.isActive() || cert.getMemberId() == null) {
                         // Ignore inactive and invalid certificates
                         continue;
                     }
 
-                    if (certBelongsToMember(cert.toDTO(), clientId)) {
+                    if (certBelongsToMember(cert, clientId)) {
                         log.debug("Found key '{}' for client '{}'",
                                 key.getId(), cert.getMemberId());
-                        keyInfo.add(key.toDTO());
+                        keyInfo.add(key);
                     }
                 }
             }
@@ -382,49 +385,45 @@ public final class TokenManager {
      * @param certId the certificate id
      * @return the certificate info for the certificate id or null if not found
      */
-    public static synchronized CertificateInfo getCertificateInfo(
-            String certId) {
+    public static CertificateInfo getCertificateInfo(String certId) {
         log.trace("getCertificateInfo({})", certId);
 
-        return forCert((k, c) -> c.getId().equals(certId), (k, c) -> c.toDTO())
-                .orElse(null);
+        CertEntry entry = snapshot().getCert(certId);
+
+        return entry != null ? entry.getCert() : null;
     }
 
     /**
      * @param certHash the certificate hash
      * @return the certificate info for the certificate hash or null
      */
-    public static synchronized CertificateInfo getCertificateInfoForCertHash(
-            String certHash) {
+    public static CertificateInfo getCertificateInfoForCertHash(String certHash) {
         log.trace("getCertificateInfoForCertHash({})", certHash);
 
-        return forCert((k, c) -> certHash.equals(c.getHash()),
-                (k, c) -> c.toDTO()).orElse(null);
+        CertEntry entry = snapshot().getCertForHash(certHash);
+
+        return entry != null ? entry.getCert() : null;
     }
 
     /**
      * @param certHash the certificate hash
      * @return the certificate for the certificate hash or null
      */
-    public static synchronized X509Certificate getCertificateForCertHash(
-            String certHash) {
+    public static X509Certificate getCertificateForCertHash(String certHash) {
         log.trace("getCertificateForCertHash({})", certHash);
 
-        return forCert((k, c) -> certHash.equals(c.getHash()),
-                (k, c) -> c.getCertificate()).orElse(null);
+        CertEntry entry = snapshot().getCertForHash(certHash);
+
+        return entry != null ? entry.getCertificate() : null;
     }
 
     /**
      * @return all certificates
      */
-    public static synchronized List<CertificateInfo> getAllCerts() {
+    public static List<CertificateInfo> getAllCerts() {
         log.trace("getAllCerts()");
 
-        return currentTokens.stream()
-                .flatMap(t -> t.getKeys().stream())
-                .flatMap(k -> k.getCerts().stream())
-                .map(c -> c.toDTO())
-                .collect(Collectors.toList());
+        return new ArrayList<>(snapshot().getAllCerts());
     }
 
     /**
@@ -437,11 +436,19 @@ public final class TokenManager {
                                                     OCSPResp response) {
         log.trace("setOcspResponse({})", certHash);
 
-        forCert((k, c) -> certHash.equals(c.getHash()),
+        boolean changed = forCert((k, c) -> certHash.equals(c.getHash()),
                 (k, c) -> {
+                    if (Objects.equals(c.getOcspResponse(), response)) {
+                        return false;
+                    }
+
                     c.setOcspResponse(response);
-                    return null;
-                });
+                    return true;
+                }).orElse(false);
+
+        if (changed) {
+            snapshot = null;
+        }
     }
 
     /**
@@ -449,49 +456,51 @@ public final class TokenManager {
      * @param memberId the member id
      * @return the certificate request info or null if not found
      */
-    public static synchronized CertRequestInfo getCertRequestInfo(String keyId,
-                                                                  ClientId memberId) {
+    public static CertRequestInfo getCertRequestInfo(String keyId,
+                                                     ClientId memberId) {
         log.trace("getCertRequestInfo({}, {})", keyId, memberId);
 
-        Key key = findKey(keyId);
+        KeyInfo key = findKeyEntry(keyId).getKey();
         return key.getCertRequests().stream()
                 .filter(c -> key.getUsage() == KeyUsageInfo.AUTHENTICATION
                         || memberId.equals(c.getMemberId()))
-                .map(c -> c.toDTO()).findFirst().orElse(null);
+                .findFirst().orElse(null);
     }
 
     /**
      * @param certReqId cert request id
      * @return the certificate request info or null if not found
      */
-    public static synchronized CertRequestInfo getCertRequestInfo(String certReqId) {
+    public static CertRequestInfo getCertRequestInfo(String certReqId) {
         log.trace("getCertRequestInfo({})", certReqId);
 
-        return forCertRequest((k, c) -> certReqId.equals(c.getId()),
-                (k, c) -> c.toDTO())
-                .orElse(null);
+        CertRequestEntry entry = snapshot().getCertRequest(certReqId);
+
+        return entry != null ? entry.getCertRequest() : null;
     }
 
     /**
      * @param certHash the certificate hash
      * @return key info for the certificate hash
      */
-    public static synchronized KeyInfo getKeyInfoForCertHash(String certHash) {
+    public static KeyInfo getKeyInfoForCertHash(String certHash) {
         log.trace("getKeyInfoForCertHash({})", certHash);
 
-        return forCert((k, c) -> certHash.equals(c.getHash()),
-                (k, c) -> k.toDTO()).orElse(null);
+        CertEntry entry = snapshot().getCertForHash(certHash);
+
+        return entry != null ? entry.getKey() : null;
     }
 
     /**
      * @param certId the certificate id
      * @return key info for certificate id
      */
-    public static synchronized KeyInfo getKeyInfoForCertId(String certId) {
+    public static KeyInfo getKeyInfoForCertId(String certId) {
         log.trace("getKeyInfoForCertId({})", certId);
 
-        return forCert((k, c) -> c.getId().equals(certId),
-                (k, c) -> k.toDTO()).orElse(null);
+        CertEntry entry = snapshot().getCert(certId);
+
+        return entry != null ? entry.getKey() : null;
     }
 
     /**
@@ -509,20 +518,20 @@ public final class TokenManager {
      * @param tokenId the token id
      * @return true if token is available
      */
-    public static synchronized boolean isTokenAvailable(String tokenId) {
+    public static boolean isTokenAvailable(String tokenId) {
         log.trace("isTokenAvailable({})", tokenId);
 
-        return findToken(tokenId).isAvailable();
+        return findTokenInfo(tokenId).isAvailable();
     }
 
     /**
      * @param tokenId the token id
      * @return true if token is active (logged in)
      */
-    public static synchronized boolean isTokenActive(String tokenId) {
+    public static boolean isTokenActive(String tokenId) {
         log.trace("isTokenActive({})", tokenId);
 
-        return findToken(tokenId).isActive();
+        return findTokenInfo(tokenId).isActive();
     }
 
     /**
@@ -540,6 +549,7 @@ public final class TokenManager {
         Token token = findToken(tokenId);
         token.setAvailable(available);
         token.setModuleId(tokenType.getModuleType());
+        publishSnapshot();
     }
 
     /**
@@ -552,6 +562,7 @@ public final class TokenManager {
         log.trace("setTokenAvailable({}, {})", tokenId, available);
 
         findToken(tokenId).setAvailable(available);
+        publishSnapshot();
     }
 
     /**
@@ -565,6 +576,7 @@ public final class TokenManager {
         log.trace("setTokenActive({}, {})", tokenId, active);
 
         findToken(tokenId).setActive(active);
+        publishSnapshot();
     }
 
     /**
@@ -578,16 +590,17 @@ public final class TokenManager {
         log.trace("setTokenFriendlyName({}, {})", tokenId, friendlyName);
 
         findToken(tokenId).setFriendlyName(friendlyName);
+        publishSnapshot();
     }
 
     /**
      * @param tokenId the token if
      * @return the token status info
      */
-    public static synchronized TokenStatusInfo getTokenStatus(String tokenId) {
+    public static TokenStatusInfo getTokenStatus(String tokenId) {
         log.trace("getTokenStatus({})", tokenId);
 
-        return findToken(tokenId).getStatus();
+        return findTokenInfo(tokenId).getStatus();
     }
 
     /**
@@ -601,6 +614,7 @@ public final class TokenManager {
         log.trace("setTokenStatus({}, {})", tokenId, status);
 
         findToken(tokenId).setStatus(status);
+        publishSnapshot();
     }
 
     /**
@@ -614,16 +628,17 @@ public final class TokenManager {
         log.trace("setKeyAvailable({}, {})", keyId, available);
 
         findKey(keyId).setAvailable(available);
+        publishSnapshot();
     }
 
     /**
      * @param keyId the key id
      * @return true if key is available
      */
-    public static synchronized boolean isKeyAvailable(String keyId) {
+    public static boolean isKeyAvailable(String keyId) {
         log.trace("isKeyAvailable()");
 
-        return findKey(keyId).isAvailable();
+        return findKeyEntry(keyId).getKey().isAvailable();
     }
 
     /**
@@ -637,6 +652,7 @@ public final class TokenManager {
         log.trace("setKeyFriendlyName({}, {})", keyId, friendlyName);
 
         findKey(keyId).setFriendlyName(friendlyName);
+        publishSnapshot();
     }
 
     /**
@@ -649,6 +665,7 @@ public final class TokenManager {
         log.trace("setKeyLabel({}, {})", keyId, label);
 
         findKey(keyId).setLabel(label);
+        publishSnapshot();
     }
 
     /**
@@ -662,6 +679,7 @@ public final class TokenManager {
         log.trace("setKeyUsage({}, {})", keyId, keyUsage);
 
         findKey(keyId).setUsage(keyUsage);
+        publishSnapshot();
     }
 
     /**
@@ -681,6 +699,7 @@ public final class TokenManager {
         key.setPublicKey(publicKeyBase64);
 
         token.addKey(key);
+        publishSnapshot();
 
         return key.toDTO();
     }
@@ -694,8 +713,11 @@ public final class TokenManager {
     public static synchronized boolean removeKey(String keyId) {
         log.trace("removeKey({})", keyId);
 
-        return forKey((t, k) -> k.getId().equals(keyId),
+        boolean removed = forKey((t, k) -> k.getId().equals(keyId),
                 (t, k) -> t.getKeys().remove(k)).orElse(false);
+        publishSnapshot();
+
+        return removed;
     }
 
     /**
@@ -709,6 +731,7 @@ public final class TokenManager {
         log.trace("setPublicKey({}, {})", keyId, publicKeyBase64);
 
         findKey(keyId).setPublicKey(publicKeyBase64);
+        publishSnapshot();
     }
 
     /**
@@ -726,6 +749,7 @@ public final class TokenManager {
         cert.setCertificate(certBytes);
 
         key.addCert(cert);
+        publishSnapshot();
     }
 
     /**
@@ -749,6 +773,7 @@ public final class TokenManager {
         cert.setStatus(certInfo.getStatus());
 
         key.addCert(cert);
+        publishSnapshot();
     }
 
     /**
@@ -762,6 +787,7 @@ public final class TokenManager {
         log.trace("setCertActive({}, {})", certId, active);
 
         findCert(certId).setActive(active);
+        publishSnapshot();
     }
 
     /**
@@ -775,6 +801,7 @@ public final class TokenManager {
         log.trace("setCertStatus({}, {})", certId, status);
 
         findCert(certId).setStatus(status);
+        publishSnapshot();
     }
 
     /**
@@ -786,8 +813,11 @@ public final class TokenManager {
     public static synchronized boolean removeCert(String certId) {
         log.trace("removeCert({})", certId);
 
-        return forCert((k, c) -> c.getId().equals(certId),
+        boolean removed = forCert((k, c) -> c.getId().equals(certId),
                 (k, c) -> k.getCerts().remove(c)).orElse(false);
+        publishSnapshot();
+
+        return removed;
     }
 
     /**
@@ -813,6 +843,7 @@ public final class TokenManager {
         }
 
         key.setUsage(keyUsage);
+        publishSnapshot();
 
         for (CertRequest certRequest : key.getCertRequests()) {
             ClientId crMember = certRequest.getMemberId();
@@ -830,6 +861,7 @@ public final class TokenManager {
 
         String certId = SignerUtil.randomId();
         key.addCertRequest(new CertRequest(certId, memberId, subjectName));
+        publishSnapshot();
 
         log.info("Added new certificate request (memberId: {}, "
                         + "subjectId: {}) under key {}",
@@ -847,7 +879,7 @@ public final class TokenManager {
     public static synchronized String removeCertRequest(String certReqId) {
         log.trace("removeCertRequest({})", certReqId);
 
-        return forCertRequest((k, c) -> c.getId().equals(certReqId),
+        String keyId = forCertRequest((k, c) -> c.getId().equals(certReqId),
                 (k, c) -> {
                     if (!k.getCertRequests().remove(c)) {
                         return null;
@@ -855,6 +887,9 @@ public final class TokenManager {
 
                     return k.getId();
                 }).orElse(null);
+        publishSnapshot();
+
+        return keyId;
     }
 
     /**
@@ -865,16 +900,22 @@ public final class TokenManager {
      */
     public static synchronized void setTokenInfo(String tokenId, Map<String, String> info) {
         findToken(tokenId).setInfo(info);
+        publishSnapshot();
     }
 
     /**
      * @param tokenId the token id
      * @return true if batch signing is enabled for a token
      */
-    public static synchronized boolean isBatchSigningEnabled(String tokenId) {
+    public static boolean isBatchSigningEnabled(String tokenId) {
         log.trace("isBatchSigningEnabled({})", tokenId);
 
-        return findToken(tokenId).isBatchSigningEnabled();
+        TokenSnapshot current = snapshot();
+        if (current.getToken(tokenId) == null) {
+            throw tokenNotFound(tokenId);
+        }
+
+        return current.isBatchSigningEnabled(tokenId);
     }
 
     // ------------------------------------------------------------------------
@@ -935,6 +976,34 @@ public final class TokenManager {
         return Optional.empty();
     }
 
+    private static KeyEntry findKeyEntry(String keyId) {
+        KeyEntry entry = snapshot().getKey(keyId);
+        if (entry == null) {
+            throw keyNotFound(keyId);
+        }
+
+        return entry;
+    }
+
+    // Must be called while holding the class lock, after every change to the tokens
+    private static void publishSnapshot() {
+        snapshot = new TokenSnapshot(currentTokens);
+    }
+
+    private static TokenSnapshot snapshot() {
+        TokenSnapshot current = snapshot;
+
+        return current != null ? current : publishStaleSnapshot();
+    }
+
+    private static synchronized TokenSnapshot publishStaleSnapshot() {
+        if (snapshot == null) {
+            publishSnapshot();
+        }
+
+        return snapshot;
+    }
+
     private static Token findToken(String tokenId) {
         log.trace("findToken({})", tokenId);
 
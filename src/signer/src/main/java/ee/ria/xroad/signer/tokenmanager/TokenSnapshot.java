@@ -0,0 +1,191 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.tokenmanager;
+
+import ee.ria.xroad.signer.model.Cert;
+import ee.ria.xroad.signer.model.Key;
+import ee.ria.xroad.signer.model.Token;
+import ee.ria.xroad.signer.protocol.dto.CertRequestInfo;
+import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
+import ee.ria.xroad.signer.protocol.dto.KeyInfo;
+import ee.ria.xroad.signer.protocol.dto.TokenInfo;
+import ee.ria.xroad.signer.tokenmanager.module.SoftwareModuleType;
+
+import lombok.Getter;
+import lombok.Value;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.util.Collections.unmodifiableList;
+
+/**
+ * Immutable view of the tokens, their keys and certificates at one point in time. Holds the DTOs of
+ * all tokens together with indexes for looking them up by id or certificate hash. A new snapshot is
+ * created by {@link TokenManager} after every change, or on the next read after OCSP response updates,
+ * so that readers do not need to take a lock.
+ */
+final class TokenSnapshot {
+
+    static final TokenSnapshot EMPTY = new TokenSnapshot(new ArrayList<>());
+
+    @Getter
+    private final List<TokenInfo> tokens;
+
+    @Getter
+    private final List<CertificateInfo> allCerts;
+
+    @Getter
+    private final String softwareTokenId;
+
+    private final Map<String, TokenInfo> tokensById = new HashMap<>();
+    private final Map<String, String> moduleIdsByTokenId = new HashMap<>();
+    private final Set<String> batchSigningTokenIds = new HashSet<>();
+    private final Map<String, KeyEntry> keysById = new HashMap<>();
+    private final Map<String, CertEntry> certsById = new HashMap<>();
+    private final Map<String, CertEntry> certsByHash = new HashMap<>();
+    private final Map<String, CertRequestEntry> certRequestsById = new HashMap<>();
+
+    /**
+     * Creates a snapshot of the given tokens. Must be called while holding the lock that guards
+     * modifications to the tokens.
+     * @param currentTokens the tokens
+     */
+    TokenSnapshot(List<Token> currentTokens) {
+        List<TokenInfo> tokenInfos = new ArrayList<>(currentTokens.size());
+        List<CertificateInfo> certInfos = new ArrayList<>();
+        String softwareToken = null;
+
+        for (Token token : currentTokens) {
+            TokenInfo tokenInfo = token.toDTO();
+            tokenInfos.add(tokenInfo);
+
+            tokensById.putIfAbsent(token.getId(), tokenInfo);
+            moduleIdsByTokenId.putIfAbsent(token.getId(), token.getModuleId());
+
+            if (token.isBatchSigningEnabled()) {
+                batchSigningTokenIds.add(token.getId());
+            }
+
+            if (softwareToken == null && SoftwareModuleType.TYPE.equals(token.getType())) {
+                softwareToken = token.getId();
+            }
+
+            // DTOs are created in the same order as the model objects
+            for (int i = 0; i < token.getKeys().size(); i++) {
+                Key key = token.getKeys().get(i);
+                KeyInfo keyInfo = tokenInfo.getKeyInfo().get(i);
+
+                keysById.putIfAbsent(key.getId(), new KeyEntry(tokenInfo, keyInfo));
+
+                for (int j = 0; j < key.getCerts().size(); j++) {
+                    Cert cert = key.getCerts().get(j);
+                    CertificateInfo certInfo = keyInfo.getCerts().get(j);
+                    CertEntry entry = new CertEntry(tokenInfo, keyInfo, certInfo, cert.getCertificate());
+
+                    certInfos.add(certInfo);
+                    certsById.putIfAbsent(cert.getId(), entry);
+
+                    if (cert.getHash() != null) {
+                        certsByHash.putIfAbsent(cert.getHash(), entry);
+                    }
+                }
+
+                for (CertRequestInfo certRequestInfo : keyInfo.getCertRequests()) {
+                    certRequestsById.putIfAbsent(certRequestInfo.getId(),
+                            new CertRequestEntry(tokenInfo, keyInfo, certRequestInfo));
+                }
+            }
+        }
+
+        this.tokens = unmodifiableList(tokenInfos);
+        this.allCerts = unmodifiableList(certInfos);
+        this.softwareTokenId = softwareToken;
+    }
+
+    TokenInfo getToken(String tokenId) {
+        return tokensById.get(tokenId);
+    }
+
+    String getModuleId(String tokenId) {
+        return moduleIdsByTokenId.get(tokenId);
+    }
+
+    boolean isBatchSigningEnabled(String tokenId) {
+        return batchSigningTokenIds.contains(tokenId);
+    }
+
+    KeyEntry getKey(String keyId) {
+        return keysById.get(keyId);
+    }
+
+    CertEntry getCert(String certId) {
+        return certsById.get(certId);
+    }
+
+    CertEntry getCertForHash(String certHash) {
+        return certsByHash.get(certHash);
+    }
+
+    CertRequestEntry getCertRequest(String certRequestId) {
+        return certRequestsById.get(certRequestId);
+    }
+
+    /**
+     * Key together with the token it belongs to.
+     */
+    @Value
+    static class KeyEntry {
+        private final TokenInfo token;
+        private final KeyInfo key;
+    }
+
+    /**
+     * Certificate together with the key and token it belongs to.
+     */
+    @Value
+    static class CertEntry {
+        private final TokenInfo token;
+        private final KeyInfo key;
+        private final CertificateInfo cert;
+        private final X509Certificate certificate;
+    }
+
+    /**
+     * Certificate request together with the key and token it belongs to.
+     */
+    @Value
+    static class CertRequestEntry {
+        private final TokenInfo token;
+        private final KeyInfo key;
+        private final CertRequestInfo certRequest;
+    }
+}
@@ -174,16 +174,28 @@ public abstract class AbstractTokenWorker extends AbstractUpdateableActor {
     }
 
     private void handleCalculateSignature(CalculateSignature signRequest) throws Exception {
+        sendResponse(calculateSignature(signRequest));
+    }
+
+    /**
+     * Calculates the signature for the request. Errors are returned as part of the result.
+     * May be called outside of the actor thread if the implementation of {@link #sign} permits it.
+     * @param signRequest the signing request
+     * @return the calculated signature
+     */
+    protected CalculatedSignature calculateSignature(CalculateSignature signRequest) {
         try {
             byte data[] = SignerUtil.createDataToSign(signRequest.getDigest(), signRequest.getSignatureAlgorithmId());
 
             byte[] signature = sign(signRequest.getKeyId(), signRequest.getSignatureAlgorithmId(), data);
-            sendResponse(new CalculatedSignature(signRequest, signature, null));
+
+            return new CalculatedSignature(signRequest, signature, null);
         } catch (Exception e) { // catch-log-rethrow
             log.error("Error while signing with key '{}'", signRequest.getKeyId(), e);
 
             CodedException tr = translateError(customizeException(e)).withPrefix(X_CANNOT_SIGN);
-            sendResponse(new CalculatedSignature(signRequest, null, tr));
+
+            return new CalculatedSignature(signRequest, null, tr);
         }
     }
 
@@ -0,0 +1,256 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.certmanager;
+
+import ee.ria.xroad.common.OcspTestUtils;
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.common.TestCertUtil;
+import ee.ria.xroad.signer.protocol.message.SetOcspResponses;
+import ee.ria.xroad.signer.protocol.message.SubscribeOcspResponses;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.testkit.TestActorRef;
+import akka.testkit.javadsl.TestKit;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import static ee.ria.xroad.common.util.CryptoUtils.encodeBase64;
+import static ee.ria.xroad.signer.certmanager.OcspResponseManager.MAX_MESSAGE_CHUNK_SIZE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests how the OCSP response manager sends the responses to its subscribers.
+ */
+public class OcspResponseManagerTest {
+
+    private static final Duration NO_MESSAGE = Duration.ofMillis(100);
+
+    private static ActorSystem actorSystem;
+    private static String base64EncodedResponse;
+
+    @Rule
+    public TemporaryFolder ocspCacheDir = new TemporaryFolder();
+
+    private ActorRef manager;
+
+    /**
+     * Creates the OCSP response used by the tests.
+     * @throws Exception if an error occurs
+     */
+    @BeforeClass
+    public static void setUpBeforeClass() throws Exception {
+        actorSystem = ActorSystem.create("OcspResponseManagerTest");
+
+        X509Certificate issuer = TestCertUtil.getCertChainCert("root_ca.p12");
+        PrivateKey signerKey = TestCertUtil.getCertChainKey("root_ca.p12");
+        X509Certificate subject = TestCertUtil.getCertChainCert("user_0.p12");
+
+        Date thisUpdate = Date.from(Instant.now().plus(1, ChronoUnit.DAYS));
+        base64EncodedResponse = encodeBase64(OcspTestUtils.createOCSPResponse(subject, issuer, issuer, signerKey,
+                CertificateStatus.GOOD, thisUpdate, null).getEncoded());
+    }
+
+    @AfterClass
+    public static void tearDownAfterClass() {
+        TestKit.shutdownActorSystem(actorSystem);
+        System.clearProperty(SystemProperties.OCSP_CACHE_PATH);
+    }
+
+    @Before
+    public void setUp() {
+        System.setProperty(SystemProperties.OCSP_CACHE_PATH, ocspCacheDir.getRoot().getAbsolutePath());
+
+        manager = TestActorRef.create(actorSystem, Props.create(OcspResponseManager.class));
+    }
+
+    /**
+     * A new subscriber gets the cached responses, a renewal of the subscription does not.
+     */
+    @Test
+    public void sendCachedResponsesToNewSubscriber() {
+        manager.tell(setOcspResponses("a", "b"), ActorRef.noSender());
+
+        TestKit subscriber = subscribe(60);
+
+        SetOcspResponses snapshot = subscriber.expectMsgClass(SetOcspResponses.class);
+        assertEquals(manager, subscriber.getLastSender());
+        assertEquals(Arrays.asList("a", "b"), sorted(snapshot.getCertHashes()));
+
+        manager.tell(new SubscribeOcspResponses(60), subscriber.getRef());
+
+        subscriber.expectNoMessage(NO_MESSAGE);
+    }
+
+    /**
+     * Subscribers get the responses stored later until the subscription expires.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    public void publishUntilSubscriptionExpires() throws Exception {
+        TestKit expiring = subscribe(0);
+        TestKit renewed = subscribe(0);
+
+        // Renewal extends the subscription
+        manager.tell(new SubscribeOcspResponses(60), renewed.getRef());
+
+        Thread.sleep(10);
+
+        manager.tell(setOcspResponses("a"), ActorRef.noSender());
+
+        SetOcspResponses update = renewed.expectMsgClass(SetOcspResponses.class);
+        assertEquals(manager, renewed.getLastSender());
+        assertEquals(Collections.singletonList("a"), sorted(update.getCertHashes()));
+
+        expiring.expectNoMessage(NO_MESSAGE);
+
+        // After the expiry, a subscription is new again
+        manager.tell(new SubscribeOcspResponses(60), expiring.getRef());
+
+        expiring.expectMsgClass(SetOcspResponses.class);
+    }
+
+    /**
+     * Many responses are published in several messages.
+     */
+    @Test
+    public void publishInChunks() {
+        TestKit subscriber = subscribe(60);
+
+        int count = MAX_MESSAGE_CHUNK_SIZE / base64EncodedResponse.length() * 2 + 1;
+        String[] certHashes = new String[count];
+
+        for (int i = 0; i < count; i++) {
+            certHashes[i] = "cert" + i;
+        }
+
+        manager.tell(setOcspResponses(certHashes), ActorRef.noSender());
+
+        List<String> received = new ArrayList<>();
+
+        while (received.size() < count) {
+            SetOcspResponses chunk = subscriber.expectMsgClass(SetOcspResponses.class);
+            int chunkSize = chunk.getCertHashes().length * base64EncodedResponse.length();
+
+            // Only the last chunk may stay below the limit, no chunk exceeds it by more than one response
+            assertTrue(chunkSize >= MAX_MESSAGE_CHUNK_SIZE || received.size() + chunk.getCertHashes().length == count);
+            assertTrue(chunkSize - base64EncodedResponse.length() < MAX_MESSAGE_CHUNK_SIZE);
+
+            received.addAll(Arrays.asList(chunk.getCertHashes()));
+        }
+
+        assertEquals(Arrays.asList(certHashes), received);
+        subscriber.expectNoMessage(NO_MESSAGE);
+    }
+
+    /**
+     * The response that reaches the limit closes the message.
+     */
+    @Test
+    public void tellInChunksAtLimit() {
+        TestKit subscriber = new TestKit(actorSystem);
+
+        OcspResponseManager.tellInChunks(subscriber.getRef(), Arrays.asList("a", "b", "c", "d"),
+                Collections.nCopies(4, response(MAX_MESSAGE_CHUNK_SIZE / 2)), manager);
+
+        assertEquals(Arrays.asList("a", "b"), expectChunk(subscriber));
+        assertEquals(Arrays.asList("c", "d"), expectChunk(subscriber));
+        subscriber.expectNoMessage(NO_MESSAGE);
+    }
+
+    /**
+     * Responses below the limit are collected into the same message.
+     */
+    @Test
+    public void tellInChunksBelowLimit() {
+        TestKit subscriber = new TestKit(actorSystem);
+
+        OcspResponseManager.tellInChunks(subscriber.getRef(), Arrays.asList("a", "b", "c", "d"),
+                Collections.nCopies(4, response(MAX_MESSAGE_CHUNK_SIZE / 2 - 1)), manager);
+
+        assertEquals(Arrays.asList("a", "b", "c"), expectChunk(subscriber));
+        assertEquals(Collections.singletonList("d"), expectChunk(subscriber));
+        subscriber.expectNoMessage(NO_MESSAGE);
+
+        OcspResponseManager.tellInChunks(subscriber.getRef(), Collections.emptyList(), Collections.emptyList(),
+                manager);
+
+        subscriber.expectNoMessage(NO_MESSAGE);
+    }
+
+    private TestKit subscribe(int validitySeconds) {
+        TestKit subscriber = new TestKit(actorSystem);
+        manager.tell(new SubscribeOcspResponses(validitySeconds), subscriber.getRef());
+
+        return subscriber;
+    }
+
+    private static SetOcspResponses setOcspResponses(String... certHashes) {
+        String[] base64EncodedResponses = new String[certHashes.length];
+        Arrays.fill(base64EncodedResponses, base64EncodedResponse);
+
+        return new SetOcspResponses(certHashes, base64EncodedResponses);
+    }
+
+    private static String response(int length) {
+        char[] response = new char[length];
+        Arrays.fill(response, 'A');
+
+        return new String(response);
+    }
+
+    private List<String> expectChunk(TestKit subscriber) {
+        SetOcspResponses chunk = subscriber.expectMsgClass(SetOcspResponses.class);
+        assertEquals(manager, subscriber.getLastSender());
+
+        return Arrays.asList(chunk.getCertHashes());
+    }
+
+    private static List<String> sorted(String[] certHashes) {
+        List<String> result = new ArrayList<>(Arrays.asList(certHashes));
+        Collections.sort(result);
+
+        return result;
+    }
+}
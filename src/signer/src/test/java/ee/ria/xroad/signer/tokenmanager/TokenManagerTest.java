@@ -0,0 +1,111 @@
+/**
+ * The MIT License
+ * Copyright (c) 2019- Nordic Institute for Interoperability Solutions (NIIS)
+ * Copyright (c) 2018 Estonian Information System Authority (RIA),
+ * Nordic Institute for Interoperability Solutions (NIIS), Population Register Centre (VRK)
+ * Copyright (c) 2015-2017 Estonian Information System Authority (RIA), Population Register Centre (VRK)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ee.ria.xroad.signer.tokenmanager;
+
+import ee.ria.xroad.common.SystemProperties;
+import ee.ria.xroad.signer.protocol.dto.CertificateInfo;
+import ee.ria.xroad.signer.protocol.dto.KeyInfo;
+import ee.ria.xroad.signer.protocol.dto.TokenInfo;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.contrib.java.lang.system.RestoreSystemProperties;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests that {@link TokenManager} lookups reflect the changes made to the tokens.
+ */
+public class TokenManagerTest {
+
+    private static final Path KEY_CONF_FILE_PATH =
+            Paths.get("./build/resources/test/mergetesting/keyconf_base_no_duplicate_keyIds.xml");
+
+    private static final String TEST_KEY_ID = "636f6e73756d6574";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Rule
+    public final RestoreSystemProperties restoreSystemProperties = new RestoreSystemProperties();
+
+    /**
+     * Set up the key conf file for testing and init the {@link TokenManager}
+     *
+     * @throws Exception if an error occurs
+     */
+    @Before
+    public void setUp() throws Exception {
+        File testingFile = temporaryFolder.newFile("keyconf-testing.xml");
+        System.setProperty(SystemProperties.KEY_CONFIGURATION_FILE, testingFile.getPath());
+
+        Files.copy(KEY_CONF_FILE_PATH, testingFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+
+        TokenManager.init();
+    }
+
+    @Test
+    public void shouldReflectKeyChanges() {
+        TokenInfo tokenInfo = TokenManager.findTokenInfoForKeyId(TEST_KEY_ID);
+        assertEquals(tokenInfo.getId(), TokenManager.findTokenAndKey(TEST_KEY_ID).getTokenId());
+
+        TokenManager.setKeyFriendlyName(TEST_KEY_ID, "changed");
+        assertEquals("changed", TokenManager.getKeyInfo(TEST_KEY_ID).getFriendlyName());
+        assertEquals("changed", TokenManager.findTokenInfo(tokenInfo.getId()).getKeyInfo().stream()
+                .filter(k -> k.getId().equals(TEST_KEY_ID))
+                .findFirst().get().getFriendlyName());
+
+        TokenManager.removeKey(TEST_KEY_ID);
+        assertNull(TokenManager.getKeyInfo(TEST_KEY_ID));
+        assertFalse(TokenManager.findTokenInfo(tokenInfo.getId()).getKeyInfo().stream()
+                .anyMatch(k -> k.getId().equals(TEST_KEY_ID)));
+    }
+
+    @Test
+    public void shouldReflectCertChanges() {
+        CertificateInfo certInfo = TokenManager.getAllCerts().get(0);
+        KeyInfo keyInfo = TokenManager.getKeyInfoForCertId(certInfo.getId());
+        assertNotNull(keyInfo);
+
+        TokenManager.setCertStatus(certInfo.getId(), "changed");
+        assertEquals("changed", TokenManager.getCertificateInfo(certInfo.getId()).getStatus());
+
+        TokenManager.removeCert(certInfo.getId());
+        assertNull(TokenManager.getCertificateInfo(certInfo.getId()));
+        assertNull(TokenManager.getKeyInfoForCertId(certInfo.getId()));
+    }
+}